@@ -0,0 +1,67 @@
+package com.eaphonetech.common.datatables.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.eaphonetech.common.datatables.model.mapping.ColumnType;
+
+/**
+ * Conversion of filter values, as they come from JSON, into the type of the column. Invalid values are included, as
+ * they are converted to <code>null</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnTypeBenchmark {
+
+	private final Object integerText = "12345";
+	private final Object integerValue = 12345;
+	private final Object invalidNumber = "12a";
+	private final Object doubleText = "123.45";
+	private final Object dateText = "2023-06-01 08:30:00";
+	private final Object booleanText = "true";
+
+	@Benchmark
+	public void integer(Blackhole bh) {
+		bh.consume(ColumnType.INTEGER.tryConvert(integerText));
+		bh.consume(ColumnType.INTEGER.tryConvert(integerValue));
+	}
+
+	@Benchmark
+	public Object invalidInteger() {
+		return ColumnType.INTEGER.tryConvert(invalidNumber);
+	}
+
+	@Benchmark
+	public Object doubleValue() {
+		return ColumnType.DOUBLE.tryConvert(doubleText);
+	}
+
+	@Benchmark
+	public Object invalidDouble() {
+		return ColumnType.DOUBLE.tryConvert(invalidNumber);
+	}
+
+	@Benchmark
+	public Object date() {
+		return ColumnType.DATE.tryConvert(dateText);
+	}
+
+	@Benchmark
+	public Object booleanValue() {
+		return ColumnType.BOOLEAN.tryConvert(booleanText);
+	}
+}
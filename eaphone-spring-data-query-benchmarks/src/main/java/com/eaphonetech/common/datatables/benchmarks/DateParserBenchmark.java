@@ -0,0 +1,39 @@
+package com.eaphonetech.common.datatables.benchmarks;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eaphonetech.common.datatables.model.mapping.DateParser;
+
+/**
+ * Parsing of date filter values, one of each supported format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DateParserBenchmark {
+
+	@Param({ "2023-01-01", "2023-06-01 08:30:00", "2023-06-01T08:30", "2023-12-31T23:59:59Z",
+			"2024-01-01T00:00:00.000+08:00", "2024-01-01T00:00:00.000+0800" })
+	private String text;
+
+	@Benchmark
+	public Date parse() throws ParseException {
+		return DateParser.parse(text);
+	}
+}
@@ -0,0 +1,179 @@
+package com.eaphonetech.common.datatables.benchmarks;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryOrder;
+import com.eaphonetech.common.datatables.model.mapping.QueryOrder.OrderValue;
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Requests on {@link com.eaphonetech.common.datatables.benchmarks.model.BenchOrder}, shaped like those of a data
+ * grid: a mix of operators on scalar fields and nested paths, ordered by two fields.
+ */
+@UtilityClass
+public class Fixtures {
+
+	private enum Kind {
+		STRING, NUMBER, DATE, BOOLEAN
+	}
+
+	private record Field(String path, Kind kind) {
+	}
+
+	/**
+	 * filterable paths of the model, nested paths interleaved so that small requests contain joins as well
+	 */
+	private static final List<Field> FIELDS = Arrays.asList(
+			new Field("status", Kind.STRING),
+			new Field("customer.name", Kind.STRING),
+			new Field("amount", Kind.NUMBER),
+			new Field("createdAt", Kind.DATE),
+			new Field("items.sku", Kind.STRING),
+			new Field("paid", Kind.BOOLEAN),
+			new Field("channel", Kind.STRING),
+			new Field("customer.level", Kind.NUMBER),
+			new Field("quantity", Kind.NUMBER),
+			new Field("items.price", Kind.NUMBER),
+			new Field("region", Kind.STRING),
+			new Field("customer.registeredAt", Kind.DATE),
+			new Field("paidAt", Kind.DATE),
+			new Field("items.category", Kind.STRING),
+			new Field("shipped", Kind.BOOLEAN),
+			new Field("customer.vip", Kind.BOOLEAN),
+			new Field("tax", Kind.NUMBER),
+			new Field("city", Kind.STRING),
+			new Field("items.addedAt", Kind.DATE),
+			new Field("customer.country", Kind.STRING),
+			new Field("priority", Kind.NUMBER),
+			new Field("shippedAt", Kind.DATE),
+			new Field("warehouse", Kind.STRING),
+			new Field("items.quantity", Kind.NUMBER),
+			new Field("customer.email", Kind.STRING),
+			new Field("discount", Kind.NUMBER),
+			new Field("carrier", Kind.STRING),
+			new Field("gift", Kind.BOOLEAN),
+			new Field("customer.points", Kind.NUMBER),
+			new Field("items.brand", Kind.STRING),
+			new Field("updatedAt", Kind.DATE),
+			new Field("currency", Kind.STRING),
+			new Field("shippingFee", Kind.NUMBER),
+			new Field("customer.city", Kind.STRING),
+			new Field("items.discount", Kind.NUMBER),
+			new Field("trackingNumber", Kind.STRING),
+			new Field("deliveredAt", Kind.DATE),
+			new Field("customer.credit", Kind.NUMBER),
+			new Field("weight", Kind.NUMBER),
+			new Field("items.name", Kind.STRING),
+			new Field("note", Kind.STRING),
+			new Field("customer.birthday", Kind.DATE),
+			new Field("rating", Kind.NUMBER),
+			new Field("coupon", Kind.STRING),
+			new Field("customer.segment", Kind.STRING),
+			new Field("expectedAt", Kind.DATE),
+			new Field("returns", Kind.NUMBER),
+			new Field("paymentMethod", Kind.STRING),
+			new Field("customer.phone", Kind.STRING),
+			new Field("orderNumber", Kind.STRING));
+
+	public static final int MAX_FIELDS = FIELDS.size();
+
+	/**
+	 * @param fields number of filtered fields, at most {@link #MAX_FIELDS}
+	 * @return request filtering on the first <code>fields</code> fields
+	 */
+	public static QueryInput input(int fields) {
+		if (fields > MAX_FIELDS) {
+			throw new IllegalArgumentException("at most " + MAX_FIELDS + " fields");
+		}
+		QueryInput input = new QueryInput();
+		input.setOffset(20);
+		input.setLimit(20);
+		input.getOrder_by().add(order("createdAt", OrderValue.desc));
+		input.getOrder_by().add(order("amount", OrderValue.asc));
+		for (int i = 0; i < fields; i++) {
+			final Field field = FIELDS.get(i);
+			input.getWhere().put(field.path(), filter(field.kind(), i));
+		}
+		return input;
+	}
+
+	/**
+	 * @return JSON of {@link #input(int)}, as posted by the browser
+	 */
+	public static String json(ObjectMapper mapper, int fields) throws JsonProcessingException {
+		final QueryInput input = input(fields);
+		final Map<String, Object> body = new LinkedHashMap<>();
+		body.put("draw", 1);
+		body.put("offset", input.getOffset());
+		body.put("limit", input.getLimit());
+		body.put("order_by", Arrays.asList(Map.of("createdAt", "desc"), Map.of("amount", "asc")));
+		body.put("where", input.getWhere());
+		return mapper.copy().setSerializationInclusion(Include.NON_NULL).writeValueAsString(body);
+	}
+
+	private static QueryOrder order(String field, OrderValue dir) {
+		QueryOrder order = new QueryOrder();
+		order.getValues().put(field, dir);
+		return order;
+	}
+
+	private static QueryFilter filter(Kind kind, int i) {
+		QueryFilter filter = new QueryFilter();
+		switch (kind) {
+		case STRING:
+			switch (i % 3) {
+			case 0:
+				filter.set_like("%ab" + i + "_c%");
+				break;
+			case 1:
+				filter.set_eq("value-" + i);
+				break;
+			default:
+				filter.set_in(Arrays.asList("a" + i, "b" + i, "c" + i));
+				break;
+			}
+			break;
+		case NUMBER:
+			switch (i % 3) {
+			case 0:
+				filter.set_gte(String.valueOf(i));
+				filter.set_lte(i * 100);
+				break;
+			case 1:
+				filter.set_gt(i);
+				break;
+			default:
+				filter.set_in(Arrays.asList(i, i + 1, String.valueOf(i + 2)));
+				break;
+			}
+			break;
+		case DATE:
+			switch (i % 3) {
+			case 0:
+				filter.set_gte("2023-01-01");
+				filter.set_lt("2024-01-01T00:00:00.000+08:00");
+				break;
+			case 1:
+				filter.set_gte("2023-06-01 08:30:00");
+				break;
+			default:
+				filter.set_lte("2023-12-31T23:59:59Z");
+				break;
+			}
+			break;
+		default:
+			filter.set_eq(i % 2 == 0 ? "true" : Boolean.FALSE);
+			break;
+		}
+		return filter;
+	}
+}
@@ -0,0 +1,45 @@
+package com.eaphonetech.common.datatables.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eaphonetech.common.datatables.mongodb.repository.QueryUtils;
+
+/**
+ * Conversion of <code>_like</code> values into regular expressions: the same value again, as sent by a type-ahead
+ * grid, and distinct values, which are never cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LikePatternBenchmark {
+
+	@Param({ "abc%", "%order_2023%", "%(a+b)*[c]?$%", "12345" })
+	private String value;
+
+	private int counter;
+
+	@Benchmark
+	public Pattern getLikeFilterPattern() {
+		return QueryUtils.getLikeFilterPattern(value);
+	}
+
+	@Benchmark
+	public Pattern distinctValues() {
+		return QueryUtils.getLikeFilterPattern(value + counter++);
+	}
+}
@@ -0,0 +1,56 @@
+package com.eaphonetech.common.datatables.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.query.MongoEntityInformation;
+import org.springframework.data.mongodb.repository.support.MappingMongoEntityInformation;
+
+import com.eaphonetech.common.datatables.benchmarks.model.BenchOrder;
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.mongodb.repository.QueryUtils;
+
+/**
+ * Translation of a request into a MongoDB {@link Query}, per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MongoQueryBenchmark {
+
+	@Param({ "10", "30", "50" })
+	private int fields;
+
+	private MongoEntityInformation<BenchOrder, Long> entityInformation;
+	private QueryInput input;
+
+	@Setup
+	public void setup() {
+		@SuppressWarnings("unchecked")
+		MongoPersistentEntity<BenchOrder> entity = (MongoPersistentEntity<BenchOrder>) new MongoMappingContext()
+				.getRequiredPersistentEntity(BenchOrder.class);
+		entityInformation = new MappingMongoEntityInformation<>(entity);
+		input = Fixtures.input(fields);
+	}
+
+	@Benchmark
+	public Query getQuery() {
+		return QueryUtils.getQuery(entityInformation, input);
+	}
+}
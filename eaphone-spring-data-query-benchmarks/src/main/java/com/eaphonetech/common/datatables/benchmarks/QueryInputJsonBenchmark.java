@@ -0,0 +1,51 @@
+package com.eaphonetech.common.datatables.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Deserialization of the request body, as done by Spring MVC before the repository is called.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryInputJsonBenchmark {
+
+	@Param({ "10", "30", "50" })
+	private int fields;
+
+	private ObjectReader reader;
+	private String json;
+
+	@Setup
+	public void setup() throws IOException {
+		ObjectMapper mapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+		reader = mapper.readerFor(QueryInput.class);
+		json = Fixtures.json(mapper, fields);
+	}
+
+	@Benchmark
+	public QueryInput read() throws IOException {
+		return reader.readValue(json);
+	}
+}
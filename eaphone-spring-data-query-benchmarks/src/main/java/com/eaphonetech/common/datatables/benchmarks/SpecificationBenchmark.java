@@ -0,0 +1,89 @@
+package com.eaphonetech.common.datatables.benchmarks;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.jpa.HibernatePersistenceProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import com.eaphonetech.common.datatables.benchmarks.model.BenchOrder;
+import com.eaphonetech.common.datatables.jpa.SpecificationBuilder;
+import com.eaphonetech.common.datatables.jpa.columns.AbstractColumnTypeDecorator;
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Translation of a request into a JPA {@link Predicate} by Hibernate, on an in-memory H2 database. Nothing is
+ * executed, only the criteria query is built.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpecificationBenchmark {
+
+	@Param({ "10", "30", "50" })
+	private int fields;
+
+	private LocalContainerEntityManagerFactoryBean factoryBean;
+	private EntityManager entityManager;
+	private CriteriaBuilder cb;
+	private QueryInput input;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1", "sa",
+				"");
+		Properties jpaProperties = new Properties();
+		jpaProperties.put("hibernate.hbm2ddl.auto", "create-drop");
+		jpaProperties.put("jakarta.persistence.validation.mode", "none");
+
+		factoryBean = new LocalContainerEntityManagerFactoryBean();
+		factoryBean.setDataSource(dataSource);
+		factoryBean.setPersistenceProviderClass(HibernatePersistenceProvider.class);
+		factoryBean.setPackagesToScan(BenchOrder.class.getPackageName());
+		factoryBean.setJpaProperties(jpaProperties);
+		factoryBean.afterPropertiesSet();
+
+		EntityManagerFactory emf = factoryBean.getObject();
+		AbstractColumnTypeDecorator.register(emf.getMetamodel());
+		entityManager = emf.createEntityManager();
+		cb = entityManager.getCriteriaBuilder();
+		input = Fixtures.input(fields);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		entityManager.close();
+		factoryBean.destroy();
+	}
+
+	@Benchmark
+	public Predicate toPredicate() {
+		CriteriaQuery<BenchOrder> query = cb.createQuery(BenchOrder.class);
+		Root<BenchOrder> root = query.from(BenchOrder.class);
+		return new SpecificationBuilder<BenchOrder>(input).build().toPredicate(root, query, cb);
+	}
+}
@@ -0,0 +1,33 @@
+package com.eaphonetech.common.datatables.benchmarks.model;
+
+import java.util.Date;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+@Data
+@Entity
+@Table(name = "bench_customer")
+public class BenchCustomer {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	private String name;
+	private String email;
+	private String phone;
+	private String country;
+	private String city;
+	private String segment;
+	private Integer level;
+	private Integer points;
+	private Double credit;
+	private Boolean vip;
+	private Date registeredAt;
+	private Date birthday;
+}
@@ -0,0 +1,29 @@
+package com.eaphonetech.common.datatables.benchmarks.model;
+
+import java.util.Date;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+@Data
+@Entity
+@Table(name = "bench_item")
+public class BenchItem {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	private String sku;
+	private String name;
+	private String category;
+	private String brand;
+	private Double price;
+	private Double discount;
+	private Integer quantity;
+	private Date addedAt;
+}
@@ -0,0 +1,72 @@
+package com.eaphonetech.common.datatables.benchmarks.model;
+
+import java.util.Date;
+import java.util.List;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * A wide order, so requests can filter on up to 50 fields, including nested paths into <code>customer</code> and
+ * <code>items</code>. Mapped both as JPA entity and as MongoDB document with embedded customer and items.
+ */
+@Data
+@Entity
+@Table(name = "bench_order")
+public class BenchOrder {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	private String orderNumber;
+	private String status;
+	private String channel;
+	private String currency;
+	private String region;
+	private String city;
+	private String warehouse;
+	private String carrier;
+	private String trackingNumber;
+	private String note;
+	private String coupon;
+	private String paymentMethod;
+
+	private Double amount;
+	private Double tax;
+	private Double discount;
+	private Double shippingFee;
+	private Double weight;
+
+	private Integer quantity;
+	private Integer priority;
+	private Integer rating;
+	private Integer returns;
+
+	private Date createdAt;
+	private Date updatedAt;
+	private Date paidAt;
+	private Date shippedAt;
+	private Date deliveredAt;
+	private Date expectedAt;
+
+	private Boolean paid;
+	private Boolean shipped;
+	private Boolean gift;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "customer_id")
+	private BenchCustomer customer;
+
+	@OneToMany(fetch = FetchType.LAZY)
+	@JoinColumn(name = "order_id")
+	private List<BenchItem> items;
+}
@@ -0,0 +1,178 @@
+package com.eaphonetech.common.datatables.config;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.util.StringUtils;
+
+import com.eaphonetech.common.datatables.model.mapping.CountMode;
+import com.eaphonetech.common.datatables.model.mapping.filter.FilterOperator;
+
+import lombok.Data;
+
+/**
+ * Repository settings, read from properties with prefix <code>eaphone.query.</code>.
+ */
+@Data
+public class EaphoneQueryProperties {
+	public static final String PREFIX = "eaphone.query.";
+
+	/**
+	 * default {@link CountMode}, when not specified by the request
+	 */
+	private CountMode countMode = CountMode.EXACT;
+
+	/**
+	 * how long a total count is cached in {@link CountMode#CACHED_TOTAL}
+	 */
+	private Duration totalCacheTtl = Duration.ofMinutes(1);
+
+	/**
+	 * rows fetched from the database per round trip when streaming, i.e. JDBC fetch size or MongoDB batch size
+	 */
+	private int streamFetchSize = 500;
+
+	/**
+	 * JPA only: read the ids of a page first, then the entities of these ids with their collections
+	 */
+	private boolean twoPhasePaging = false;
+
+	/**
+	 * MongoDB only: whether the aggregations of <code>findAll</code> may write temporary files, when a stage exceeds
+	 * its memory limit
+	 */
+	private boolean aggregationAllowDiskUse = false;
+
+	/**
+	 * MongoDB only: how long an aggregation of <code>findAll</code> may run on the server, <code>null</code> for no
+	 * limit
+	 */
+	private Duration aggregationMaxTime;
+
+	/**
+	 * whether to run the counts on another thread while reading the page
+	 */
+	private boolean parallel = false;
+
+	/**
+	 * in parallel mode, how long the counts and the page query may take, <code>null</code> for no limit
+	 */
+	private Duration parallelTimeout;
+
+	/**
+	 * how many results of <code>findAll</code> and <code>count</code> are cached per repository, <code>0</code> to
+	 * disable the result cache
+	 */
+	private int resultCacheSize = 0;
+
+	/**
+	 * how long a result is cached
+	 */
+	private Duration resultCacheTtl = Duration.ofSeconds(5);
+
+	/**
+	 * MongoDB only: also drop cached results on changes made by other applications, using change streams (replica
+	 * sets and sharded clusters only)
+	 */
+	private boolean resultCacheChangeStreams = false;
+
+	/**
+	 * whether to publish metrics of queries to Micrometer, if a <code>MeterRegistry</code> is defined
+	 */
+	private boolean metricsEnabled = true;
+
+	/**
+	 * most values of <code>_in</code>, <code>_nin</code> and <code>_all</code>, <code>0</code> for no limit
+	 */
+	private int maxInSize = 0;
+
+	/**
+	 * largest page, <code>0</code> for no limit; when set, <code>limit: -1</code> is rejected
+	 */
+	private int maxLimit = 0;
+
+	/**
+	 * longest <code>_regex</code> or <code>_like</code> pattern, <code>0</code> for no limit
+	 */
+	private int maxRegexLength = 0;
+
+	/**
+	 * operators allowed in requests, empty for all
+	 */
+	private Set<FilterOperator> allowedOperators = EnumSet.noneOf(FilterOperator.class);
+
+	/**
+	 * Read settings from the environment, missing properties keep their default values.
+	 *
+	 * @param resolver usually the Spring <code>Environment</code>
+	 * @return never <code>null</code>
+	 */
+	public static EaphoneQueryProperties from(PropertyResolver resolver) {
+		EaphoneQueryProperties properties = new EaphoneQueryProperties();
+		if (resolver == null) {
+			return properties;
+		}
+		properties.setCountMode(
+				resolver.getProperty(PREFIX + "count-mode", CountMode.class, properties.getCountMode()));
+		properties.setTotalCacheTtl(
+				parseDuration(resolver.getProperty(PREFIX + "total-cache-ttl"), properties.getTotalCacheTtl()));
+		properties.setStreamFetchSize(
+				resolver.getProperty(PREFIX + "stream-fetch-size", Integer.class, properties.getStreamFetchSize()));
+		properties.setTwoPhasePaging(
+				resolver.getProperty(PREFIX + "two-phase-paging", Boolean.class, properties.isTwoPhasePaging()));
+		properties.setAggregationAllowDiskUse(resolver.getProperty(PREFIX + "aggregation-allow-disk-use",
+				Boolean.class, properties.isAggregationAllowDiskUse()));
+		properties.setAggregationMaxTime(parseDuration(resolver.getProperty(PREFIX + "aggregation-max-time"),
+				properties.getAggregationMaxTime()));
+		properties.setParallel(resolver.getProperty(PREFIX + "parallel", Boolean.class, properties.isParallel()));
+		properties.setParallelTimeout(
+				parseDuration(resolver.getProperty(PREFIX + "parallel-timeout"), properties.getParallelTimeout()));
+		properties.setResultCacheSize(
+				resolver.getProperty(PREFIX + "result-cache-size", Integer.class, properties.getResultCacheSize()));
+		properties.setResultCacheTtl(
+				parseDuration(resolver.getProperty(PREFIX + "result-cache-ttl"), properties.getResultCacheTtl()));
+		properties.setResultCacheChangeStreams(resolver.getProperty(PREFIX + "result-cache-change-streams",
+				Boolean.class, properties.isResultCacheChangeStreams()));
+		properties.setMetricsEnabled(
+				resolver.getProperty(PREFIX + "metrics-enabled", Boolean.class, properties.isMetricsEnabled()));
+		properties.setMaxInSize(
+				resolver.getProperty(PREFIX + "max-in-size", Integer.class, properties.getMaxInSize()));
+		properties.setMaxLimit(resolver.getProperty(PREFIX + "max-limit", Integer.class, properties.getMaxLimit()));
+		properties.setMaxRegexLength(
+				resolver.getProperty(PREFIX + "max-regex-length", Integer.class, properties.getMaxRegexLength()));
+		final String operators = resolver.getProperty(PREFIX + "allowed-operators");
+		if (StringUtils.hasText(operators)) {
+			Set<FilterOperator> allowed = EnumSet.noneOf(FilterOperator.class);
+			for (final String operator : StringUtils.commaDelimitedListToStringArray(operators)) {
+				allowed.add(FilterOperator.valueOf(operator.trim()));
+			}
+			properties.setAllowedOperators(allowed);
+		}
+		return properties;
+	}
+
+	/**
+	 * Parse durations like <code>500ms</code>, <code>30s</code>, <code>5m</code>, <code>1h</code>, ISO-8601
+	 * (<code>PT30S</code>) or plain milliseconds.
+	 */
+	static Duration parseDuration(String text, Duration defaultValue) {
+		if (!StringUtils.hasText(text)) {
+			return defaultValue;
+		}
+		final String value = text.trim().toLowerCase();
+		if (value.startsWith("p")) {
+			return Duration.parse(value.toUpperCase());
+		} else if (value.endsWith("ms")) {
+			return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2).trim()));
+		} else if (value.endsWith("s")) {
+			return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1).trim()));
+		} else if (value.endsWith("m")) {
+			return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1).trim()));
+		} else if (value.endsWith("h")) {
+			return Duration.ofHours(Long.parseLong(value.substring(0, value.length() - 1).trim()));
+		}
+		return Duration.ofMillis(Long.parseLong(value));
+	}
+}
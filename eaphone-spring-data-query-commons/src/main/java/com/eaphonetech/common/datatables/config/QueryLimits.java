@@ -0,0 +1,82 @@
+package com.eaphonetech.common.datatables.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.eaphonetech.common.datatables.model.mapping.filter.FilterOperator;
+
+/**
+ * Limits of the requests a repository accepts, checked before any query is built. Numeric limits not set here
+ * (<code>-1</code>) fall back to {@link EaphoneQueryProperties}, <code>0</code> means no limit.
+ *
+ * <pre>
+ * &#64;QueryLimits(filterable = { "status", "createdAt" }, sortable = "createdAt", maxLimit = 100,
+ *         operators = { FilterOperator._eq, FilterOperator._in, FilterOperator._gte, FilterOperator._lt },
+ *         fields = &#64;QueryLimits.Field(name = "customer.name", operators = FilterOperator._like))
+ * public interface OrderRepository extends JpaQueryRepository&lt;Order, Long&gt; {
+ * }
+ * </pre>
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryLimits {
+
+	/**
+	 * @return fields that may be filtered, besides those of {@link #fields()}; empty for any field
+	 */
+	String[] filterable() default {};
+
+	/**
+	 * @return fields that may be ordered by; empty for any field
+	 */
+	String[] sortable() default {};
+
+	/**
+	 * @return operators allowed on fields not listed in {@link #fields()}; empty for
+	 *         {@link EaphoneQueryProperties#getAllowedOperators()}
+	 */
+	FilterOperator[] operators() default {};
+
+	/**
+	 * @return operators allowed on specific fields, instead of {@link #operators()}
+	 */
+	Field[] fields() default {};
+
+	/**
+	 * @return most values of <code>_in</code>, <code>_nin</code> and <code>_all</code>
+	 */
+	int maxInSize() default -1;
+
+	/**
+	 * @return largest page, <code>limit: -1</code> is rejected if set
+	 */
+	int maxLimit() default -1;
+
+	/**
+	 * @return longest <code>_regex</code> or <code>_like</code> pattern
+	 */
+	int maxRegexLength() default -1;
+
+	/**
+	 * Operators allowed on one field.
+	 */
+	@Documented
+	@Target({})
+	@Retention(RetentionPolicy.RUNTIME)
+	@interface Field {
+
+		/**
+		 * @return the field, as in <code>where</code> of the request
+		 */
+		String name();
+
+		/**
+		 * @return operators allowed on it
+		 */
+		FilterOperator[] operators();
+	}
+}
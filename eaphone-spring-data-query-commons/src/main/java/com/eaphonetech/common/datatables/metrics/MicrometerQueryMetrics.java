@@ -0,0 +1,208 @@
+package com.eaphonetech.common.datatables.metrics;
+
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.BeanFactory;
+
+import com.eaphonetech.common.datatables.model.mapping.filter.FilterOperator;
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+import com.eaphonetech.common.datatables.util.QueryResultCache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+/**
+ * {@link QueryMetrics} publishing to Micrometer:
+ * <ul>
+ * <li><code>eaphone.query.phase</code>: timer of each {@link QueryMetrics.Phase}, tagged with <code>entity</code>,
+ * <code>backend</code>, <code>operation</code>, <code>phase</code> and <code>operators</code> (the set of filter
+ * operators of the request, e.g. <code>_eq,_like</code>)</li>
+ * <li><code>eaphone.query.errors</code>: failed queries, tagged with <code>entity</code>, <code>backend</code>,
+ * <code>operation</code> and <code>exception</code></li>
+ * <li><code>eaphone.query.result.cache.hits</code>, <code>.misses</code>, <code>.size</code> and
+ * <code>.hit.ratio</code> of result caches</li>
+ * <li>an {@link Observation} <code>eaphone.query</code> around each query, if an {@link ObservationRegistry} is
+ * given, with the filtered fields as high cardinality key value <code>fields</code></li>
+ * </ul>
+ */
+public class MicrometerQueryMetrics implements QueryMetrics {
+
+    public static final String PHASE_TIMER = "eaphone.query.phase";
+    public static final String ERROR_COUNTER = "eaphone.query.errors";
+    public static final String OBSERVATION = "eaphone.query";
+    public static final String CACHE_PREFIX = "eaphone.query.result.cache.";
+
+    private static final String NO_OPERATORS = "none";
+
+    private record TimerKey(Class<?> domainType, String operation, Phase phase, String operators) {
+    }
+
+    private final MeterRegistry registry;
+    private final ObservationRegistry observations;
+    private final String backend;
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<Integer, String> operatorTags = new ConcurrentHashMap<>();
+
+    /**
+     * @param registry where meters are registered
+     * @param observations where queries are observed, <code>null</code> to only publish meters
+     * @param backend <code>jpa</code> or <code>mongodb</code>
+     */
+    public MicrometerQueryMetrics(MeterRegistry registry, ObservationRegistry observations, String backend) {
+        this.registry = registry;
+        this.observations = observations == null || observations.isNoop() ? null : observations;
+        this.backend = backend;
+    }
+
+    static QueryMetrics of(BeanFactory beanFactory, String backend) {
+        final MeterRegistry registry = beanFactory.getBeanProvider(MeterRegistry.class).getIfAvailable();
+        if (registry == null) {
+            return NOOP;
+        }
+        return new MicrometerQueryMetrics(registry,
+                beanFactory.getBeanProvider(ObservationRegistry.class).getIfAvailable(), backend);
+    }
+
+    @Override
+    public Recording start(Class<?> domainType, String operation, Map<String, QueryFilter> where) {
+        final String operators = operatorsOf(where);
+        Observation observation = null;
+        Observation.Scope scope = null;
+        if (observations != null) {
+            observation = Observation.createNotStarted(OBSERVATION, observations)
+                    .lowCardinalityKeyValue("entity", domainType.getSimpleName())
+                    .lowCardinalityKeyValue("backend", backend)
+                    .lowCardinalityKeyValue("operation", operation)
+                    .lowCardinalityKeyValue("operators", operators)
+                    .highCardinalityKeyValue("fields",
+                            where == null ? "" : String.join(",", new TreeSet<>(where.keySet())))
+                    .start();
+            scope = observation.openScope();
+        }
+        return new MicrometerRecording(domainType, operation, operators, observation, scope);
+    }
+
+    @Override
+    public <R> R time(Class<?> domainType, String operation, Map<String, QueryFilter> where, Phase phase,
+            Supplier<R> task) {
+        final long start = System.nanoTime();
+        try {
+            return task.get();
+        } finally {
+            timer(domainType, operation, phase, operatorsOf(where)).record(System.nanoTime() - start,
+                    TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void monitor(Class<?> domainType, QueryResultCache cache) {
+        final String entity = domainType.getSimpleName();
+        FunctionCounter.builder(CACHE_PREFIX + "hits", cache, QueryResultCache::getHits)
+                .tag("entity", entity).tag("backend", backend).register(registry);
+        FunctionCounter.builder(CACHE_PREFIX + "misses", cache, QueryResultCache::getMisses)
+                .tag("entity", entity).tag("backend", backend).register(registry);
+        Gauge.builder(CACHE_PREFIX + "size", cache, QueryResultCache::size)
+                .tag("entity", entity).tag("backend", backend).register(registry);
+        Gauge.builder(CACHE_PREFIX + "hit.ratio", cache, QueryResultCache::getHitRatio)
+                .tag("entity", entity).tag("backend", backend).register(registry);
+    }
+
+    private Timer timer(Class<?> domainType, String operation, Phase phase, String operators) {
+        return timers.computeIfAbsent(new TimerKey(domainType, operation, phase, operators),
+                key -> Timer.builder(PHASE_TIMER)
+                        .description("time of one phase of a query")
+                        .tag("entity", domainType.getSimpleName())
+                        .tag("backend", backend)
+                        .tag("operation", operation)
+                        .tag("phase", phase.tag())
+                        .tag("operators", operators)
+                        .register(registry));
+    }
+
+    /**
+     * @return operators used by the filters, in a fixed order, so the tag has few distinct values
+     */
+    private String operatorsOf(Map<String, QueryFilter> where) {
+        int mask = 0;
+        if (where != null) {
+            for (final QueryFilter filter : where.values()) {
+                mask |= FilterOperator.maskOf(filter);
+            }
+        }
+        return operatorTags.computeIfAbsent(mask, m -> {
+            if (m == 0) {
+                return NO_OPERATORS;
+            }
+            StringJoiner joiner = new StringJoiner(",");
+            for (final FilterOperator op : FilterOperator.of(m)) {
+                joiner.add(op.name());
+            }
+            return joiner.toString();
+        });
+    }
+
+    private class MicrometerRecording implements Recording {
+        private final Class<?> domainType;
+        private final String operation;
+        private final String operators;
+        private final Observation observation;
+        private final Observation.Scope scope;
+
+        MicrometerRecording(Class<?> domainType, String operation, String operators, Observation observation,
+                Observation.Scope scope) {
+            this.domainType = domainType;
+            this.operation = operation;
+            this.operators = operators;
+            this.observation = observation;
+            this.scope = scope;
+        }
+
+        @Override
+        public long mark() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void record(Phase phase, long mark) {
+            timer(domainType, operation, phase, operators).record(System.nanoTime() - mark, TimeUnit.NANOSECONDS);
+            if (observation != null) {
+                observation.event(Observation.Event.of(OBSERVATION + "." + phase.tag()));
+            }
+        }
+
+        @Override
+        public void error(Throwable error) {
+            Counter.builder(ERROR_COUNTER)
+                    .description("queries failed")
+                    .tag("entity", domainType.getSimpleName())
+                    .tag("backend", backend)
+                    .tag("operation", operation)
+                    .tag("exception", error.getClass().getSimpleName())
+                    .register(registry)
+                    .increment();
+            if (observation != null) {
+                observation.error(error);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (scope != null) {
+                scope.close();
+            }
+            if (observation != null) {
+                observation.stop();
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.eaphonetech.common.datatables.metrics;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.util.ClassUtils;
+
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+import com.eaphonetech.common.datatables.util.QueryResultCache;
+
+/**
+ * Instrumentation of repository queries. {@link #NOOP} does nothing, not even reading the clock;
+ * {@link MicrometerQueryMetrics} is only loaded when Micrometer is on the classpath.
+ */
+public interface QueryMetrics {
+
+    QueryMetrics NOOP = new QueryMetrics() {
+    };
+
+    /**
+     * Phases of <code>findAll</code> and <code>count</code>, each timed separately.
+     */
+    enum Phase {
+        /**
+         * building the query from the request
+         */
+        BUILD("build"),
+        TOTAL_COUNT("total"),
+        FILTERED_COUNT("filtered"),
+        /**
+         * reading the page
+         */
+        FETCH("fetch"),
+        /**
+         * converting records with the converter of the caller
+         */
+        CONVERT("convert");
+
+        private final String tag;
+
+        Phase(String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    /**
+     * Instrumentation of one query, closed once the query is done. Phases may be recorded from other threads.
+     */
+    interface Recording extends AutoCloseable {
+
+        Recording NOOP = new Recording() {
+        };
+
+        /**
+         * @return start of a phase, to pass to {@link #record(Phase, long)}
+         */
+        default long mark() {
+            return 0L;
+        }
+
+        /**
+         * @param phase the phase
+         * @param mark start of the phase, from {@link #mark()}
+         */
+        default void record(Phase phase, long mark) {
+        }
+
+        /**
+         * @param error why the query failed
+         */
+        default void error(Throwable error) {
+        }
+
+        @Override
+        default void close() {
+        }
+    }
+
+    /**
+     * @param domainType entity queried
+     * @param operation <code>findAll</code> or <code>count</code>
+     * @param where filters of the request, their operators are a tag
+     * @return recording of the query
+     */
+    default Recording start(Class<?> domainType, String operation, Map<String, QueryFilter> where) {
+        return Recording.NOOP;
+    }
+
+    /**
+     * Time a single phase outside of a {@link Recording}, e.g. the conversion of a cached result.
+     */
+    default <R> R time(Class<?> domainType, String operation, Map<String, QueryFilter> where, Phase phase,
+            Supplier<R> task) {
+        return task.get();
+    }
+
+    /**
+     * Publish hits and misses of a result cache.
+     *
+     * @param domainType entity of the cached results
+     * @param cache the cache
+     */
+    default void monitor(Class<?> domainType, QueryResultCache cache) {
+    }
+
+    /**
+     * @param beanFactory where to look up the <code>MeterRegistry</code> and <code>ObservationRegistry</code>
+     * @param backend <code>jpa</code> or <code>mongodb</code>
+     * @return {@link MicrometerQueryMetrics} if Micrometer is on the classpath and a <code>MeterRegistry</code> is
+     *         defined, otherwise {@link #NOOP}
+     */
+    static QueryMetrics of(BeanFactory beanFactory, String backend) {
+        if (beanFactory == null || !ClassUtils.isPresent("io.micrometer.core.instrument.MeterRegistry",
+                QueryMetrics.class.getClassLoader())) {
+            return NOOP;
+        }
+        return MicrometerQueryMetrics.of(beanFactory, backend);
+    }
+}
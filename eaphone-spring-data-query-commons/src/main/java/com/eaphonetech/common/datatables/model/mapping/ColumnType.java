@@ -1,6 +1,5 @@
 package com.eaphonetech.common.datatables.model.mapping;
 
-import java.text.ParseException;
 import java.util.Date;
 
 import lombok.Getter;
@@ -108,14 +107,7 @@ public abstract class ColumnType {
 
         @Override
         public Object tryConvert(Object o) {
-            Object result = null;
-            try {
-                Date parsedDate = DateParser.parse(o.toString());
-                result = parsedDate;
-            } catch (ParseException pe) {
-                result = null;
-            }
-            return result;
+            return o == null ? null : DateParser.tryParse(o.toString());
         }
     }
 
@@ -157,12 +149,21 @@ public abstract class ColumnType {
 
     static final class BooleanColumnType extends ColumnType {
         BooleanColumnType() {
-            super(CODE_BOOLEAN, false);
+            // false < true
+            super(CODE_BOOLEAN, true);
         }
 
         @Override
         public Object tryConvert(Object o) {
-            return o == null ? null : o;
+            if (o instanceof String) {
+                final String text = ((String) o).trim();
+                if ("true".equalsIgnoreCase(text)) {
+                    return Boolean.TRUE;
+                } else if ("false".equalsIgnoreCase(text)) {
+                    return Boolean.FALSE;
+                }
+            }
+            return o;
         }
     }
 
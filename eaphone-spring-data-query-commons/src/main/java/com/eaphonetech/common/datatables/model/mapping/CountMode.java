@@ -0,0 +1,31 @@
+package com.eaphonetech.common.datatables.model.mapping;
+
+/**
+ * How <code>total</code> and <code>filtered</code> of a {@link QueryOutput} are counted.
+ */
+public enum CountMode {
+	/**
+	 * exact counts, both <code>total</code> and <code>filtered</code> are counted in the database
+	 */
+	EXACT,
+
+	/**
+	 * <code>total</code> is counted once and then cached for a while, <code>filtered</code> is exact. With a
+	 * pre-filter, it is only cached if the pre-filter has equality, as MongoDB criteria do, or names its key with
+	 * {@link com.eaphonetech.common.datatables.util.TotalCountCache.Keyed}
+	 */
+	CACHED_TOTAL,
+
+	/**
+	 * <code>total</code> is taken from database statistics when available, <code>filtered</code> is exact. Without
+	 * pre-filter, MongoDB counts <code>total</code> with <code>estimatedDocumentCount</code> in every mode, so there
+	 * it is the same as {@link #EXACT}.
+	 */
+	ESTIMATED,
+
+	/**
+	 * nothing is counted, <code>total</code> and <code>filtered</code> are <code>-1</code> and
+	 * <code>has_more</code> tells whether there is a next page
+	 */
+	NONE;
+}
@@ -1,38 +1,237 @@
 package com.eaphonetech.common.datatables.model.mapping;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
 import java.util.Date;
 
-public class DateParser {
-
-    private static String[] FORMATS = {
-            // ISO 8601 date-time
-            "yyyy-MM-dd'T'HH:mm:ssXXX",
-            // ISO 8601 date-time
-            "yyyy-MM-dd'T'HH:mm:ssZ",
-            // ISO 8601 date-time with time-secfrac
-            "yyyy-MM-dd'T'HH:mm:ss.SSSXXX",
-            // ISO 8601 date-time with time-secfrac
-            "yyyy-MM-dd'T'HH:mm:ss.SSSZ",
-            // ISO 8601 date-time without timezone
-            "yyyy-MM-dd'T'HH:mm:ss",
-            // Another commonly used pattern
-            "yyyy-MM-dd HH:mm:ss",
-            // ISO 8601 full-date
-            "yyyy-MM-dd"
-    };
+/**
+ * Parses date values of filters. Supported formats are:
+ * <ul>
+ * <li><code>yyyy-MM-dd'T'HH:mm:ss[.SSS]XXX</code> and <code>yyyy-MM-dd'T'HH:mm:ss[.SSS]Z</code>, ISO 8601
+ * date-time</li>
+ * <li><code>yyyy-MM-dd'T'HH:mm[:ss[.SSS]]</code>, ISO 8601 date-time without timezone</li>
+ * <li><code>yyyy-MM-dd HH:mm[:ss[.SSS]]</code>, another commonly used pattern</li>
+ * <li><code>yyyy-MM-dd</code>, ISO 8601 full-date</li>
+ * </ul>
+ * <p>
+ * Values without timezone are in the default timezone. Like {@link java.text.SimpleDateFormat}, text after the
+ * longest well-formed prefix is ignored, so <code>2017-09-20T10:11:12+8</code> is <code>2017-09-20T10:11:12</code>
+ * and <code>2017-09-20 9:30</code> is <code>2017-09-20</code>. Out of range values, such as month 13, are not
+ * parsed. The format is decided by the shape of the text in one pass, with immutable formatters, so this class is
+ * thread-safe and does not use exceptions for control flow.
+ * </p>
+ */
+public final class DateParser {
 
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    /**
+     * <code>HH:mm</code>, <code>HH:mm:ss</code> or <code>HH:mm:ss.fraction</code>
+     */
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ISO_LOCAL_TIME;
+
+    /**
+     * <code>Z</code>, <code>+08</code>, <code>+0800</code> or <code>+08:00</code>
+     */
+    private static final DateTimeFormatter OFFSET_HOURS = new DateTimeFormatterBuilder().appendOffset("+HH", "Z")
+            .toFormatter();
+    private static final DateTimeFormatter OFFSET_BASIC = new DateTimeFormatterBuilder().appendOffset("+HHMM", "Z")
+            .toFormatter();
+    private static final DateTimeFormatter OFFSET_EXTENDED = new DateTimeFormatterBuilder()
+            .appendOffset("+HH:MM", "Z").toFormatter();
+
+    private static final int DATE_LENGTH = 10;
+
+    private DateParser() {
+    }
+
+    /**
+     * @param text text to parse
+     * @return parsed {@link Date}
+     * @throws ParseException if text is not in any supported format
+     */
     public static Date parse(String text) throws ParseException {
-        for (final String format : FORMATS) {
-            final SimpleDateFormat sdf = new SimpleDateFormat(format);
-            try {
-                return sdf.parse(text);
-            } catch (ParseException pe) {
-                // continue to next format
+        return Date.from(parse(text, Instant.class));
+    }
+
+    /**
+     * @param text text to parse
+     * @param targetType one of {@link Date}, {@link Instant}, {@link LocalDateTime} and {@link OffsetDateTime}
+     * @return parsed value
+     * @throws ParseException if text is not in any supported format
+     */
+    public static <T> T parse(String text, Class<T> targetType) throws ParseException {
+        T result = tryParse(text, targetType);
+        if (result == null) {
+            throw new ParseException("Unable to parse date from '" + text + '"', 0);
+        }
+        return result;
+    }
+
+    /**
+     * @param text text to parse
+     * @return parsed {@link Date}, or <code>null</code> if text is not in any supported format
+     */
+    public static Date tryParse(String text) {
+        return tryParse(text, Date.class);
+    }
+
+    /**
+     * @param text text to parse
+     * @param targetType one of {@link Date}, {@link Instant}, {@link LocalDateTime} and {@link OffsetDateTime}
+     * @return parsed value, or <code>null</code> if text is not in any supported format
+     */
+    public static <T> T tryParse(String text, Class<T> targetType) {
+        final OffsetDateTime parsed = parseOffsetDateTime(text);
+        if (parsed == null) {
+            return null;
+        }
+        final Object result;
+        if (OffsetDateTime.class.equals(targetType)) {
+            result = parsed;
+        } else if (Instant.class.equals(targetType)) {
+            result = parsed.toInstant();
+        } else if (Date.class.equals(targetType)) {
+            result = Date.from(parsed.toInstant());
+        } else if (LocalDateTime.class.equals(targetType)) {
+            result = parsed.atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        } else {
+            throw new IllegalArgumentException(String.format("unsupported target type '%s'", targetType));
+        }
+        return targetType.cast(result);
+    }
+
+    /**
+     * @return <code>null</code> if text is not in any supported format
+     */
+    private static OffsetDateTime parseOffsetDateTime(String text) {
+        if (text == null) {
+            return null;
+        }
+        final String s = text.trim();
+        final int length = s.length();
+        if (length < DATE_LENGTH || !isDate(s)) {
+            return null;
+        }
+
+        try {
+            final LocalDate date = LocalDate.parse(s.subSequence(0, DATE_LENGTH), DATE);
+            if (length == DATE_LENGTH) {
+                return atDefaultZone(date.atStartOfDay());
+            }
+
+            final char separator = s.charAt(DATE_LENGTH);
+            final int timeStart = DATE_LENGTH + 1;
+            final int timeEnd = separator == 'T' || separator == ' ' ? timeEndOf(s, timeStart) : -1;
+            if (timeEnd < 0) {
+                return atDefaultZone(date.atStartOfDay());
+            }
+            final LocalDateTime dateTime = date.atTime(LocalTime.parse(s.subSequence(timeStart, timeEnd), TIME));
+
+            final int offsetEnd = offsetEndOf(s, timeEnd);
+            if (offsetEnd < 0) {
+                return atDefaultZone(dateTime);
+            }
+            final DateTimeFormatter offsetFormat = offsetEnd - timeEnd == 5 ? OFFSET_BASIC
+                    : offsetEnd - timeEnd == 6 ? OFFSET_EXTENDED : OFFSET_HOURS;
+            return dateTime.atOffset(ZoneOffset.from(offsetFormat.parse(s.subSequence(timeEnd, offsetEnd))));
+        } catch (DateTimeException e) {
+            // right shape, but invalid value, e.g. month 13
+            return null;
+        }
+    }
+
+    private static OffsetDateTime atDefaultZone(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toOffsetDateTime();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * <code>yyyy-MM-dd</code>
+     */
+    private static boolean isDate(String s) {
+        for (int i = 0; i < DATE_LENGTH; i++) {
+            final char c = s.charAt(i);
+            if (i == 4 || i == 7) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!isDigit(c)) {
+                return false;
             }
         }
-        throw new ParseException("Unable to parse date from '" + text + '"', 0);
+        return true;
     }
 
+    private static boolean isDigits(String s, int start, int count) {
+        if (start + count > s.length()) {
+            return false;
+        }
+        for (int i = start; i < start + count; i++) {
+            if (!isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return end of the longest <code>HH:mm[:ss[.fraction]]</code> starting at <code>start</code>, or
+     *         <code>-1</code> if there is none
+     */
+    private static int timeEndOf(String s, int start) {
+        if (!isDigits(s, start, 2) || !isChar(s, start + 2, ':') || !isDigits(s, start + 3, 2)) {
+            return -1;
+        }
+        int end = start + 5;
+        if (!isChar(s, end, ':') || !isDigits(s, end + 1, 2)) {
+            return end;
+        }
+        end += 3;
+        if (!isChar(s, end, '.') || !isDigits(s, end + 1, 1)) {
+            return end;
+        }
+        end++;
+        final int max = end + 9;
+        while (end < max && isDigits(s, end, 1)) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * @return end of the longest <code>Z</code>, <code>+HH:MM</code>, <code>+HHMM</code> or <code>+HH</code>
+     *         starting at <code>start</code>, or <code>-1</code> if there is none
+     */
+    private static int offsetEndOf(String s, int start) {
+        if (isChar(s, start, 'Z')) {
+            return start + 1;
+        }
+        if (!(isChar(s, start, '+') || isChar(s, start, '-')) || !isDigits(s, start + 1, 2)) {
+            return -1;
+        }
+        if (isChar(s, start + 3, ':') && isDigits(s, start + 4, 2)) {
+            return start + 6;
+        }
+        if (isDigits(s, start + 3, 2)) {
+            return start + 5;
+        }
+        return start + 3;
+    }
+
+    private static boolean isChar(String s, int index, char c) {
+        return index < s.length() && s.charAt(index) == c;
+    }
 }
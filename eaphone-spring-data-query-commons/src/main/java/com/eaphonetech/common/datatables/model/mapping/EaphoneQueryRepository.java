@@ -1,12 +1,16 @@
 package com.eaphonetech.common.datatables.model.mapping;
 
 import java.io.Serializable;
+import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.NoRepositoryBean;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
+import com.eaphonetech.common.datatables.util.ProjectionType;
+
 @NoRepositoryBean
 public interface EaphoneQueryRepository<T, ID extends Serializable>
 		extends PagingAndSortingRepository<T, ID>, CrudRepository<T, ID> {
@@ -29,6 +33,32 @@ public interface EaphoneQueryRepository<T, ID extends Serializable>
 	 */
 	<View> QueryOutput<View> findAll(QueryInput input, Function<T, View> converter);
 
+	/**
+	 * Returns the filtered list for the given {@link QueryInput}, reading only the properties of a projection. The
+	 * fields to read are derived once per projection class, <code>select</code> of the input is ignored.
+	 *
+	 * @param <P> generic
+	 * @param input the {@link QueryInput} mapped from the Ajax request
+	 * @param projection a record, or an interface with getters only, named as properties of the entity
+	 * @return a {@link QueryOutput}
+	 * @see ProjectionType
+	 */
+	<P> QueryOutput<P> findAll(QueryInput input, Class<P> projection);
+
+	/**
+	 * Returns the filtered records for the given {@link QueryInput} one by one, without loading all of them into
+	 * memory, e.g. for exporting. <code>offset</code>, <code>limit</code> (<code>-1</code> for all records),
+	 * <code>order_by</code> and <code>where</code> are applied, no counting is done.
+	 * <p>
+	 * The stream holds database resources and must be closed after use, e.g. with try-with-resources. For JPA it
+	 * must be consumed inside a transaction.
+	 * </p>
+	 *
+	 * @param input the {@link QueryInput} mapped from the Ajax request
+	 * @return a {@link Stream} of records
+	 */
+	Stream<T> streamAll(QueryInput input);
+
 	/**
 	 * Returns the filtered count for the given {@link CountInput}.
 	 * 
@@ -37,4 +67,13 @@ public interface EaphoneQueryRepository<T, ID extends Serializable>
 	 */
 	CountOutput count(CountInput input);
 
+	/**
+	 * Returns the filtered counts of many {@link CountInput}s at once, e.g. one per filter chip of a screen, in a
+	 * single query. The total is the same for every facet.
+	 *
+	 * @param inputs the {@link CountInput} of each facet
+	 * @return a {@link CountOutput} for each key of <code>inputs</code>, in the same order
+	 */
+	Map<String, CountOutput> countFacets(Map<String, CountInput> inputs);
+
 }
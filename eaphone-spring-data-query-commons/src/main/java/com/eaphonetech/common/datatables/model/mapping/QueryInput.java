@@ -48,4 +48,27 @@ public class QueryInput {
 	 * Per-column search parameter
 	 */
 	private Map<String, QueryFilter> where = new HashMap<>();
+
+	/**
+	 * Fields to read, named as in <code>where</code>; <code>null</code> or empty to read whole records. The id and
+	 * the fields ordered by are always read.
+	 */
+	private List<String> select;
+
+	/**
+	 * How total and filtered records are counted, <code>null</code> to use the default of the repository
+	 */
+	private CountMode count_mode;
+
+	/**
+	 * Keyset pagination: read the page after this cursor, i.e. <code>end_cursor</code> of previous page.
+	 * <code>offset</code> is ignored when a cursor is given.
+	 */
+	private String after;
+
+	/**
+	 * Keyset pagination: read the page before this cursor, i.e. <code>start_cursor</code> of next page.
+	 * <code>offset</code> is ignored when a cursor is given.
+	 */
+	private String before;
 }
@@ -33,6 +33,25 @@ public class QueryOutput<T> {
     @JsonView(View.class)
     private List<T> data = Collections.emptyList();
 
+    /**
+     * Whether there are more records after this page of data. This is the only paging hint when counting is skipped
+     * by {@link CountMode#NONE}, in which case <code>total</code> and <code>filtered</code> are <code>-1</code>.
+     */
+    @JsonView(View.class)
+    private Boolean has_more;
+
+    /**
+     * Opaque cursor of the first record in <code>data</code>, to read the previous page with <code>before</code>.
+     */
+    @JsonView(View.class)
+    private String start_cursor;
+
+    /**
+     * Opaque cursor of the last record in <code>data</code>, to read the next page with <code>after</code>.
+     */
+    @JsonView(View.class)
+    private String end_cursor;
+
     /**
      * Optional: If an error occurs during the running of the server-side processing script, you can
      * inform the user of this error by passing back the error message to be displayed using this
@@ -0,0 +1,100 @@
+package com.eaphonetech.common.datatables.model.mapping.filter;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Operators of a {@link QueryFilter}, named as in the request.
+ */
+public enum FilterOperator {
+    _gt(QueryFilter::get_gt),
+    _gte(QueryFilter::get_gte),
+    _lt(QueryFilter::get_lt),
+    _lte(QueryFilter::get_lte),
+    _eq(QueryFilter::get_eq),
+    _ne(QueryFilter::get_ne),
+    _in(QueryFilter::get_in),
+    _nin(QueryFilter::get_nin),
+    _all(QueryFilter::get_all),
+    _regex(QueryFilter::get_regex),
+    _like(QueryFilter::get_like),
+    _exists(QueryFilter::get_exists),
+    _null(QueryFilter::get_null),
+    _empty(QueryFilter::get_empty),
+    _isvoid(QueryFilter::get_isvoid);
+
+    private static final FilterOperator[] VALUES = values();
+
+    private final Function<QueryFilter, Object> getter;
+
+    FilterOperator(Function<QueryFilter, Object> getter) {
+        this.getter = getter;
+    }
+
+    /**
+     * @param filter the filter
+     * @return value of this operator in the given filter, may be <code>null</code>
+     */
+    public Object valueOf(QueryFilter filter) {
+        return filter == null ? null : getter.apply(filter);
+    }
+
+    /**
+     * @param filter the filter
+     * @return whether this operator is present in the given filter
+     */
+    public boolean isPresent(QueryFilter filter) {
+        return valueOf(filter) != null;
+    }
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * @param filter the filter
+     * @return bit mask of all operators present in the given filter
+     */
+    public static int maskOf(QueryFilter filter) {
+        int mask = 0;
+        if (filter != null) {
+            for (FilterOperator op : VALUES) {
+                if (op.isPresent(filter)) {
+                    mask |= op.bit();
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @param filter the filter
+     * @return all operators present in the given filter
+     */
+    public static Set<FilterOperator> of(QueryFilter filter) {
+        Set<FilterOperator> result = EnumSet.noneOf(FilterOperator.class);
+        if (filter != null) {
+            for (FilterOperator op : VALUES) {
+                if (op.isPresent(filter)) {
+                    result.add(op);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param mask bit mask created by {@link #maskOf(QueryFilter)}
+     * @return all operators in the given mask
+     */
+    public static Set<FilterOperator> of(int mask) {
+        Set<FilterOperator> result = EnumSet.noneOf(FilterOperator.class);
+        for (FilterOperator op : VALUES) {
+            if ((mask & op.bit()) != 0) {
+                result.add(op);
+            }
+        }
+        return result;
+    }
+}
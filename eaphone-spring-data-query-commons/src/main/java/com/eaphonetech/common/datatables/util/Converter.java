@@ -28,6 +28,9 @@ public class Converter {
         output.setError(src.getError());
         output.setFiltered(src.getFiltered());
         output.setTotal(src.getTotal());
+        output.setHas_more(src.getHas_more());
+        output.setStart_cursor(src.getStart_cursor());
+        output.setEnd_cursor(src.getEnd_cursor());
 
         return output;
     }
@@ -1,6 +1,5 @@
 package com.eaphonetech.common.datatables.util;
 
-import java.text.ParseException;
 import java.util.Date;
 
 import com.eaphonetech.common.datatables.model.mapping.DateParser;
@@ -11,10 +10,6 @@ import lombok.experimental.UtilityClass;
 public class DateUtils {
 
 	public Date tryParse(String text) {
-		try {
-			return DateParser.parse(text);
-		} catch (ParseException e) {
-			return null;
-		}
+		return DateParser.tryParse(text);
 	}
 }
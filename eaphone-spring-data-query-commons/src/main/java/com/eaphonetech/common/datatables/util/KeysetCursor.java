@@ -0,0 +1,274 @@
+package com.eaphonetech.common.datatables.util;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.NullValueInNestedPathException;
+import org.springframework.beans.PropertyAccessor;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.StringUtils;
+
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+
+/**
+ * Keyset (seek) pagination cursor. A cursor holds the sort keys of one row, plus the id as tie breaker, so the next
+ * page is read by <code>WHERE (k1, id) &gt; (?, ?)</code> instead of skipping <code>offset</code> rows.
+ * <p>
+ * Cursors are opaque to clients: the text is URL-safe Base64 of the sort keys and their values. Values are kept as
+ * text, and converted to the field type the same way as filter values. <code>null</code> values are treated as the
+ * lowest values, as MongoDB does natively. Other databases, such as PostgreSQL, sort <code>null</code> otherwise, so
+ * the sort of SQL queries must state it with {@link #nullsLowest(Sort)}.
+ * </p>
+ */
+public final class KeysetCursor {
+    private static final String NULL = "!";
+
+    /**
+     * sort keys, including the id, in the direction of <code>order_by</code>
+     */
+    private final List<Sort.Order> keys;
+    private final List<String> values;
+    private final boolean before;
+
+    private KeysetCursor(List<Sort.Order> keys, List<String> values, boolean before) {
+        this.keys = keys;
+        this.values = values;
+        this.before = before;
+    }
+
+    /**
+     * @param input the query
+     * @param idProperty property of the id
+     * @return cursor of <code>after</code> or <code>before</code>, <code>null</code> if neither is given
+     * @throws IllegalArgumentException if the cursor is invalid, or does not match <code>order_by</code>
+     */
+    public static KeysetCursor of(QueryInput input, String idProperty) {
+        final boolean before = StringUtils.hasLength(input.getBefore());
+        if (before && StringUtils.hasLength(input.getAfter())) {
+            throw new IllegalArgumentException("only one of after and before is allowed");
+        }
+        final String text = before ? input.getBefore() : input.getAfter();
+        if (!StringUtils.hasLength(text)) {
+            return null;
+        }
+        final List<Sort.Order> keys = keysOf(input.getOrders(), idProperty);
+        return new KeysetCursor(keys, decode(text, keys), before);
+    }
+
+    /**
+     * @param input the query
+     * @return whether <code>after</code> or <code>before</code> is given
+     */
+    public static boolean isKeyset(QueryInput input) {
+        return StringUtils.hasLength(input.getAfter()) || StringUtils.hasLength(input.getBefore());
+    }
+
+    /**
+     * @param orders <code>order_by</code> of the query
+     * @param idProperty property of the id, <code>null</code> if no tie breaker is needed
+     * @return orders followed by the id, if not ordered by id already
+     */
+    public static List<Sort.Order> keysOf(List<Sort.Order> orders, String idProperty) {
+        List<Sort.Order> keys = new ArrayList<>(orders.size() + 1);
+        boolean hasId = idProperty == null;
+        for (final Sort.Order o : orders) {
+            hasId |= o.getProperty().equals(idProperty);
+            keys.add(o);
+        }
+        if (!hasId) {
+            keys.add(Sort.Order.asc(idProperty));
+        }
+        return keys;
+    }
+
+    /**
+     * @param input the query
+     * @param idProperty property of the id, <code>null</code> if no tie breaker is needed
+     * @return sort to read the page with, reversed if reading <code>before</code> a cursor
+     */
+    public static Sort sortOf(QueryInput input, String idProperty) {
+        return sortOf(input.getOrders(), idProperty, StringUtils.hasLength(input.getBefore()));
+    }
+
+    /**
+     * @param orders orders of the query
+     * @param idProperty property of the id, <code>null</code> if no tie breaker is needed
+     * @param before whether reading <code>before</code> a cursor
+     * @return sort to read the page with
+     */
+    public static Sort sortOf(List<Sort.Order> orders, String idProperty, boolean before) {
+        final List<Sort.Order> keys = keysOf(orders, idProperty);
+        if (!before) {
+            return Sort.by(keys);
+        }
+        List<Sort.Order> reversed = new ArrayList<>(keys.size());
+        for (final Sort.Order o : keys) {
+            reversed.add(o.with(o.getDirection().isAscending() ? Sort.Direction.DESC : Sort.Direction.ASC));
+        }
+        return Sort.by(reversed);
+    }
+
+    /**
+     * @param sort a sort
+     * @return the same sort with <code>null</code> as the lowest value, i.e. first when ascending and last when
+     *         descending, as the cursor filters expect
+     */
+    public static Sort nullsLowest(Sort sort) {
+        List<Sort.Order> orders = new ArrayList<>();
+        for (final Sort.Order o : sort) {
+            orders.add(o.getDirection().isAscending() ? o.nullsFirst() : o.nullsLast());
+        }
+        return Sort.by(orders);
+    }
+
+    /**
+     * @param input the query
+     * @return offset to read the page from, <code>0</code> when reading from a cursor
+     */
+    public static long offsetOf(QueryInput input) {
+        return isKeyset(input) ? 0L : input.getOffset();
+    }
+
+    /**
+     * @return whether the page is read backwards, so its rows must be reversed after reading
+     */
+    public boolean isBefore() {
+        return before;
+    }
+
+    /**
+     * Expand <code>(k1, k2, id) &gt; (v1, v2, vid)</code> into
+     * <code>k1 &gt; v1 OR (k1 = v1 AND k2 &gt; v2) OR (k1 = v1 AND k2 = v2 AND id &gt; vid)</code>, with the
+     * comparison of each key following its direction.
+     *
+     * @return branches to be joined with OR, filters in each branch are joined with AND
+     */
+    public List<Map<String, QueryFilter>> getFilters() {
+        List<Map<String, QueryFilter>> branches = new ArrayList<>();
+        Map<String, QueryFilter> prefix = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            final String property = keys.get(i).getProperty();
+            final String value = values.get(i);
+            final boolean greater = keys.get(i).getDirection().isAscending() != before;
+
+            if (greater) {
+                QueryFilter beyond = new QueryFilter();
+                if (value == null) {
+                    // anything but null is greater than null
+                    beyond.set_nin(Collections.singletonList(null));
+                } else {
+                    beyond.set_gt(value);
+                }
+                branches.add(branch(prefix, property, beyond));
+            } else if (value != null) {
+                QueryFilter less = new QueryFilter();
+                less.set_lt(value);
+                branches.add(branch(prefix, property, less));
+                QueryFilter isNull = new QueryFilter();
+                isNull.set_null(true);
+                branches.add(branch(prefix, property, isNull));
+            }
+
+            QueryFilter equal = new QueryFilter();
+            if (value == null) {
+                equal.set_null(true);
+            } else {
+                equal.set_eq(value);
+            }
+            prefix.put(property, equal);
+        }
+        return branches;
+    }
+
+    private static Map<String, QueryFilter> branch(Map<String, QueryFilter> prefix, String property,
+            QueryFilter filter) {
+        Map<String, QueryFilter> branch = new LinkedHashMap<>(prefix);
+        branch.put(property, filter);
+        return branch;
+    }
+
+    /**
+     * @param keys sort keys, created by {@link #keysOf(List, String)}
+     * @param values value of each key in a row
+     * @return the cursor text
+     */
+    public static String encode(List<Sort.Order> keys, List<?> values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                sb.append('&');
+            }
+            final Sort.Order key = keys.get(i);
+            sb.append(key.getDirection().isAscending() ? 'a' : 'd').append(':')
+                    .append(URLEncoder.encode(key.getProperty(), StandardCharsets.UTF_8)).append('=');
+            final String text = toText(values.get(i));
+            sb.append(text == null ? NULL : URLEncoder.encode(text, StandardCharsets.UTF_8));
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> decode(String cursor, List<Sort.Order> keys) {
+        final String text;
+        try {
+            text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor", e);
+        }
+        final String[] parts = text.split("&", -1);
+        if (parts.length != keys.size()) {
+            throw new IllegalArgumentException("cursor does not match order_by");
+        }
+        List<String> values = new ArrayList<>(parts.length);
+        for (int i = 0; i < parts.length; i++) {
+            final Sort.Order key = keys.get(i);
+            final String expected = (key.getDirection().isAscending() ? "a:" : "d:")
+                    + URLEncoder.encode(key.getProperty(), StandardCharsets.UTF_8) + "=";
+            if (!parts[i].startsWith(expected)) {
+                throw new IllegalArgumentException("cursor does not match order_by");
+            }
+            final String value = parts[i].substring(expected.length());
+            values.add(NULL.equals(value) ? null : URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return values;
+    }
+
+    /**
+     * Cursor values are converted like filter values, so dates are written in ISO 8601.
+     */
+    private static String toText(Object value) {
+        if (value == null) {
+            return null;
+        } else if (value instanceof Date) {
+            return Instant.ofEpochMilli(((Date) value).getTime()).toString();
+        } else if (value instanceof TemporalAccessor) {
+            return value.toString();
+        } else if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return value.toString();
+    }
+
+    /**
+     * @param accessor accessor of a row
+     * @param property (possibly nested) property
+     * @return value of the property, <code>null</code> if any object on the path is <code>null</code>
+     */
+    public static Object read(PropertyAccessor accessor, String property) {
+        try {
+            return accessor.getPropertyValue(property);
+        } catch (NullValueInNestedPathException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.eaphonetech.common.datatables.util;
+
+import java.util.Objects;
+
+import org.springframework.data.domain.AbstractPageRequest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * {@link Pageable} starting at any offset. Unlike {@link PageRequest}, the offset does not have to be a multiple
+ * of the page size, so <code>offset = 15, limit = 10</code> reads records 15 to 24.
+ */
+public class OffsetPageRequest extends AbstractPageRequest {
+    private static final long serialVersionUID = -1839637409328826137L;
+
+    private final long offset;
+    private final Sort sort;
+
+    public OffsetPageRequest(long offset, int limit, Sort sort) {
+        super((int) Math.min(offset / limit, Integer.MAX_VALUE), limit);
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be less than zero");
+        }
+        this.offset = offset;
+        this.sort = sort == null ? Sort.unsorted() : sort;
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public Sort getSort() {
+        return sort;
+    }
+
+    @Override
+    public Pageable next() {
+        return new OffsetPageRequest(offset + getPageSize(), getPageSize(), sort);
+    }
+
+    @Override
+    public Pageable previous() {
+        return offset < getPageSize() ? first() : new OffsetPageRequest(offset - getPageSize(), getPageSize(), sort);
+    }
+
+    @Override
+    public Pageable first() {
+        return new OffsetPageRequest(0, getPageSize(), sort);
+    }
+
+    @Override
+    public Pageable withPage(int pageNumber) {
+        return new OffsetPageRequest((long) pageNumber * getPageSize(), getPageSize(), sort);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof OffsetPageRequest)) {
+            return false;
+        }
+        OffsetPageRequest that = (OffsetPageRequest) obj;
+        return offset == that.offset && getPageSize() == that.getPageSize() && sort.equals(that.sort);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(offset, getPageSize(), sort);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Offset request [offset: %d, size %d, sort: %s]", offset, getPageSize(), sort);
+    }
+}
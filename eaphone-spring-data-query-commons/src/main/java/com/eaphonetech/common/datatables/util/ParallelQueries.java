@@ -0,0 +1,131 @@
+package com.eaphonetech.common.datatables.util;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the counts of a query alongside the page fetch, for <code>eaphone.query.parallel</code>.
+ * <p>
+ * Tasks are {@link FutureTask}s, so cancelling one interrupts the thread running it. Without an executor tasks run
+ * at once in the calling thread, so callers can use the same code path in both modes.
+ * </p>
+ */
+@Slf4j
+@UtilityClass
+public class ParallelQueries {
+
+    private static volatile ExecutorService defaultExecutor;
+
+    /**
+     * @return virtual thread per task on Java 21+, otherwise a bounded pool of daemon threads which runs tasks in
+     *         the calling thread when all threads are busy
+     */
+    public static Executor defaultExecutor() {
+        ExecutorService executor = defaultExecutor;
+        if (executor == null) {
+            synchronized (ParallelQueries.class) {
+                executor = defaultExecutor;
+                if (executor == null) {
+                    executor = createDefaultExecutor();
+                    defaultExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static ExecutorService createDefaultExecutor() {
+        try {
+            // Java 21+, looked up by reflection to keep compiling for Java 17
+            Method virtual = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.debug("virtual threads not available, using a thread pool");
+        }
+        final AtomicInteger count = new AtomicInteger();
+        final int size = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "eaphone-query-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * @param executor executor to run the task on, <code>null</code> to run it now in the calling thread
+     * @param task the task
+     * @return future of the task
+     */
+    public static <V> Future<V> submit(Executor executor, Callable<V> task) {
+        FutureTask<V> future = new FutureTask<>(task);
+        if (executor == null) {
+            future.run();
+        } else {
+            executor.execute(future);
+        }
+        return future;
+    }
+
+    /**
+     * Wait for the result of a task. The task is cancelled if waiting times out or is interrupted.
+     *
+     * @param future the task
+     * @param timeout how long to wait at most, <code>null</code> to wait until done
+     * @return the result
+     * @throws RuntimeException if the task failed, timed out or was cancelled; unchecked exceptions thrown by the
+     *             task are rethrown as is
+     */
+    public static <V> V await(Future<V> future, Duration timeout) {
+        try {
+            return timeout == null ? future.get() : future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RuntimeException("query timed out after " + timeout, e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for query", e);
+        } catch (CancellationException e) {
+            throw new RuntimeException("query cancelled", e);
+        }
+    }
+
+    /**
+     * Cancel tasks which are no longer needed, interrupting them if running.
+     *
+     * @param futures tasks, may contain <code>null</code>
+     */
+    public static void cancel(Future<?>... futures) {
+        for (final Future<?> future : futures) {
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+}
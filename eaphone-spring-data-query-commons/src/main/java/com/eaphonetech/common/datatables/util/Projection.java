@@ -0,0 +1,45 @@
+package com.eaphonetech.common.datatables.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.util.StringUtils;
+
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Fields read for <code>select</code> of a request.
+ */
+@UtilityClass
+public class Projection {
+
+    /**
+     * @param input the request
+     * @param idProperty property of the id, <code>null</code> for composite ids
+     * @return selected fields followed by the id and the ordering, which cursors are read from, without duplicates;
+     *         <code>null</code> to read whole records
+     */
+    public static List<String> fieldsOf(QueryInput input, String idProperty) {
+        if (input.getSelect() == null || input.getSelect().isEmpty()) {
+            return null;
+        }
+        Set<String> fields = new LinkedHashSet<>();
+        for (final String field : input.getSelect()) {
+            if (StringUtils.hasText(field)) {
+                fields.add(field.trim());
+            }
+        }
+        if (fields.isEmpty()) {
+            return null;
+        }
+        for (final Sort.Order key : KeysetCursor.keysOf(input.getOrders(), idProperty)) {
+            fields.add(key.getProperty());
+        }
+        return new ArrayList<>(fields);
+    }
+}
@@ -0,0 +1,192 @@
+package com.eaphonetech.common.datatables.util;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.data.projection.ProjectionInformation;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+
+/**
+ * A record or closed interface projection of an entity. Its properties are derived once per class: they are the
+ * fields read from the database, named as the properties of the entity. Properties typed as another record or
+ * interface are nested projections, e.g. <code>CustomerView customer()</code> reads <code>customer.name</code>.
+ *
+ * @param <P> the projection
+ */
+public final class ProjectionType<P> {
+
+    private static final Map<Class<?>, ProjectionType<?>> TYPES = new ConcurrentHashMap<>();
+
+    private static final SpelAwareProxyProjectionFactory FACTORY = new SpelAwareProxyProjectionFactory();
+
+    /**
+     * nested projections deeper than this are read as plain values
+     */
+    private static final int MAX_DEPTH = 3;
+
+    private final Class<P> type;
+    private final List<String> fields;
+    /**
+     * record components, <code>null</code> for interfaces
+     */
+    private final List<Component> components;
+    private final Constructor<P> constructor;
+
+    private record Component(String name, ProjectionType<?> nested) {
+    }
+
+    private ProjectionType(Class<P> type, int depth) {
+        this.type = type;
+        List<String> paths = new ArrayList<>();
+        if (type.isRecord()) {
+            final RecordComponent[] recordComponents = type.getRecordComponents();
+            List<Component> list = new ArrayList<>(recordComponents.length);
+            Class<?>[] parameterTypes = new Class<?>[recordComponents.length];
+            for (int i = 0; i < recordComponents.length; i++) {
+                final Class<?> propertyType = recordComponents[i].getType();
+                parameterTypes[i] = propertyType;
+                final ProjectionType<?> nested = isNested(propertyType, depth)
+                        ? new ProjectionType<>(propertyType, depth + 1)
+                        : null;
+                list.add(new Component(recordComponents[i].getName(), nested));
+                addPaths(paths, recordComponents[i].getName(), nested);
+            }
+            this.components = Collections.unmodifiableList(list);
+            try {
+                this.constructor = type.getDeclaredConstructor(parameterTypes);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("no canonical constructor of " + type.getName(), e);
+            }
+        } else if (type.isInterface()) {
+            final ProjectionInformation information = FACTORY.getProjectionInformation(type);
+            if (!information.isClosed()) {
+                throw new IllegalArgumentException("open projection " + type.getName()
+                        + " is not supported, the fields to read cannot be derived from it");
+            }
+            for (final PropertyDescriptor property : information.getInputProperties()) {
+                final Class<?> propertyType = property.getPropertyType();
+                addPaths(paths, property.getName(),
+                        isNested(propertyType, depth) ? new ProjectionType<>(propertyType, depth + 1) : null);
+            }
+            this.components = null;
+            this.constructor = null;
+        } else {
+            throw new IllegalArgumentException(
+                    "projection " + type.getName() + " must be a record or an interface");
+        }
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("projection " + type.getName() + " has no properties");
+        }
+        this.fields = Collections.unmodifiableList(paths);
+    }
+
+    private static boolean isNested(Class<?> propertyType, int depth) {
+        return depth < MAX_DEPTH && (propertyType.isRecord() || propertyType.isInterface())
+                && !propertyType.getName().startsWith("java.") && !Collection.class.isAssignableFrom(propertyType)
+                && !Map.class.isAssignableFrom(propertyType);
+    }
+
+    private static void addPaths(List<String> paths, String name, ProjectionType<?> nested) {
+        if (nested == null) {
+            paths.add(name);
+        } else {
+            for (final String field : nested.fields) {
+                paths.add(name + "." + field);
+            }
+        }
+    }
+
+    /**
+     * @param type a record or a closed interface
+     * @return the projection, derived once per class
+     * @throws IllegalArgumentException if the type cannot be a projection
+     */
+    @SuppressWarnings("unchecked")
+    public static <P> ProjectionType<P> of(Class<P> type) {
+        return (ProjectionType<P>) TYPES.computeIfAbsent(type, t -> new ProjectionType<>(t, 0));
+    }
+
+    /**
+     * @return dotted paths of the entity to read, see {@link Projection#fieldsOf}
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * @param input the request
+     * @return a copy of the request, selecting the fields of this projection
+     */
+    public QueryInput selecting(QueryInput input) {
+        QueryInput copy = new QueryInput();
+        copy.setDraw(input.getDraw());
+        copy.setOffset(input.getOffset());
+        copy.setLimit(input.getLimit());
+        copy.setOrder_by(input.getOrder_by());
+        copy.setWhere(input.getWhere());
+        copy.setCount_mode(input.getCount_mode());
+        copy.setAfter(input.getAfter());
+        copy.setBefore(input.getBefore());
+        copy.setSelect(fields);
+        return copy;
+    }
+
+    /**
+     * Create the projection from the values read with {@link #getFields()}, without a record in between. Interfaces
+     * are proxies reading the map, records are constructed from its values.
+     *
+     * @param values values by property name, nested projections are maps of their own; may be <code>null</code>
+     * @return the projection, <code>null</code> if there are no values
+     */
+    @SuppressWarnings("unchecked")
+    public P fromValues(Map<String, ?> values) {
+        if (values == null) {
+            return null;
+        }
+        if (components == null) {
+            return FACTORY.createProjection(type, values);
+        }
+        Object[] args = new Object[components.size()];
+        for (int i = 0; i < args.length; i++) {
+            final Component component = components.get(i);
+            final Object value = values.get(component.name());
+            args[i] = component.nested() == null ? value : component.nested().fromValues((Map<String, ?>) value);
+        }
+        return BeanUtils.instantiateClass(constructor, args);
+    }
+
+    /**
+     * Create the projection of a record read with {@link #getFields()}. Interfaces are proxies reading the record,
+     * records are constructed from its values.
+     *
+     * @param source the record, may be <code>null</code>
+     * @return the projection, <code>null</code> if there is no source
+     */
+    public P create(Object source) {
+        if (source == null) {
+            return null;
+        }
+        if (components == null) {
+            return FACTORY.createProjection(type, source);
+        }
+        final DirectFieldAccessor accessor = new DirectFieldAccessor(source);
+        Object[] args = new Object[components.size()];
+        for (int i = 0; i < args.length; i++) {
+            final Component component = components.get(i);
+            final Object value = accessor.getPropertyValue(component.name());
+            args[i] = component.nested() == null ? value : component.nested().create(value);
+        }
+        return BeanUtils.instantiateClass(constructor, args);
+    }
+}
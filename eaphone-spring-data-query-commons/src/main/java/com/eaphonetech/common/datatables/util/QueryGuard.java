@@ -0,0 +1,180 @@
+package com.eaphonetech.common.datatables.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+
+import com.eaphonetech.common.datatables.config.EaphoneQueryProperties;
+import com.eaphonetech.common.datatables.config.QueryLimits;
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryOrder;
+import com.eaphonetech.common.datatables.model.mapping.filter.FilterOperator;
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+
+/**
+ * Checks requests against the {@link QueryLimits} of a repository and the limits of
+ * {@link EaphoneQueryProperties}. Checks only read the request, so rejected requests never reach the database.
+ */
+public final class QueryGuard {
+
+	/**
+	 * accepts every request
+	 */
+	public static final QueryGuard NONE = new QueryGuard(null, null, -1, Map.of(), 0, 0, 0);
+
+	private static final int ALL_OPERATORS = -1;
+
+	/**
+	 * fields that may be filtered, <code>null</code> for any
+	 */
+	private final Set<String> filterable;
+	/**
+	 * fields that may be ordered by, <code>null</code> for any
+	 */
+	private final Set<String> sortable;
+	/**
+	 * {@link FilterOperator#bit()}s allowed on fields without their own
+	 */
+	private final int operators;
+	private final Map<String, Integer> fieldOperators;
+	private final int maxInSize;
+	private final int maxLimit;
+	private final int maxRegexLength;
+	private final boolean unrestricted;
+
+	private QueryGuard(Set<String> filterable, Set<String> sortable, int operators,
+			Map<String, Integer> fieldOperators, int maxInSize, int maxLimit, int maxRegexLength) {
+		this.filterable = filterable;
+		this.sortable = sortable;
+		this.operators = operators;
+		this.fieldOperators = fieldOperators;
+		this.maxInSize = maxInSize;
+		this.maxLimit = maxLimit;
+		this.maxRegexLength = maxRegexLength;
+		this.unrestricted = filterable == null && sortable == null && operators == ALL_OPERATORS
+				&& fieldOperators.isEmpty() && maxInSize <= 0 && maxLimit <= 0 && maxRegexLength <= 0;
+	}
+
+	/**
+	 * @param repositoryInterface repository, may be annotated with {@link QueryLimits}
+	 * @param properties limits of all repositories
+	 * @return the guard of the repository, {@link #NONE} if there are no limits
+	 */
+	public static QueryGuard of(Class<?> repositoryInterface, EaphoneQueryProperties properties) {
+		final QueryLimits limits = repositoryInterface == null ? null
+				: AnnotatedElementUtils.findMergedAnnotation(repositoryInterface, QueryLimits.class);
+		int operators = maskOf(properties.getAllowedOperators());
+		Set<String> filterable = null;
+		Set<String> sortable = null;
+		Map<String, Integer> fieldOperators = new HashMap<>();
+		int maxInSize = properties.getMaxInSize();
+		int maxLimit = properties.getMaxLimit();
+		int maxRegexLength = properties.getMaxRegexLength();
+		if (limits != null) {
+			if (limits.operators().length > 0) {
+				operators = maskOf(Arrays.asList(limits.operators()));
+			}
+			for (final QueryLimits.Field field : limits.fields()) {
+				fieldOperators.put(field.name(), maskOf(Arrays.asList(field.operators())));
+			}
+			if (limits.filterable().length > 0) {
+				filterable = new HashSet<>(Arrays.asList(limits.filterable()));
+				filterable.addAll(fieldOperators.keySet());
+			}
+			if (limits.sortable().length > 0) {
+				sortable = new HashSet<>(Arrays.asList(limits.sortable()));
+			}
+			maxInSize = limits.maxInSize() < 0 ? maxInSize : limits.maxInSize();
+			maxLimit = limits.maxLimit() < 0 ? maxLimit : limits.maxLimit();
+			maxRegexLength = limits.maxRegexLength() < 0 ? maxRegexLength : limits.maxRegexLength();
+		}
+		QueryGuard guard = new QueryGuard(filterable, sortable, operators, fieldOperators, maxInSize, maxLimit,
+				maxRegexLength);
+		return guard.unrestricted ? NONE : guard;
+	}
+
+	private static int maskOf(Collection<FilterOperator> operators) {
+		if (operators == null || operators.isEmpty()) {
+			return ALL_OPERATORS;
+		}
+		int mask = 0;
+		for (final FilterOperator operator : operators) {
+			mask |= operator.bit();
+		}
+		return mask;
+	}
+
+	/**
+	 * @param input a request of <code>findAll</code> or <code>streamAll</code>
+	 * @throws IllegalArgumentException if the request exceeds a limit
+	 */
+	public void check(QueryInput input) {
+		if (unrestricted) {
+			return;
+		}
+		if (maxLimit > 0 && (input.getLimit() < 0 || input.getLimit() > maxLimit)) {
+			throw new IllegalArgumentException(
+					"limit " + input.getLimit() + " is not allowed, at most " + maxLimit + " records per request");
+		}
+		if (sortable != null && input.getOrder_by() != null) {
+			for (final QueryOrder order : input.getOrder_by()) {
+				for (final String field : order.getValues().keySet()) {
+					if (!sortable.contains(field)) {
+						throw new IllegalArgumentException("ordering by " + field + " is not allowed");
+					}
+				}
+			}
+		}
+		check(input.getWhere());
+	}
+
+	/**
+	 * @param where filters of a request, e.g. a <code>CountInput</code>
+	 * @throws IllegalArgumentException if a filter exceeds a limit
+	 */
+	public void check(Map<String, QueryFilter> where) {
+		if (unrestricted || where == null) {
+			return;
+		}
+		for (final Map.Entry<String, QueryFilter> entry : where.entrySet()) {
+			final String field = entry.getKey();
+			final QueryFilter filter = entry.getValue();
+			if (filterable != null && !filterable.contains(field)) {
+				throw new IllegalArgumentException("filtering " + field + " is not allowed");
+			}
+			final int denied = FilterOperator.maskOf(filter) & ~fieldOperators.getOrDefault(field, operators);
+			if (denied != 0) {
+				throw new IllegalArgumentException(
+						"operators " + FilterOperator.of(denied) + " are not allowed on " + field);
+			}
+			if (filter == null) {
+				continue;
+			}
+			checkSize(field, FilterOperator._in, filter.get_in());
+			checkSize(field, FilterOperator._nin, filter.get_nin());
+			checkSize(field, FilterOperator._all, filter.get_all());
+			checkLength(field, FilterOperator._regex, filter.get_regex());
+			checkLength(field, FilterOperator._like, filter.get_like());
+		}
+	}
+
+	private void checkSize(String field, FilterOperator operator, List<Object> values) {
+		if (maxInSize > 0 && values != null && values.size() > maxInSize) {
+			throw new IllegalArgumentException(operator + " on " + field + " has " + values.size()
+					+ " values, at most " + maxInSize + " are allowed");
+		}
+	}
+
+	private void checkLength(String field, FilterOperator operator, String pattern) {
+		if (maxRegexLength > 0 && pattern != null && pattern.length() > maxRegexLength) {
+			throw new IllegalArgumentException(operator + " on " + field + " is " + pattern.length()
+					+ " characters long, at most " + maxRegexLength + " are allowed");
+		}
+	}
+}
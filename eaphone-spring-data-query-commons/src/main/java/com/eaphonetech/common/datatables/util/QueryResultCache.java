@@ -0,0 +1,194 @@
+package com.eaphonetech.common.datatables.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import com.eaphonetech.common.datatables.model.mapping.CountInput;
+import com.eaphonetech.common.datatables.model.mapping.CountOutput;
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryOutput;
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+
+/**
+ * Caches results of <code>findAll</code> and <code>count</code> for <code>eaphone.query.result-cache-size</code>,
+ * so identical requests polled by many clients are only queried once per time-to-live.
+ * <p>
+ * Requests are keyed by their canonical form: filters sorted by field, <code>draw</code> ignored. Additional and
+ * pre-filters are part of the key by {@link Object#equals(Object)}, which is identity for JPA specifications, so
+ * only the same instance hits the cache. Least recently used results are evicted beyond the maximum size, results
+ * with an error are never cached. Callers get copies of the cached outputs, the records in them are shared.
+ * </p>
+ */
+public class QueryResultCache {
+
+	private record Entry(Object value, long expiresAt) {
+	}
+
+	private record QueryKey(int offset, int limit, Object countMode, String after, String before, List<?> orders,
+			List<String> select, Map<String, List<Object>> where, Object additional, Object preFilter) {
+	}
+
+	private record CountKey(Map<String, List<Object>> where, Object additional, Object preFilter) {
+	}
+
+	private final Map<Object, Entry> entries;
+	private final long ttlNanos;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	/**
+	 * incremented by {@link #invalidate()}, results loaded before are not cached
+	 */
+	private long generation;
+
+	/**
+	 * @param maxSize most results kept
+	 * @param ttl how long a result is kept
+	 */
+	public QueryResultCache(int maxSize, Duration ttl) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+		}
+		this.ttlNanos = ttl.toNanos();
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @param input the request
+	 * @param additional additional filter, may be <code>null</code>
+	 * @param preFilter pre-filter, may be <code>null</code>
+	 * @param query runs the query when the result is not cached
+	 * @return a copy of the result with <code>draw</code> of the request
+	 */
+	public <T> QueryOutput<T> get(QueryInput input, Object additional, Object preFilter,
+			Supplier<QueryOutput<T>> query) {
+		final QueryKey key = new QueryKey(input.getOffset(), input.getLimit(), input.getCount_mode(),
+				input.getAfter(), input.getBefore(), input.getOrders(), input.getSelect(), canonical(input.getWhere()),
+				additional, preFilter);
+		final QueryOutput<T> cached = load(key, query, output -> output.getError() == null);
+
+		QueryOutput<T> output = new QueryOutput<>();
+		output.setDraw(input.getDraw());
+		output.setTotal(cached.getTotal());
+		output.setFiltered(cached.getFiltered());
+		output.setData(new ArrayList<>(cached.getData()));
+		output.setHas_more(cached.getHas_more());
+		output.setStart_cursor(cached.getStart_cursor());
+		output.setEnd_cursor(cached.getEnd_cursor());
+		output.setError(cached.getError());
+		return output;
+	}
+
+	/**
+	 * @param input the request
+	 * @param additional additional filter, may be <code>null</code>
+	 * @param preFilter pre-filter, may be <code>null</code>
+	 * @param counter counts when the result is not cached
+	 * @return a copy of the result
+	 */
+	public CountOutput get(CountInput input, Object additional, Object preFilter, Supplier<CountOutput> counter) {
+		final CountOutput cached = load(new CountKey(canonical(input), additional, preFilter), counter,
+				output -> output.getError() == null);
+
+		CountOutput output = new CountOutput();
+		output.setTotal(cached.getTotal());
+		output.setFiltered(cached.getFiltered());
+		output.setError(cached.getError());
+		return output;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <V> V load(Object key, Supplier<V> loader, Predicate<V> cacheable) {
+		final long loadedIn;
+		synchronized (entries) {
+			final Entry entry = entries.get(key);
+			if (entry != null) {
+				if (entry.expiresAt() - System.nanoTime() >= 0) {
+					hits.increment();
+					return (V) entry.value();
+				}
+				entries.remove(key);
+			}
+			loadedIn = generation;
+		}
+		misses.increment();
+		final V value = loader.get();
+		if (cacheable.test(value)) {
+			synchronized (entries) {
+				// not cached if invalidated meanwhile, it may have been read before the change
+				if (loadedIn == generation) {
+					entries.put(key, new Entry(value, System.nanoTime() + ttlNanos));
+				}
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Filters sorted by field, each filter as the list of its operands.
+	 */
+	private static Map<String, List<Object>> canonical(Map<String, QueryFilter> where) {
+		Map<String, List<Object>> canonical = new TreeMap<>();
+		if (where != null) {
+			for (final Map.Entry<String, QueryFilter> entry : where.entrySet()) {
+				final QueryFilter f = entry.getValue();
+				canonical.put(entry.getKey(), f == null ? null
+						: Arrays.asList(f.get_gt(), f.get_gte(), f.get_lt(), f.get_lte(), f.get_eq(), f.get_ne(),
+								copyOf(f.get_in()), copyOf(f.get_nin()), copyOf(f.get_all()), f.get_regex(),
+								f.get_like(), f.get_exists(), f.get_null(), f.get_empty(), f.get_isvoid()));
+			}
+		}
+		return canonical;
+	}
+
+	private static List<Object> copyOf(List<Object> values) {
+		return values == null ? null : new ArrayList<>(values);
+	}
+
+	/**
+	 * Drop all results, e.g. after the data changed.
+	 */
+	public void invalidate() {
+		synchronized (entries) {
+			generation++;
+			entries.clear();
+		}
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return hits / (hits + misses), or 0 if never used
+	 */
+	public double getHitRatio() {
+		final long h = hits.sum();
+		final long total = h + misses.sum();
+		return total == 0 ? 0.0 : (double) h / total;
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+}
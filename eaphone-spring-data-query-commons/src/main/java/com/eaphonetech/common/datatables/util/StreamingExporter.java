@@ -0,0 +1,156 @@
+package com.eaphonetech.common.datatables.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Writes the records of <code>streamAll</code> to the response as they are read, so exports of any size are done
+ * in constant memory.
+ * <p>
+ * Jackson and Spring Web MVC are optional dependencies, they are only needed when this class is used.
+ * </p>
+ */
+@UtilityClass
+public class StreamingExporter {
+
+    /**
+     * Write records as one JSON array. The stream is not closed.
+     *
+     * @param records records to write
+     * @param out target, not closed
+     * @param writer writer of one record
+     * @throws IOException if writing fails
+     */
+    public static <T> void writeJson(Stream<T> records, OutputStream out, ObjectWriter writer) throws IOException {
+        try (JsonGenerator generator = writer.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            final Iterator<T> it = records.iterator();
+            while (it.hasNext()) {
+                writer.writeValue(generator, it.next());
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Write records as CSV (RFC 4180), with a header line. Dates are written in ISO 8601, <code>null</code> as empty
+     * field. The stream is not closed.
+     *
+     * @param records records to write
+     * @param out target, not closed
+     * @param columns header and value of each column, in order
+     * @throws IOException if writing fails
+     */
+    public static <T> void writeCsv(Stream<T> records, OutputStream out, LinkedHashMap<String, Function<T, ?>> columns)
+            throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        boolean first = true;
+        for (final String header : columns.keySet()) {
+            if (!first) {
+                writer.write(',');
+            }
+            writeCsvField(writer, header);
+            first = false;
+        }
+        writer.write("\r\n");
+
+        final Iterator<T> it = records.iterator();
+        while (it.hasNext()) {
+            final T record = it.next();
+            first = true;
+            for (final Map.Entry<String, Function<T, ?>> column : columns.entrySet()) {
+                if (!first) {
+                    writer.write(',');
+                }
+                writeCsvField(writer, toText(column.getValue().apply(record)));
+                first = false;
+            }
+            writer.write("\r\n");
+        }
+        writer.flush();
+    }
+
+    /**
+     * @param records opens the stream, which is closed once written
+     * @param writer writer of one record
+     * @return response body writing a JSON array
+     */
+    public static <T> StreamingResponseBody json(Supplier<Stream<T>> records, ObjectWriter writer) {
+        return out -> {
+            try (Stream<T> stream = records.get()) {
+                writeJson(stream, out, writer);
+            }
+        };
+    }
+
+    /**
+     * @param records opens the stream, which is closed once written
+     * @param columns header and value of each column, in order
+     * @return response body writing CSV
+     */
+    public static <T> StreamingResponseBody csv(Supplier<Stream<T>> records,
+            LinkedHashMap<String, Function<T, ?>> columns) {
+        return out -> {
+            try (Stream<T> stream = records.get()) {
+                writeCsv(stream, out, columns);
+            }
+        };
+    }
+
+    private static String toText(Object value) {
+        if (value == null) {
+            return null;
+        } else if (value instanceof Date) {
+            return Instant.ofEpochMilli(((Date) value).getTime()).toString();
+        }
+        return value.toString();
+    }
+
+    /**
+     * quote the field if it contains a separator, quote or line break
+     */
+    private static void writeCsvField(Writer writer, String text) throws IOException {
+        if (text == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            final char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+}
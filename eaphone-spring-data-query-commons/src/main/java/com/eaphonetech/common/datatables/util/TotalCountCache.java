@@ -0,0 +1,119 @@
+package com.eaphonetech.common.datatables.util;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import com.eaphonetech.common.datatables.model.mapping.CountMode;
+
+/**
+ * Caches total counts for {@link CountMode#CACHED_TOTAL}, each for a fixed time-to-live.
+ * <p>
+ * Keys must have equality, so pre-filters that are built per request, such as lambdas, are not keys themselves. They
+ * can name their key by implementing {@link Keyed}.
+ * </p>
+ */
+public class TotalCountCache {
+	/**
+	 * A pre-filter that names the key of its total, e.g. the tenant it filters by.
+	 */
+	public interface Keyed {
+		/**
+		 * @return key of the total, with equality
+		 */
+		Object getTotalKey();
+	}
+
+	/**
+	 * key of total count without pre-filtering
+	 */
+	public static final Object ALL = new Object();
+
+	private static final int MAX_ENTRIES = 256;
+
+	private record Entry(long count, long expiresAt) {
+	}
+
+	private final Map<Object, Entry> entries = new ConcurrentHashMap<>();
+	private final long ttlNanos;
+
+	public TotalCountCache(Duration ttl) {
+		this.ttlNanos = ttl.toNanos();
+	}
+
+	/**
+	 * @param key {@link #ALL}, or the pre-filter the total is counted with
+	 * @param counter counts the total when it is not cached or expired
+	 * @return the total
+	 */
+	public long get(Object key, LongSupplier counter) {
+		final OptionalLong cached = peek(key);
+		if (cached.isPresent()) {
+			return cached.getAsLong();
+		}
+		final long count = counter.getAsLong();
+		put(key, count);
+		return count;
+	}
+
+	/**
+	 * @param key {@link #ALL}, or the pre-filter the total is counted with
+	 * @return the total, empty if not cached or expired
+	 */
+	public OptionalLong peek(Object key) {
+		final Object k = key == null ? ALL : key;
+		final Entry entry = entries.get(k);
+		if (entry == null) {
+			return OptionalLong.empty();
+		}
+		if (isExpired(entry, System.nanoTime())) {
+			entries.remove(k, entry);
+			return OptionalLong.empty();
+		}
+		return OptionalLong.of(entry.count());
+	}
+
+	/**
+	 * Cache a total counted elsewhere, e.g. asynchronously.
+	 *
+	 * @param key {@link #ALL}, or the pre-filter the total is counted with
+	 * @param count the total
+	 */
+	public void put(Object key, long count) {
+		final Object k = key == null ? ALL : key;
+		final long now = System.nanoTime();
+		if (entries.size() >= MAX_ENTRIES && !entries.containsKey(k)) {
+			// expired entries first, then any other pre-filter, but never the total of all for a pre-filter
+			entries.values().removeIf(entry -> isExpired(entry, now));
+			final Iterator<Object> it = entries.keySet().iterator();
+			while (entries.size() >= MAX_ENTRIES && it.hasNext()) {
+				if (it.next() != ALL) {
+					it.remove();
+				}
+			}
+		}
+		entries.put(k, new Entry(count, now + ttlNanos));
+	}
+
+	/**
+	 * @param preFilter a pre-filter, may be <code>null</code>
+	 * @return key of its total, {@link #ALL} without pre-filter, <code>null</code> if it has no key
+	 */
+	public static Object keyOf(Object preFilter) {
+		if (preFilter == null) {
+			return ALL;
+		}
+		return preFilter instanceof Keyed ? ((Keyed) preFilter).getTotalKey() : null;
+	}
+
+	private static boolean isExpired(Entry entry, long now) {
+		return entry.expiresAt() - now < 0;
+	}
+
+	public void invalidate() {
+		entries.clear();
+	}
+}
@@ -0,0 +1,121 @@
+package com.eaphonetech.common.datatables.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import com.eaphonetech.common.datatables.metrics.QueryMetrics.Phase;
+import com.eaphonetech.common.datatables.metrics.QueryMetrics.Recording;
+import com.eaphonetech.common.datatables.model.mapping.CountInput;
+import com.eaphonetech.common.datatables.model.mapping.CountOutput;
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+import com.eaphonetech.common.datatables.util.QueryResultCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+
+public class MicrometerQueryMetricsTest {
+
+	private static Map<String, QueryFilter> where() {
+		QueryFilter like = new QueryFilter();
+		like.set_like("a%");
+		QueryFilter range = new QueryFilter();
+		range.set_gte(1);
+		range.set_eq(2);
+		Map<String, QueryFilter> where = new HashMap<>();
+		where.put("name", like);
+		where.put("amount", range);
+		return where;
+	}
+
+	@Test
+	public void timesPhasesTaggedByOperators() {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		QueryMetrics metrics = new MicrometerQueryMetrics(registry, null, "jpa");
+
+		try (Recording recording = metrics.start(String.class, "findAll", where())) {
+			recording.record(Phase.BUILD, recording.mark());
+			recording.record(Phase.FETCH, recording.mark());
+			recording.record(Phase.FETCH, recording.mark());
+			recording.error(new IllegalStateException());
+		}
+		metrics.time(String.class, "findAll", where(), Phase.CONVERT, () -> null);
+
+		assertEquals(2L, registry.get(MicrometerQueryMetrics.PHASE_TIMER).tag("entity", "String")
+				.tag("backend", "jpa").tag("phase", "fetch").tag("operators", "_gte,_eq,_like").timer().count());
+		assertEquals(1L, registry.get(MicrometerQueryMetrics.PHASE_TIMER).tag("phase", "convert").timer().count());
+		assertEquals(1.0, registry.get(MicrometerQueryMetrics.ERROR_COUNTER)
+				.tag("exception", "IllegalStateException").counter().count(), 0.0);
+
+		metrics.start(String.class, "count", null).record(Phase.TOTAL_COUNT, 0L);
+		assertEquals(1L, registry.get(MicrometerQueryMetrics.PHASE_TIMER).tag("operation", "count")
+				.tag("operators", "none").timer().count());
+	}
+
+	@Test
+	public void observesQueries() {
+		List<String> events = new ArrayList<>();
+		ObservationRegistry observations = ObservationRegistry.create();
+		observations.observationConfig().observationHandler(new ObservationHandler<Observation.Context>() {
+			@Override
+			public void onStart(Observation.Context context) {
+				events.add("start " + context.getLowCardinalityKeyValue("operators").getValue() + " "
+						+ context.getHighCardinalityKeyValue("fields").getValue());
+			}
+
+			@Override
+			public void onEvent(Observation.Event event, Observation.Context context) {
+				events.add(event.getName());
+			}
+
+			@Override
+			public void onStop(Observation.Context context) {
+				events.add("stop");
+			}
+
+			@Override
+			public boolean supportsContext(Observation.Context context) {
+				return true;
+			}
+		});
+		QueryMetrics metrics = new MicrometerQueryMetrics(new SimpleMeterRegistry(), observations, "mongodb");
+
+		try (Recording recording = metrics.start(String.class, "findAll", where())) {
+			recording.record(Phase.FETCH, recording.mark());
+		}
+		assertEquals(List.of("start _gte,_eq,_like amount,name", "eaphone.query.fetch", "stop"), events);
+	}
+
+	@Test
+	public void publishesResultCache() {
+		MeterRegistry registry = new SimpleMeterRegistry();
+		QueryResultCache cache = new QueryResultCache(10, Duration.ofMinutes(1));
+		new MicrometerQueryMetrics(registry, null, "jpa").monitor(String.class, cache);
+
+		cache.get(new CountInput(), null, null, CountOutput::new);
+		cache.get(new CountInput(), null, null, CountOutput::new);
+		assertEquals(0.5, registry.get(MicrometerQueryMetrics.CACHE_PREFIX + "hit.ratio").gauge().value(), 0.0);
+		assertEquals(1.0, registry.get(MicrometerQueryMetrics.CACHE_PREFIX + "hits").functionCounter().count(), 0.0);
+	}
+
+	@Test
+	public void noopWithoutMeterRegistry() {
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		assertSame(QueryMetrics.NOOP, QueryMetrics.of(beanFactory, "jpa"));
+		assertSame(QueryMetrics.NOOP, QueryMetrics.of(null, "jpa"));
+
+		beanFactory.registerSingleton("registry", new SimpleMeterRegistry());
+		assertEquals(MicrometerQueryMetrics.class, QueryMetrics.of(beanFactory, "jpa").getClass());
+	}
+}
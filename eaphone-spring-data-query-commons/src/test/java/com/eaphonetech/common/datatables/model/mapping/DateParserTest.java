@@ -0,0 +1,76 @@
+package com.eaphonetech.common.datatables.model.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+public class DateParserTest {
+
+	private static long legacy(String format, String text) throws ParseException {
+		return new SimpleDateFormat(format).parse(text).getTime();
+	}
+
+	@Test
+	public void testSameAsSimpleDateFormat() throws ParseException {
+		assertEquals(legacy("yyyy-MM-dd'T'HH:mm:ssXXX", "2017-09-20T10:11:12+08:00"),
+				DateParser.parse("2017-09-20T10:11:12+08:00").getTime());
+		assertEquals(legacy("yyyy-MM-dd'T'HH:mm:ssXXX", "2017-09-20T10:11:12Z"),
+				DateParser.parse("2017-09-20T10:11:12Z").getTime());
+		assertEquals(legacy("yyyy-MM-dd'T'HH:mm:ssZ", "2017-09-20T10:11:12-0130"),
+				DateParser.parse("2017-09-20T10:11:12-0130").getTime());
+		assertEquals(legacy("yyyy-MM-dd'T'HH:mm:ss.SSSXXX", "2017-09-20T10:11:12.345+08:00"),
+				DateParser.parse("2017-09-20T10:11:12.345+08:00").getTime());
+		assertEquals(legacy("yyyy-MM-dd'T'HH:mm:ss", "2017-09-20T10:11:12"),
+				DateParser.parse("2017-09-20T10:11:12").getTime());
+		assertEquals(legacy("yyyy-MM-dd HH:mm:ss", "2017-09-20 10:11:12"),
+				DateParser.parse("2017-09-20 10:11:12").getTime());
+		assertEquals(legacy("yyyy-MM-dd", "2017-09-20"), DateParser.parse("2017-09-20").getTime());
+	}
+
+	@Test
+	public void testTargetTypes() throws ParseException {
+		assertEquals(Instant.parse("2017-09-20T02:11:12Z"),
+				DateParser.parse("2017-09-20T10:11:12+08:00", Instant.class));
+		assertEquals(OffsetDateTime.of(2017, 9, 20, 10, 11, 12, 0, ZoneOffset.ofHours(8)),
+				DateParser.parse("2017-09-20T10:11:12+08:00", OffsetDateTime.class));
+		assertEquals(LocalDateTime.of(2017, 9, 20, 10, 11), DateParser.parse("2017-09-20T10:11", LocalDateTime.class));
+	}
+
+	@Test
+	public void testInvalid() {
+		assertNull(DateParser.tryParse(null));
+		assertNull(DateParser.tryParse(""));
+		assertNull(DateParser.tryParse("abc"));
+		assertNull(DateParser.tryParse("2017-13-01"));
+		assertNull(DateParser.tryParse("2017-09-20T25:11:12"));
+		assertNull(DateParser.tryParse("2017-09-20T10:11:12+19:00"));
+	}
+
+	@Test
+	public void testTrailingText() throws ParseException {
+		// like SimpleDateFormat, anything after the longest well-formed prefix is ignored
+		assertEquals(legacy("yyyy-MM-dd'T'HH:mm:ss", "2017-09-20T10:11:12+8"),
+				DateParser.parse("2017-09-20T10:11:12+8").getTime());
+		assertEquals(legacy("yyyy-MM-dd'T'HH:mm:ss", "2017-09-20T10:11:12"),
+				DateParser.parse("2017-09-20T10:11:12abc").getTime());
+		assertEquals(legacy("yyyy-MM-dd'T'HH:mm:ss.SSSXXX", "2017-09-20T10:11:12.345+08:00"),
+				DateParser.parse("2017-09-20T10:11:12.345+08:00[Asia/Shanghai]").getTime());
+		assertEquals(LocalDateTime.of(2017, 9, 20, 10, 11),
+				DateParser.parse("2017-09-20T10:11:1", LocalDateTime.class));
+		assertEquals(legacy("yyyy-MM-dd", "2017-09-20"), DateParser.parse("2017-09-20T9:30").getTime());
+		assertEquals(legacy("yyyy-MM-dd", "2017-09-20"), DateParser.parse("2017-09-20/10:11:12").getTime());
+	}
+
+	@Test(expected = ParseException.class)
+	public void testParseException() throws ParseException {
+		DateParser.parse("20170920");
+	}
+}
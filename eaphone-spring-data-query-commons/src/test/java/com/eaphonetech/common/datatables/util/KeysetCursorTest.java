@@ -0,0 +1,99 @@
+package com.eaphonetech.common.datatables.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryOrder;
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+
+public class KeysetCursorTest {
+
+	private static QueryInput input(String field, String direction) {
+		QueryInput input = new QueryInput();
+		QueryOrder order = new QueryOrder();
+		order.getValues().put(field, QueryOrder.OrderValue.valueOf(direction));
+		input.setOrder_by(Collections.singletonList(order));
+		return input;
+	}
+
+	@Test
+	public void appendsIdAsTieBreaker() {
+		assertEquals(Arrays.asList(Sort.Order.desc("price"), Sort.Order.asc("id")),
+				KeysetCursor.keysOf(Collections.singletonList(Sort.Order.desc("price")), "id"));
+		assertEquals(Collections.singletonList(Sort.Order.desc("id")),
+				KeysetCursor.keysOf(Collections.singletonList(Sort.Order.desc("id")), "id"));
+	}
+
+	@Test
+	public void expandsAfterCursor() {
+		QueryInput input = input("price", "desc");
+		List<Sort.Order> keys = KeysetCursor.keysOf(input.getOrders(), "id");
+		input.setAfter(KeysetCursor.encode(keys, Arrays.asList(12.5d, 7)));
+
+		KeysetCursor cursor = KeysetCursor.of(input, "id");
+		List<Map<String, QueryFilter>> branches = cursor.getFilters();
+		// price < 12.5 OR price IS NULL OR (price = 12.5 AND id > 7)
+		assertEquals(3, branches.size());
+		assertEquals("12.5", branches.get(0).get("price").get_lt());
+		assertTrue(branches.get(1).get("price").get_null());
+		assertEquals("12.5", branches.get(2).get("price").get_eq());
+		assertEquals("7", branches.get(2).get("id").get_gt());
+		assertEquals(0L, KeysetCursor.offsetOf(input));
+	}
+
+	@Test
+	public void reversesBeforeCursor() {
+		QueryInput input = input("name", "asc");
+		List<Sort.Order> keys = KeysetCursor.keysOf(input.getOrders(), "id");
+		input.setBefore(KeysetCursor.encode(keys, Arrays.asList(null, "a&b=c")));
+
+		assertEquals(Sort.by(Sort.Order.desc("name"), Sort.Order.desc("id")), KeysetCursor.sortOf(input, "id"));
+		List<Map<String, QueryFilter>> branches = KeysetCursor.of(input, "id").getFilters();
+		// nothing is less than null, so only (name IS NULL AND (id < 'a&b=c' OR id IS NULL))
+		assertEquals(2, branches.size());
+		assertTrue(branches.get(0).get("name").get_null());
+		assertEquals("a&b=c", branches.get(0).get("id").get_lt());
+		assertTrue(branches.get(1).get("id").get_null());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsCursorOfAnotherOrder() {
+		QueryInput input = input("price", "desc");
+		input.setAfter(KeysetCursor.encode(KeysetCursor.keysOf(input.getOrders(), "id"), Arrays.asList(1, 2)));
+		input.setOrder_by(input("price", "asc").getOrder_by());
+		KeysetCursor.of(input, "id");
+	}
+
+	@Test
+	public void noCursor() {
+		QueryInput input = input("price", "desc");
+		input.setOffset(15);
+		assertNull(KeysetCursor.of(input, "id"));
+		assertEquals(15L, KeysetCursor.offsetOf(input));
+		assertEquals(15L, new OffsetPageRequest(15, 10, Sort.unsorted()).getOffset());
+	}
+
+	@Test
+	public void nullsAreLowestInEveryDirection() {
+		QueryInput input = input("price", "desc");
+		Sort sort = KeysetCursor.nullsLowest(KeysetCursor.sortOf(input, "id"));
+		assertEquals(Sort.NullHandling.NULLS_LAST, sort.getOrderFor("price").getNullHandling());
+		assertEquals(Sort.NullHandling.NULLS_FIRST, sort.getOrderFor("id").getNullHandling());
+
+		// read backwards, in the reverse of DESC NULLS LAST
+		input.setBefore(KeysetCursor.encode(KeysetCursor.keysOf(input.getOrders(), "id"), Arrays.asList(1, 2)));
+		sort = KeysetCursor.nullsLowest(KeysetCursor.sortOf(input, "id"));
+		assertEquals(Sort.NullHandling.NULLS_FIRST, sort.getOrderFor("price").getNullHandling());
+		assertEquals(Sort.NullHandling.NULLS_LAST, sort.getOrderFor("id").getNullHandling());
+	}
+}
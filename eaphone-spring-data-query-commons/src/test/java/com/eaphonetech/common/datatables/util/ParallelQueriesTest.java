@@ -0,0 +1,60 @@
+package com.eaphonetech.common.datatables.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ParallelQueriesTest {
+
+	@Test
+	public void runsInlineWithoutExecutor() {
+		final Thread caller = Thread.currentThread();
+		Future<Boolean> future = ParallelQueries.submit(null, () -> Thread.currentThread() == caller);
+
+		assertTrue(future.isDone());
+		assertTrue(ParallelQueries.await(future, null));
+	}
+
+	@Test
+	public void rethrowsFailureOfTask() {
+		Future<Long> future = ParallelQueries.submit(ParallelQueries.defaultExecutor(), () -> {
+			throw new IllegalStateException("boom");
+		});
+
+		try {
+			ParallelQueries.await(future, Duration.ofSeconds(10));
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("boom", e.getMessage());
+		}
+	}
+
+	@Test
+	public void cancelsTaskOnTimeout() throws Exception {
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		Future<Long> future = ParallelQueries.submit(ParallelQueries.defaultExecutor(), () -> {
+			try {
+				Thread.sleep(10_000L);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return 0L;
+		});
+
+		try {
+			ParallelQueries.await(future, Duration.ofMillis(50));
+			fail();
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage().contains("timed out"));
+		}
+		assertTrue(future.isCancelled());
+		assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,37 @@
+package com.eaphonetech.common.datatables.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryOrder;
+
+public class ProjectionTest {
+
+	@Test
+	public void wholeRecordsWithoutSelect() {
+		QueryInput input = new QueryInput();
+		assertNull(Projection.fieldsOf(input, "id"));
+		input.setSelect(Collections.emptyList());
+		assertNull(Projection.fieldsOf(input, "id"));
+		input.setSelect(Arrays.asList(" ", ""));
+		assertNull(Projection.fieldsOf(input, "id"));
+	}
+
+	@Test
+	public void cursorKeysAreSelected() {
+		QueryOrder order = new QueryOrder();
+		order.getValues().put("createdAt", QueryOrder.OrderValue.desc);
+		QueryInput input = new QueryInput();
+		input.setOrder_by(Arrays.asList(order));
+		input.setSelect(Arrays.asList("name", " customer.name", "name"));
+
+		assertEquals(Arrays.asList("name", "customer.name", "createdAt", "id"), Projection.fieldsOf(input, "id"));
+		assertEquals(Arrays.asList("name", "customer.name", "createdAt"), Projection.fieldsOf(input, null));
+	}
+}
@@ -0,0 +1,140 @@
+package com.eaphonetech.common.datatables.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Value;
+
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+
+import lombok.Data;
+
+public class ProjectionTypeTest {
+
+	@Data
+	public static class Customer {
+		private String name;
+		private String email;
+	}
+
+	@Data
+	public static class Order {
+		private Long id;
+		private String status;
+		private int amount;
+		private Customer customer;
+	}
+
+	public record CustomerName(String name) {
+	}
+
+	public record OrderRow(String status, CustomerName customer) {
+	}
+
+	public interface OrderView {
+		String getStatus();
+
+		int getAmount();
+
+		CustomerView getCustomer();
+
+		interface CustomerView {
+			String getName();
+		}
+	}
+
+	public interface OpenView {
+		@Value("#{target.status + target.amount}")
+		String getLabel();
+	}
+
+	private static Order order() {
+		Customer customer = new Customer();
+		customer.setName("Alice");
+		customer.setEmail("alice@example.com");
+		Order order = new Order();
+		order.setId(1L);
+		order.setStatus("paid");
+		order.setAmount(42);
+		order.setCustomer(customer);
+		return order;
+	}
+
+	@Test
+	public void recordsReadTheirComponents() {
+		ProjectionType<OrderRow> type = ProjectionType.of(OrderRow.class);
+		assertSame(type, ProjectionType.of(OrderRow.class));
+		assertEquals(Arrays.asList("status", "customer.name"), type.getFields());
+
+		assertEquals(new OrderRow("paid", new CustomerName("Alice")), type.create(order()));
+		Order withoutCustomer = order();
+		withoutCustomer.setCustomer(null);
+		assertEquals(new OrderRow("paid", null), type.create(withoutCustomer));
+		assertNull(type.create(null));
+	}
+
+	@Test
+	public void interfacesReadTheirGetters() {
+		ProjectionType<OrderView> type = ProjectionType.of(OrderView.class);
+		assertEquals(3, type.getFields().size());
+		assertTrue(type.getFields().containsAll(Arrays.asList("status", "amount", "customer.name")));
+
+		OrderView view = type.create(order());
+		assertEquals("paid", view.getStatus());
+		assertEquals(42, view.getAmount());
+		assertEquals("Alice", view.getCustomer().getName());
+	}
+
+	@Test
+	public void valuesNeedNoRecord() {
+		Map<String, Object> values = new HashMap<>();
+		values.put("status", "paid");
+		values.put("amount", 42);
+		values.put("customer", Collections.singletonMap("name", "Alice"));
+
+		assertEquals(new OrderRow("paid", new CustomerName("Alice")),
+				ProjectionType.of(OrderRow.class).fromValues(values));
+		OrderView view = ProjectionType.of(OrderView.class).fromValues(values);
+		assertEquals("paid", view.getStatus());
+		assertEquals(42, view.getAmount());
+		assertEquals("Alice", view.getCustomer().getName());
+
+		values.put("customer", null);
+		assertEquals(new OrderRow("paid", null), ProjectionType.of(OrderRow.class).fromValues(values));
+		assertNull(ProjectionType.of(OrderRow.class).fromValues(null));
+	}
+
+	@Test
+	public void selectingReplacesSelect() {
+		QueryInput input = new QueryInput();
+		input.setLimit(5);
+		input.setAfter("cursor");
+		input.setSelect(Arrays.asList("email"));
+		QueryInput selecting = ProjectionType.of(OrderRow.class).selecting(input);
+		assertEquals(Arrays.asList("status", "customer.name"), selecting.getSelect());
+		assertEquals(5, selecting.getLimit());
+		assertEquals("cursor", selecting.getAfter());
+		assertEquals(Arrays.asList("email"), input.getSelect());
+	}
+
+	@Test
+	public void rejectsOpenProjectionsAndClasses() {
+		for (final Class<?> type : Arrays.asList(OpenView.class, Order.class)) {
+			try {
+				ProjectionType.of(type);
+				fail(type.getName());
+			} catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains(type.getName()));
+			}
+		}
+	}
+}
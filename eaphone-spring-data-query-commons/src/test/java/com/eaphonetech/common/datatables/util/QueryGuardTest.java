@@ -0,0 +1,121 @@
+package com.eaphonetech.common.datatables.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import com.eaphonetech.common.datatables.config.EaphoneQueryProperties;
+import com.eaphonetech.common.datatables.config.QueryLimits;
+import com.eaphonetech.common.datatables.model.mapping.CountInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryOrder;
+import com.eaphonetech.common.datatables.model.mapping.filter.FilterOperator;
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+
+public class QueryGuardTest {
+
+	@QueryLimits(filterable = { "status", "createdAt" }, sortable = "createdAt", maxLimit = 100,
+			operators = { FilterOperator._eq, FilterOperator._in, FilterOperator._gte },
+			fields = @QueryLimits.Field(name = "name", operators = FilterOperator._like))
+	private interface Limited {
+	}
+
+	private static QueryInput input(String field, QueryFilter filter) {
+		QueryInput input = new QueryInput();
+		input.getWhere().put(field, filter);
+		return input;
+	}
+
+	private static QueryFilter in(int size) {
+		QueryFilter filter = new QueryFilter();
+		filter.set_in(Collections.nCopies(size, (Object) "a"));
+		return filter;
+	}
+
+	private static QueryFilter like(String pattern) {
+		QueryFilter filter = new QueryFilter();
+		filter.set_like(pattern);
+		return filter;
+	}
+
+	private static void assertRejected(QueryGuard guard, QueryInput input, String message) {
+		try {
+			guard.check(input);
+			fail("not rejected: " + message);
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+	}
+
+	@Test
+	public void unrestrictedByDefault() {
+		assertSame(QueryGuard.NONE, QueryGuard.of(Object.class, new EaphoneQueryProperties()));
+		QueryInput input = input("any", in(10_000));
+		input.setLimit(-1);
+		QueryGuard.NONE.check(input);
+	}
+
+	@Test
+	public void checksAnnotatedLimits() {
+		QueryGuard guard = QueryGuard.of(Limited.class, new EaphoneQueryProperties());
+		guard.check(input("status", in(3)));
+		guard.check(input("name", like("a%")));
+
+		assertRejected(guard, input("amount", in(1)), "filtering amount");
+		assertRejected(guard, input("name", in(1)), "[_in] are not allowed on name");
+		assertRejected(guard, input("status", like("a%")), "[_like] are not allowed on status");
+
+		QueryInput all = input("status", in(1));
+		all.setLimit(-1);
+		assertRejected(guard, all, "limit -1");
+
+		QueryOrder order = new QueryOrder();
+		order.getValues().put("status", QueryOrder.OrderValue.asc);
+		QueryInput sorted = input("status", in(1));
+		sorted.setOrder_by(Arrays.asList(order));
+		assertRejected(guard, sorted, "ordering by status");
+
+		CountInput count = new CountInput();
+		count.put("amount", in(1));
+		try {
+			guard.check(count);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("filtering amount is not allowed", e.getMessage());
+		}
+	}
+
+	@Test
+	public void checksPropertyLimits() {
+		StandardEnvironment environment = new StandardEnvironment();
+		environment.getPropertySources().addFirst(new MapPropertySource("limits",
+				Map.of("eaphone.query.max-in-size", "100", "eaphone.query.max-regex-length", "8",
+						"eaphone.query.allowed-operators", "_eq, _in, _like, _regex")));
+		QueryGuard guard = QueryGuard.of(Object.class, EaphoneQueryProperties.from(environment));
+		assertNotSame(QueryGuard.NONE, guard);
+
+		guard.check(input("any", in(100)));
+		assertRejected(guard, input("any", in(101)), "at most 100");
+		QueryFilter regex = new QueryFilter();
+		regex.set_regex("(a+)+(b+)+$");
+		assertRejected(guard, input("any", regex), "_regex on any is 11 characters");
+		QueryFilter nin = new QueryFilter();
+		nin.set_nin(Arrays.asList((Object) "a"));
+		assertRejected(guard, input("any", nin), "[_nin]");
+
+		// the annotation overrides the properties
+		QueryGuard limited = QueryGuard.of(Limited.class, EaphoneQueryProperties.from(environment));
+		assertRejected(limited, input("status", in(101)), "at most 100");
+		assertRejected(limited, input("name", like("0123456789%")), "_like on name");
+	}
+}
@@ -0,0 +1,136 @@
+package com.eaphonetech.common.datatables.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.eaphonetech.common.datatables.model.mapping.CountInput;
+import com.eaphonetech.common.datatables.model.mapping.CountOutput;
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryOutput;
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+
+public class QueryResultCacheTest {
+
+	private static QueryFilter eq(Object value) {
+		QueryFilter filter = new QueryFilter();
+		filter.set_eq(value);
+		return filter;
+	}
+
+	private static QueryInput input(int draw, String... fields) {
+		QueryInput input = new QueryInput();
+		input.setDraw(draw);
+		for (final String field : fields) {
+			input.getWhere().put(field, eq(field.length()));
+		}
+		return input;
+	}
+
+	private static QueryOutput<String> output(AtomicInteger calls) {
+		QueryOutput<String> output = new QueryOutput<>();
+		output.setData(Arrays.asList("a", "b"));
+		output.setFiltered(2L);
+		output.setTotal(calls.incrementAndGet());
+		return output;
+	}
+
+	@Test
+	public void hitsIgnoreDrawAndFilterOrder() {
+		QueryResultCache cache = new QueryResultCache(10, Duration.ofMinutes(1));
+		AtomicInteger calls = new AtomicInteger();
+
+		QueryOutput<String> first = cache.get(input(1, "a", "bb", "ccc"), null, null, () -> output(calls));
+		QueryOutput<String> second = cache.get(input(2, "ccc", "a", "bb"), null, null, () -> output(calls));
+		assertEquals(1, calls.get());
+		assertEquals(Integer.valueOf(2), second.getDraw());
+		assertEquals(first.getData(), second.getData());
+		assertNotSame(first.getData(), second.getData());
+		assertEquals(0.5, cache.getHitRatio(), 0.0);
+
+		// other values, paging or pre-filter are other results
+		QueryInput other = input(3, "a", "bb", "ccc");
+		other.getWhere().put("a", eq("1"));
+		cache.get(other, null, null, () -> output(calls));
+		QueryInput paged = input(4, "a", "bb", "ccc");
+		paged.setOffset(10);
+		cache.get(paged, null, null, () -> output(calls));
+		cache.get(input(5, "a", "bb", "ccc"), null, "pre-filter", () -> output(calls));
+		assertEquals(4, calls.get());
+	}
+
+	@Test
+	public void invalidateDropsResults() {
+		QueryResultCache cache = new QueryResultCache(10, Duration.ofMinutes(1));
+		AtomicInteger calls = new AtomicInteger();
+
+		cache.get(input(1, "a"), null, null, () -> output(calls));
+		cache.invalidate();
+		assertEquals(0, cache.size());
+		cache.get(input(1, "a"), null, null, () -> output(calls));
+		assertEquals(2, calls.get());
+
+		// invalidated while querying, the result may be stale
+		cache.get(input(1, "b"), null, null, () -> {
+			cache.invalidate();
+			return output(calls);
+		});
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void boundedBySizeAndTime() {
+		QueryResultCache cache = new QueryResultCache(2, Duration.ofMinutes(1));
+		AtomicInteger calls = new AtomicInteger();
+
+		cache.get(input(1, "a"), null, null, () -> output(calls));
+		cache.get(input(1, "b"), null, null, () -> output(calls));
+		// "a" is used most recently, so "b" is evicted
+		cache.get(input(1, "a"), null, null, () -> output(calls));
+		cache.get(input(1, "c"), null, null, () -> output(calls));
+		assertEquals(2, cache.size());
+		cache.get(input(1, "a"), null, null, () -> output(calls));
+		assertEquals(3, calls.get());
+		cache.get(input(1, "b"), null, null, () -> output(calls));
+		assertEquals(4, calls.get());
+
+		QueryResultCache expired = new QueryResultCache(2, Duration.ZERO);
+		expired.get(input(1, "a"), null, null, () -> output(calls));
+		expired.get(input(1, "a"), null, null, () -> output(calls));
+		assertEquals(6, calls.get());
+	}
+
+	@Test
+	public void errorsAreNotCached() {
+		QueryResultCache cache = new QueryResultCache(10, Duration.ofMinutes(1));
+		AtomicInteger calls = new AtomicInteger();
+		CountInput input = new CountInput();
+		input.put("a", eq(1));
+
+		for (int i = 0; i < 2; i++) {
+			cache.get(input, null, null, () -> {
+				calls.incrementAndGet();
+				CountOutput output = new CountOutput();
+				output.setError("failed");
+				return output;
+			});
+		}
+		assertEquals(2, calls.get());
+
+		CountOutput counted = cache.get(input, null, null, () -> {
+			calls.incrementAndGet();
+			CountOutput output = new CountOutput();
+			output.setFiltered(7L);
+			return output;
+		});
+		assertNull(counted.getError());
+		assertEquals(7L, cache.get(input, null, null, CountOutput::new).getFiltered());
+		assertEquals(3, calls.get());
+	}
+}
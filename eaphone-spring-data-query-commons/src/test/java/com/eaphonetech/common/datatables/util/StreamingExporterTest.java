@@ -0,0 +1,40 @@
+package com.eaphonetech.common.datatables.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class StreamingExporterTest {
+
+	@Test
+	public void writesCsvWithQuoting() throws Exception {
+		LinkedHashMap<String, Function<Object[], ?>> columns = new LinkedHashMap<>();
+		columns.put("name", r -> r[0]);
+		columns.put("date", r -> r[1]);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		StreamingExporter.writeCsv(Arrays.asList(new Object[] { "plain", new Date(0L) },
+				new Object[] { "a,\"b\"", null }).stream(), out, columns);
+
+		assertEquals("name,date\r\nplain,1970-01-01T00:00:00Z\r\n\"a,\"\"b\"\"\",\r\n",
+				new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void writesJsonArray() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		StreamingExporter.writeJson(Arrays.asList("a", "b").stream(), out, new ObjectMapper().writer());
+
+		assertEquals("[\"a\",\"b\"]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,72 @@
+package com.eaphonetech.common.datatables.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class TotalCountCacheTest {
+
+	@Test
+	public void countsOncePerKeyWithinTtl() {
+		TotalCountCache cache = new TotalCountCache(Duration.ofMinutes(1));
+		AtomicLong calls = new AtomicLong();
+
+		assertEquals(10L, cache.get(null, () -> calls.incrementAndGet() * 10));
+		assertEquals(10L, cache.get(TotalCountCache.ALL, () -> calls.incrementAndGet() * 10));
+		assertEquals(1L, calls.get());
+
+		assertEquals(20L, cache.get("pre-filter", () -> calls.incrementAndGet() * 10));
+		assertEquals(2L, calls.get());
+
+		cache.invalidate();
+		assertEquals(30L, cache.get(null, () -> calls.incrementAndGet() * 10));
+	}
+
+	@Test
+	public void countsAgainWhenExpired() {
+		TotalCountCache cache = new TotalCountCache(Duration.ZERO);
+		AtomicLong calls = new AtomicLong();
+
+		cache.get(null, calls::incrementAndGet);
+		cache.get(null, calls::incrementAndGet);
+		assertEquals(2L, calls.get());
+	}
+
+	@Test
+	public void peeksWhatWasPut() {
+		TotalCountCache cache = new TotalCountCache(Duration.ofMinutes(1));
+
+		assertFalse(cache.peek("pre-filter").isPresent());
+		cache.put("pre-filter", 42L);
+		assertEquals(42L, cache.peek("pre-filter").getAsLong());
+		assertEquals(42L, cache.get("pre-filter", () -> 0L));
+		assertFalse(cache.peek(null).isPresent());
+	}
+
+	@Test
+	public void neverEvictsTotalOfAllForPreFilters() {
+		TotalCountCache cache = new TotalCountCache(Duration.ofMinutes(1));
+
+		cache.put(null, 1L);
+		for (int i = 0; i < 1000; i++) {
+			cache.put("pre-filter-" + i, i);
+		}
+		assertEquals(1L, cache.peek(null).getAsLong());
+		assertEquals(999L, cache.peek("pre-filter-999").getAsLong());
+	}
+
+	@Test
+	public void keysOnlyStableValues() {
+		assertSame(TotalCountCache.ALL, TotalCountCache.keyOf(null));
+		assertNull(TotalCountCache.keyOf(new Object()));
+
+		TotalCountCache.Keyed keyed = () -> "tenant-1";
+		assertEquals("tenant-1", TotalCountCache.keyOf(keyed));
+	}
+}
@@ -1,15 +1,14 @@
 package com.eaphonetech.common.datatables.jpa;
 
-import java.util.List;
 import java.util.Map;
 
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 
 import com.eaphonetech.common.datatables.model.mapping.CountInput;
 import com.eaphonetech.common.datatables.model.mapping.QueryInput;
 import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+import com.eaphonetech.common.datatables.util.KeysetCursor;
+import com.eaphonetech.common.datatables.util.OffsetPageRequest;
 
 abstract class AbstractPredicateBuilder<T> {
 	protected final QueryInput input;
@@ -20,7 +19,7 @@ abstract class AbstractPredicateBuilder<T> {
 		this.countInput = new CountInput();
 		this.input = input;
 		tree = new Node<>(null);
-		initTree(input);
+		initTree(input.getWhere());
 	}
 
 	AbstractPredicateBuilder(CountInput countInput) {
@@ -30,16 +29,8 @@ abstract class AbstractPredicateBuilder<T> {
 		initTree(countInput);
 	}
 
-	private void initTree(QueryInput input) {
-		for (Map.Entry<String, QueryFilter> entry : input.getWhere().entrySet()) {
-			final String fieldName = entry.getKey();
-			final QueryFilter filter = entry.getValue();
-			addChild(tree, 0, fieldName.split("\\."), filter);
-		}
-	}
-
-	private void initTree(CountInput input) {
-		for (Map.Entry<String, QueryFilter> entry : input.entrySet()) {
+	private void initTree(Map<String, QueryFilter> where) {
+		for (Map.Entry<String, QueryFilter> entry : where.entrySet()) {
 			final String fieldName = entry.getKey();
 			final QueryFilter filter = entry.getValue();
 			addChild(tree, 0, fieldName.split("\\."), filter);
@@ -64,13 +55,22 @@ abstract class AbstractPredicateBuilder<T> {
 	 * @return a {@link Pageable}, must not be {@literal null}.
 	 */
 	public Pageable createPageable() {
-		List<Sort.Order> orders = input.getOrders();
-		Sort sort = orders.isEmpty() ? Sort.unsorted() : Sort.by(orders);
+		return createPageable(null);
+	}
 
+	/**
+	 * Creates a 'LIMIT .. OFFSET .. ORDER BY ..' clause for the given {@link QueryInput}, ordered by the id at last so
+	 * the order is stable for keyset pagination, with <code>null</code> as the lowest value on every database.
+	 *
+	 * @param idAttribute id attribute of the entity, <code>null</code> if no tie breaker is needed
+	 * @return a {@link Pageable}, must not be {@literal null}.
+	 */
+	public Pageable createPageable(String idAttribute) {
 		if (input.getLimit() == -1) {
 			input.setLimit(Integer.MAX_VALUE);
 		}
-		return PageRequest.of(input.getOffset() / input.getLimit(), input.getLimit(), sort);
+		return new OffsetPageRequest(KeysetCursor.offsetOf(input), input.getLimit(),
+				KeysetCursor.nullsLowest(KeysetCursor.sortOf(input, idAttribute)));
 	}
 
 	public abstract T build();
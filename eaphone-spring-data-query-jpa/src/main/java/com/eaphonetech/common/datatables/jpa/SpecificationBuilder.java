@@ -2,23 +2,28 @@ package com.eaphonetech.common.datatables.jpa;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.lang.NonNull;
 
 import com.eaphonetech.common.datatables.model.mapping.CountInput;
+import com.eaphonetech.common.datatables.model.mapping.CountMode;
 import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+import com.eaphonetech.common.datatables.util.KeysetCursor;
+import com.eaphonetech.common.datatables.util.TotalCountCache;
 
+import jakarta.persistence.criteria.CommonAbstractCriteria;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
-import jakarta.persistence.criteria.Fetch;
-import jakarta.persistence.criteria.FetchParent;
 import jakarta.persistence.criteria.From;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.JoinType;
-import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import jakarta.persistence.metamodel.PluralAttribute;
 
 public class SpecificationBuilder<T> extends AbstractPredicateBuilder<Specification<T>> {
 	public SpecificationBuilder(QueryInput input) {
@@ -34,59 +39,121 @@ public class SpecificationBuilder<T> extends AbstractPredicateBuilder<Specificat
 		return new DataTablesSpecification<>();
 	}
 
+	/**
+	 * Name the key of the total of a pre-filtering specification in {@link CountMode#CACHED_TOTAL}, as
+	 * specifications have no equality.
+	 *
+	 * @param key key of the total, with equality, e.g. the tenant the specification filters by
+	 * @param specification the pre-filtering specification
+	 * @return the same specification with a key
+	 */
+	public static <T> Specification<T> keyed(Object key, Specification<T> specification) {
+		return new KeyedSpecification<>(key, specification);
+	}
+
+	/**
+	 * Translate a keyset cursor into <code>WHERE (k1, id) &gt; (?, ?)</code>, expanded as in
+	 * {@link KeysetCursor#getFilters()}.
+	 *
+	 * @param cursor the cursor
+	 * @return specification of rows after (or before) the cursor
+	 */
+	public static <T> Specification<T> cursor(KeysetCursor cursor) {
+		final List<Map<String, QueryFilter>> branches = cursor.getFilters();
+		return (root, query, criteriaBuilder) -> {
+			List<Predicate> ors = new ArrayList<>(branches.size());
+			for (final Map<String, QueryFilter> branch : branches) {
+				List<Predicate> ands = new ArrayList<>(branch.size());
+				for (final Map.Entry<String, QueryFilter> entry : branch.entrySet()) {
+					final String[] names = entry.getKey().split("\\.");
+					From<?, ?> from = root;
+					for (int i = 0; i < names.length - 1; i++) {
+						from = from.join(names[i], JoinType.LEFT);
+					}
+					ands.add(new ColumnFilter(entry.getValue()).createPredicate(from, criteriaBuilder,
+							names[names.length - 1]));
+				}
+				ors.add(criteriaBuilder.and(ands.toArray(new Predicate[0])));
+			}
+			return criteriaBuilder.or(ors.toArray(new Predicate[0]));
+		};
+	}
+
+	private static class KeyedSpecification<S> implements Specification<S>, TotalCountCache.Keyed {
+		private static final long serialVersionUID = 1L;
+
+		private final Object totalKey;
+		private final Specification<S> specification;
+
+		KeyedSpecification(Object totalKey, Specification<S> specification) {
+			this.totalKey = totalKey;
+			this.specification = specification;
+		}
+
+		@Override
+		public Object getTotalKey() {
+			return totalKey;
+		}
+
+		@Override
+		public Predicate toPredicate(@NonNull Root<S> root, @NonNull CriteriaQuery<?> query,
+				@NonNull CriteriaBuilder criteriaBuilder) {
+			return specification.toPredicate(root, query, criteriaBuilder);
+		}
+	}
+
 	private class DataTablesSpecification<S> implements Specification<S> {
 		private static final long serialVersionUID = 2791974779679792727L;
-		private List<Predicate> columnPredicates = new ArrayList<>();
-		private List<Predicate> globalPredicates = new ArrayList<>();
 
+		/**
+		 * Keeps no state, as the count and the page may be built from the same instance at the same time.
+		 */
 		@Override
 		public Predicate toPredicate(@NonNull Root<S> root, @NonNull CriteriaQuery<?> query,
 				@NonNull CriteriaBuilder criteriaBuilder) {
-			columnPredicates = new ArrayList<>();
-			globalPredicates = new ArrayList<>();
-
-			initPredicatesRecursively(tree, root, root, criteriaBuilder);
+			List<Predicate> columnPredicates = new ArrayList<>();
+			List<Predicate> globalPredicates = new ArrayList<>();
 
-			boolean isCountQuery = query.getResultType() == Long.class;
-			if (isCountQuery) {
-				root.getFetches().clear();
-			}
+			initPredicatesRecursively(tree, root, query, criteriaBuilder, columnPredicates);
 
-			return createFinalPredicate(criteriaBuilder);
+			return createFinalPredicate(criteriaBuilder, columnPredicates, globalPredicates);
 		}
 
-		private void initPredicatesRecursively(Node<Filter> node, From<S, S> from, FetchParent<S, S> fetch,
-				CriteriaBuilder criteriaBuilder) {
+		/**
+		 * Associations are only joined, never fetched: to-one associations with a left join, collections in an
+		 * <code>EXISTS</code> subquery, so rows are not repeated and pages are limited by the database.
+		 *
+		 * @param query the query or subquery <code>from</code> belongs to
+		 * @param predicates where predicates of the node are added
+		 */
+		private void initPredicatesRecursively(Node<Filter> node, From<?, ?> from, CommonAbstractCriteria query,
+				CriteriaBuilder criteriaBuilder, List<Predicate> predicates) {
 			if (node.isLeaf()) {
-				boolean hasColumnFilter = node.getData() != null;
-				if (hasColumnFilter) {
-					Filter columnFilter = node.getData();
-					columnPredicates.add(columnFilter.createPredicate(from, criteriaBuilder, node.getName()));
+				Filter columnFilter = node.getData();
+				if (columnFilter != null) {
+					predicates.add(columnFilter.createPredicate(from, criteriaBuilder, node.getName()));
 				}
 			}
 			for (Node<Filter> child : node.getChildren()) {
-				Path<Object> path = from.get(child.getName());
-				// if (path instanceof AbstractPathImpl) {
-				// // OneToOne and ManyToOne relationships
-				// // if (((AbstractPathImpl<?>) path).getAttribute().isAssociation()) {
-				// // continue;
-				// // }
-				// // OneToMany and ManyToMany relationships
-				// // if (((AbstractPathImpl<?>) path).getAttribute().isCollection()) {
-				// // continue;
-				// // }
-				// }
 				if (child.isLeaf()) {
-					initPredicatesRecursively(child, from, fetch, criteriaBuilder);
+					initPredicatesRecursively(child, from, query, criteriaBuilder, predicates);
+				} else if (from.get(child.getName()).getModel() instanceof PluralAttribute) {
+					// filters on the same collection must match the same element
+					Subquery<Integer> subquery = query.subquery(Integer.class);
+					List<Predicate> elementPredicates = new ArrayList<>();
+					initPredicatesRecursively(child, correlate(subquery, from).join(child.getName()), subquery,
+							criteriaBuilder, elementPredicates);
+					subquery.select(criteriaBuilder.literal(1)).where(elementPredicates.toArray(new Predicate[0]));
+					predicates.add(criteriaBuilder.exists(subquery));
 				} else {
-					Join<S, S> join = from.join(child.getName(), JoinType.LEFT);
-					Fetch<S, S> childFetch = fetch.fetch(child.getName(), JoinType.LEFT);
-					initPredicatesRecursively(child, join, childFetch, criteriaBuilder);
+					initPredicatesRecursively(child, from.join(child.getName(), JoinType.LEFT), query,
+							criteriaBuilder, predicates);
 				}
 			}
 		}
 
-		private Predicate createFinalPredicate(CriteriaBuilder criteriaBuilder) {
+		private Predicate createFinalPredicate(CriteriaBuilder criteriaBuilder, List<Predicate> columnPredicates,
+				List<Predicate> globalPredicates) {
 			List<Predicate> allPredicates = new ArrayList<>(columnPredicates);
 
 			if (!globalPredicates.isEmpty()) {
@@ -98,4 +165,14 @@ public class SpecificationBuilder<T> extends AbstractPredicateBuilder<Specificat
 		}
 	}
 
+	/**
+	 * @return <code>from</code> of the outer query, usable in the subquery
+	 */
+	private static From<?, ?> correlate(Subquery<?> subquery, From<?, ?> from) {
+		if (from instanceof Root) {
+			return subquery.correlate((Root<?>) from);
+		}
+		return subquery.correlate((Join<?, ?>) from);
+	}
+
 }
\ No newline at end of file
@@ -2,8 +2,13 @@ package com.eaphonetech.common.datatables.jpa.columns;
 
 import java.lang.reflect.Field;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -22,6 +27,9 @@ import jakarta.annotation.Nullable;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.Metamodel;
 
 public abstract class AbstractColumnTypeDecorator {
 
@@ -30,21 +38,102 @@ public abstract class AbstractColumnTypeDecorator {
     public abstract void fillPredicates(List<Predicate> predicates, CriteriaBuilder crit, Expression<?> expression,
             QueryFilter filter);
 
+    /**
+     * most attribute names remembered per class which are not in the metamodel, the names come from requests
+     */
+    private static final int MAX_REFLECTED = 256;
+
+    /**
+     * registered metamodels, dropped with their entity manager factory
+     */
+    private static final Set<Metamodel> REGISTERED = Collections.newSetFromMap(new WeakHashMap<>());
+
+    /**
+     * attribute to decorator of each class, built from the registered metamodels. A {@link ClassValue} does not keep
+     * entity classes (nor their class loader) alive after a context restart.
+     */
+    private static final ClassValue<Map<String, AbstractColumnTypeDecorator>> TABLE = new ClassValue<>() {
+        @Override
+        protected Map<String, AbstractColumnTypeDecorator> computeValue(Class<?> type) {
+            Map<String, AbstractColumnTypeDecorator> table = new ConcurrentHashMap<>();
+            final ManagedType<?> managedType = managedTypeOf(type);
+            if (managedType != null) {
+                for (Attribute<?, ?> attribute : managedType.getAttributes()) {
+                    table.put(attribute.getName(), forFieldType(attribute.getJavaType()));
+                }
+            }
+            return table;
+        }
+    };
+
+    /**
+     * 根据 JPA {@link Metamodel} 预先生成所有实体（及 Embeddable）属性对应的 AbstractColumnTypeDecorator
+     *
+     * @param metamodel JPA 元模型，为 <code>null</code> 时忽略
+     */
+    public static void register(Metamodel metamodel) {
+        synchronized (REGISTERED) {
+            if (metamodel == null || !REGISTERED.add(metamodel)) {
+                return;
+            }
+        }
+        for (ManagedType<?> type : metamodel.getManagedTypes()) {
+            final Class<?> javaType = type.getJavaType();
+            if (javaType != null) {
+                // built again with this metamodel
+                TABLE.remove(javaType);
+                TABLE.get(javaType);
+            }
+        }
+    }
+
+    private static ManagedType<?> managedTypeOf(Class<?> type) {
+        synchronized (REGISTERED) {
+            for (Metamodel metamodel : REGISTERED) {
+                for (ManagedType<?> managedType : metamodel.getManagedTypes()) {
+                    if (type.equals(managedType.getJavaType())) {
+                        return managedType;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * 根据类和属性名，转换成AbstractColumnTypeDecorator
      *
      * @param clazz 类
      * @param attributeName 属性名
      * @return 一定不会为 <code>null</code>
+     * @throws IllegalArgumentException 类中不存在该属性时
      */
     public static AbstractColumnTypeDecorator forType(Class<?> clazz, String attributeName) {
         if (clazz == null || attributeName == null) {
             return EMPTY;
         }
-        // TODO 嵌套关联的支持
-        Field field = ReflectionUtils.findField(clazz, attributeName);
+        final Map<String, AbstractColumnTypeDecorator> table = TABLE.get(clazz);
+        AbstractColumnTypeDecorator decorator = table.get(attributeName);
+        if (decorator == null) {
+            // 不在元模型中的类型，退回到反射，结果（包括不存在的属性）也会记住
+            // TODO 嵌套关联的支持
+            final Field field = ReflectionUtils.findField(clazz, attributeName);
+            decorator = field == null ? MISSING : forFieldType(field.getType());
+            if (table.size() < MAX_REFLECTED) {
+                table.putIfAbsent(attributeName, decorator);
+            }
+        }
+        if (decorator == MISSING) {
+            throw new IllegalArgumentException(
+                    String.format("attribute [%s] not exists in %s", attributeName, clazz.getName()));
+        }
+        return decorator;
+    }
 
-        final Class<?> fieldType = field.getType();
+    private static AbstractColumnTypeDecorator forFieldType(Class<?> fieldType) {
+        if (fieldType == null) {
+            return STRING;
+        }
         if (String.class.isAssignableFrom(fieldType) || Character.class.isAssignableFrom(fieldType)
                 || Character.TYPE.equals(fieldType)) {
             return STRING;
@@ -72,6 +161,20 @@ public abstract class AbstractColumnTypeDecorator {
         }
     };
 
+    /**
+     * marks attributes which do not exist, never returned
+     */
+    private static final AbstractColumnTypeDecorator MISSING = new AbstractColumnTypeDecorator() {
+        @Override
+        public void fillOperations(List<BooleanExpression> ops, PathBuilder<Object> path, QueryFilter filter) {
+        }
+
+        @Override
+        public void fillPredicates(List<Predicate> predicates, CriteriaBuilder crit, Expression<?> expression,
+                QueryFilter filter) {
+        }
+    };
+
     private static final <U extends Object> List<U> convert(List<Object> list,
             Function<? super Object, ? extends U> converter) {
         return list.stream().filter(item -> item != null).map(converter).collect(Collectors.toList());
@@ -144,6 +247,18 @@ public abstract class AbstractColumnTypeDecorator {
                     ops.add(exp);
                 }
             }
+            if (filter.get_lt() != null) {
+                ops.add(Expressions.stringOperation(Ops.STRING_CAST, path).lt(parse(filter.get_lt())));
+            }
+            if (filter.get_lte() != null) {
+                ops.add(Expressions.stringOperation(Ops.STRING_CAST, path).loe(parse(filter.get_lte())));
+            }
+            if (filter.get_gt() != null) {
+                ops.add(Expressions.stringOperation(Ops.STRING_CAST, path).gt(parse(filter.get_gt())));
+            }
+            if (filter.get_gte() != null) {
+                ops.add(Expressions.stringOperation(Ops.STRING_CAST, path).goe(parse(filter.get_gte())));
+            }
             if (StringUtils.hasLength(filter.get_regex())) {
                 ops.add(Expressions.stringOperation(Ops.LIKE, path).like(filter.get_regex()));
             }
@@ -209,6 +324,18 @@ public abstract class AbstractColumnTypeDecorator {
                     predicates.add(predicate);
                 }
             }
+            if (filter.get_lt() != null) {
+                predicates.add(crit.lessThan(exp, parse(filter.get_lt())));
+            }
+            if (filter.get_lte() != null) {
+                predicates.add(crit.lessThanOrEqualTo(exp, parse(filter.get_lte())));
+            }
+            if (filter.get_gt() != null) {
+                predicates.add(crit.greaterThan(exp, parse(filter.get_gt())));
+            }
+            if (filter.get_gte() != null) {
+                predicates.add(crit.greaterThanOrEqualTo(exp, parse(filter.get_gte())));
+            }
             if (StringUtils.hasLength(filter.get_regex())) {
                 // TODO Need test here about regular expressions
                 // src:
@@ -536,6 +663,12 @@ public abstract class AbstractColumnTypeDecorator {
                     ops.add(exp);
                 }
             }
+            if (filter.get_lt() != null) {
+                ops.add(Expressions.booleanOperation(Ops.LT, path).lt(parse(filter.get_lt())));
+            }
+            if (filter.get_gt() != null) {
+                ops.add(Expressions.booleanOperation(Ops.GT, path).gt(parse(filter.get_gt())));
+            }
             if (filter.get_null() != null) {
                 if (filter.get_null()) {
                     ops.add(Expressions.booleanOperation(Ops.IS_NULL, path).isNull());
@@ -555,6 +688,13 @@ public abstract class AbstractColumnTypeDecorator {
             if (filter.get_ne() != null) {
                 predicates.add(crit.notEqual(exp, parse(filter.get_ne())));
             }
+            if (filter.get_lt() != null) {
+                // false < true
+                predicates.add(crit.lessThan(exp, parse(filter.get_lt())));
+            }
+            if (filter.get_gt() != null) {
+                predicates.add(crit.greaterThan(exp, parse(filter.get_gt())));
+            }
             if (filter.get_null() != null) {
                 if (filter.get_null()) {
                     predicates.add(crit.isNull(exp));
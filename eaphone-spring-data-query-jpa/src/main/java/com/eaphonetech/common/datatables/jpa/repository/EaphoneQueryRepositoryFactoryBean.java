@@ -1,14 +1,27 @@
 package com.eaphonetech.common.datatables.jpa.repository;
 
 import java.io.Serializable;
+import java.util.concurrent.Executor;
 
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.FactoryBean;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
 import org.springframework.data.jpa.repository.support.JpaRepositoryFactoryBean;
+import org.springframework.data.jpa.repository.support.JpaRepositoryImplementation;
+import org.springframework.data.repository.core.RepositoryInformation;
 import org.springframework.data.repository.core.RepositoryMetadata;
 import org.springframework.data.repository.core.support.RepositoryFactorySupport;
 
+import com.eaphonetech.common.datatables.config.EaphoneQueryProperties;
+import com.eaphonetech.common.datatables.jpa.columns.AbstractColumnTypeDecorator;
+import com.eaphonetech.common.datatables.metrics.QueryMetrics;
+import com.eaphonetech.common.datatables.util.ParallelQueries;
+import com.eaphonetech.common.datatables.util.QueryGuard;
+
 import jakarta.persistence.EntityManager;
 
 /**
@@ -17,20 +30,85 @@ import jakarta.persistence.EntityManager;
  * @author Damien Arrachequesne
  */
 public class EaphoneQueryRepositoryFactoryBean<R extends JpaRepository<T, ID>, T, ID extends Serializable>
-		extends JpaRepositoryFactoryBean<R, T, ID> {
+		extends JpaRepositoryFactoryBean<R, T, ID> implements EnvironmentAware {
+
+	private EaphoneQueryProperties properties = new EaphoneQueryProperties();
+	private Executor executor;
+	private QueryMetrics metrics;
+	private BeanFactory beanFactory;
 
 	public EaphoneQueryRepositoryFactoryBean(Class<? extends R> repositoryInterface) {
 		super(repositoryInterface);
 	}
 
+	/**
+	 * @param properties settings of created repositories
+	 */
+	public void setProperties(EaphoneQueryProperties properties) {
+		this.properties = properties;
+	}
+
+	/**
+	 * @param executor runs the counts when <code>eaphone.query.parallel</code> is on, defaults to
+	 *            {@link ParallelQueries#defaultExecutor()}
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @param metrics instrumentation of queries, defaults to Micrometer if a <code>MeterRegistry</code> is defined
+	 */
+	public void setMetrics(QueryMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void setEnvironment(Environment environment) {
+		this.properties = EaphoneQueryProperties.from(environment);
+	}
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+		super.setBeanFactory(beanFactory);
+		this.beanFactory = beanFactory;
+	}
+
 	protected RepositoryFactorySupport createRepositoryFactory(EntityManager entityManager) {
-		return new DataTablesRepositoryFactory<T, ID>(entityManager);
+		QueryMetrics queryMetrics = this.metrics;
+		if (queryMetrics == null) {
+			queryMetrics = properties.isMetricsEnabled() ? QueryMetrics.of(beanFactory, "jpa") : QueryMetrics.NOOP;
+		}
+		return new DataTablesRepositoryFactory<T, ID>(entityManager, properties, executor, queryMetrics);
 	}
 
 	private static class DataTablesRepositoryFactory<T, ID extends Serializable> extends JpaRepositoryFactory {
 
-		public DataTablesRepositoryFactory(EntityManager entityManager) {
+		private final EaphoneQueryProperties properties;
+		private final Executor executor;
+		private final QueryMetrics metrics;
+
+		public DataTablesRepositoryFactory(EntityManager entityManager, EaphoneQueryProperties properties,
+				Executor executor, QueryMetrics metrics) {
 			super(entityManager);
+			this.properties = properties;
+			this.executor = executor;
+			this.metrics = metrics;
+			AbstractColumnTypeDecorator.register(entityManager.getMetamodel());
+		}
+
+		@Override
+		protected JpaRepositoryImplementation<?, ?> getTargetRepository(RepositoryInformation information,
+				EntityManager entityManager) {
+			JpaRepositoryImplementation<?, ?> repository = super.getTargetRepository(information, entityManager);
+			if (repository instanceof EaphoneQueryRepositoryImpl) {
+				((EaphoneQueryRepositoryImpl<?, ?>) repository).setProperties(properties);
+				((EaphoneQueryRepositoryImpl<?, ?>) repository).setExecutor(executor);
+				((EaphoneQueryRepositoryImpl<?, ?>) repository).setMetrics(metrics);
+				((EaphoneQueryRepositoryImpl<?, ?>) repository)
+						.setQueryGuard(QueryGuard.of(information.getRepositoryInterface(), properties));
+			}
+			return repository;
 		}
 
 		@Override
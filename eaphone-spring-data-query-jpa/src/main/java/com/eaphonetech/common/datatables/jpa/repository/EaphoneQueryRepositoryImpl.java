@@ -1,29 +1,266 @@
 package com.eaphonetech.common.datatables.jpa.repository;
 
+import static org.springframework.data.jpa.repository.query.QueryUtils.toOrders;
+
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
+import org.hibernate.query.criteria.JpaOrder;
+import org.hibernate.query.sqm.NullPrecedence;
 
-import org.springframework.data.domain.Page;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
 
+import com.eaphonetech.common.datatables.config.EaphoneQueryProperties;
 import com.eaphonetech.common.datatables.jpa.SpecificationBuilder;
+import com.eaphonetech.common.datatables.metrics.QueryMetrics;
+import com.eaphonetech.common.datatables.metrics.QueryMetrics.Phase;
+import com.eaphonetech.common.datatables.metrics.QueryMetrics.Recording;
 import com.eaphonetech.common.datatables.model.mapping.CountInput;
+import com.eaphonetech.common.datatables.model.mapping.CountMode;
 import com.eaphonetech.common.datatables.model.mapping.CountOutput;
 import com.eaphonetech.common.datatables.model.mapping.QueryInput;
 import com.eaphonetech.common.datatables.model.mapping.QueryOutput;
 import com.eaphonetech.common.datatables.util.Converter;
+import com.eaphonetech.common.datatables.util.KeysetCursor;
+import com.eaphonetech.common.datatables.util.ParallelQueries;
+import com.eaphonetech.common.datatables.util.Projection;
+import com.eaphonetech.common.datatables.util.ProjectionType;
+import com.eaphonetech.common.datatables.util.QueryGuard;
+import com.eaphonetech.common.datatables.util.QueryResultCache;
+import com.eaphonetech.common.datatables.util.TotalCountCache;
 
+import jakarta.persistence.EntityGraph;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.PluralJoin;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.metamodel.PluralAttribute;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class EaphoneQueryRepositoryImpl<T, ID extends Serializable> extends SimpleJpaRepository<T, ID>
 		implements JpaQueryRepository<T, ID> {
 
+	private final JpaEntityInformation<T, ?> entityInformation;
+	private final EntityManager entityManager;
+	private final RowCountEstimator estimator;
+	private EaphoneQueryProperties properties = new EaphoneQueryProperties();
+	private TotalCountCache totalCountCache = new TotalCountCache(properties.getTotalCacheTtl());
+	private Executor executor;
+	private QueryResultCache resultCache;
+	private QueryMetrics metrics = QueryMetrics.NOOP;
+	private QueryGuard queryGuard = QueryGuard.NONE;
+
 	EaphoneQueryRepositoryImpl(JpaEntityInformation<T, ?> entityInformation, EntityManager entityManager) {
 		super(entityInformation, entityManager);
+		this.entityInformation = entityInformation;
+		this.entityManager = entityManager;
+		this.estimator = new RowCountEstimator(entityManager, entityInformation.getJavaType());
+	}
+
+	void setProperties(EaphoneQueryProperties properties) {
+		this.properties = properties;
+		this.totalCountCache = new TotalCountCache(properties.getTotalCacheTtl());
+		this.resultCache = properties.getResultCacheSize() > 0
+				? new QueryResultCache(properties.getResultCacheSize(), properties.getResultCacheTtl())
+				: null;
+	}
+
+	/**
+	 * Drop cached results after a change, and again when the transaction completes, since results read by others
+	 * until then still see the data before the change.
+	 */
+	private void invalidateResults() {
+		final QueryResultCache cache = this.resultCache;
+		if (cache == null) {
+			return;
+		}
+		cache.invalidate();
+		if (TransactionSynchronizationManager.isSynchronizationActive()
+				&& !TransactionSynchronizationManager.hasResource(cache)) {
+			// once per transaction, not per saved entity
+			TransactionSynchronizationManager.bindResource(cache, Boolean.TRUE);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(cache);
+					cache.invalidate();
+				}
+			});
+		}
+	}
+
+	@Override
+	public <S extends T> S save(S entity) {
+		final S saved = super.save(entity);
+		invalidateResults();
+		return saved;
+	}
+
+	@Override
+	public void delete(T entity) {
+		super.delete(entity);
+		invalidateResults();
+	}
+
+	@Override
+	public void deleteAllInBatch(Iterable<T> entities) {
+		super.deleteAllInBatch(entities);
+		invalidateResults();
+	}
+
+	@Override
+	public void deleteAllByIdInBatch(Iterable<ID> ids) {
+		super.deleteAllByIdInBatch(ids);
+		invalidateResults();
+	}
+
+	@Override
+	public void deleteAllInBatch() {
+		super.deleteAllInBatch();
+		invalidateResults();
+	}
+
+	/**
+	 * @param metrics instrumentation of queries
+	 */
+	void setMetrics(QueryMetrics metrics) {
+		this.metrics = metrics;
+		if (resultCache != null) {
+			metrics.monitor(getDomainClass(), resultCache);
+		}
+	}
+
+	/**
+	 * @param queryGuard limits of requests, checked before any query
+	 */
+	void setQueryGuard(QueryGuard queryGuard) {
+		this.queryGuard = queryGuard;
+	}
+
+	/**
+	 * @param executor runs the counts in parallel mode, <code>null</code> for
+	 *            {@link ParallelQueries#defaultExecutor()}
+	 */
+	void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Start a count. In parallel mode it runs on the executor with its own read-only {@link EntityManager}, since
+	 * an {@link EntityManager} must not be shared between threads; otherwise it runs at once.
+	 *
+	 * @param recording recording of the query
+	 * @param phase phase the count is timed as
+	 * @param counter the count
+	 * @return future of the count
+	 */
+	private Future<Long> submitCount(Recording recording, Phase phase, Function<EntityManager, Long> counter) {
+		if (!properties.isParallel()) {
+			return ParallelQueries.submit(null, () -> timed(recording, phase, counter, entityManager));
+		}
+		return ParallelQueries.submit(executor == null ? ParallelQueries.defaultExecutor() : executor, () -> {
+			final EntityManager em = entityManager.getEntityManagerFactory().createEntityManager();
+			try {
+				final Session session = em.unwrap(Session.class);
+				session.setDefaultReadOnly(true);
+				session.setHibernateFlushMode(FlushMode.MANUAL);
+				return timed(recording, phase, counter, em);
+			} finally {
+				em.close();
+			}
+		});
+	}
+
+	private static long timed(Recording recording, Phase phase, Function<EntityManager, Long> counter,
+			EntityManager em) {
+		final long mark = recording.mark();
+		try {
+			return counter.apply(em);
+		} finally {
+			recording.record(phase, mark);
+		}
+	}
+
+	/**
+	 * @param future a count started by {@link #submitCount(Recording, Phase, Function)}
+	 * @return the count
+	 */
+	private long await(Future<Long> future) {
+		return ParallelQueries.await(future, properties.isParallel() ? properties.getParallelTimeout() : null);
+	}
+
+	/**
+	 * Count with the given {@link EntityManager}, same as {@link #count(Specification)} otherwise.
+	 */
+	private long count(EntityManager em, Specification<T> specification) {
+		if (em == entityManager) {
+			return specification == null ? count() : count(specification);
+		}
+		final CriteriaBuilder builder = em.getCriteriaBuilder();
+		final CriteriaQuery<Long> query = builder.createQuery(Long.class);
+		final Root<T> root = query.from(getDomainClass());
+		if (specification != null) {
+			final Predicate predicate = specification.toPredicate(root, query, builder);
+			if (predicate != null) {
+				query.where(predicate);
+			}
+		}
+		query.select(query.isDistinct() ? builder.countDistinct(root) : builder.count(root));
+		query.orderBy(Collections.emptyList());
+
+		final TypedQuery<Long> typedQuery = em.createQuery(query);
+		applyTimeout(typedQuery);
+		long total = 0L;
+		for (final Long count : typedQuery.getResultList()) {
+			total += count == null ? 0L : count;
+		}
+		return total;
+	}
+
+	private void applyTimeout(TypedQuery<?> query) {
+		if (properties.isParallel() && properties.getParallelTimeout() != null) {
+			query.setHint(HibernateHints.HINT_TIMEOUT,
+					(int) Math.max(1L, properties.getParallelTimeout().toSeconds()));
+		}
 	}
 
 	@Override
@@ -39,36 +276,520 @@ public class EaphoneQueryRepositoryImpl<T, ID extends Serializable> extends Simp
 	@Override
 	public QueryOutput<T> findAll(QueryInput input, Specification<T> additionalSpecification,
 			Specification<T> preFilteringSpecification) {
-		QueryOutput<T> output = new QueryOutput<>();
+		return findAll(input, additionalSpecification, preFilteringSpecification, (FetchPlan) null);
+	}
+
+	@Override
+	public QueryOutput<T> findAll(QueryInput input, FetchPlan fetchPlan) {
+		return findAll(input, null, null, fetchPlan);
+	}
+
+	@Override
+	public QueryOutput<T> findAll(QueryInput input, Specification<T> additionalSpecification,
+			Specification<T> preFilteringSpecification, FetchPlan fetchPlan) {
+		if (resultCache == null) {
+			return findAllUncached(input, additionalSpecification, preFilteringSpecification, fetchPlan,
+					this::toEntity);
+		}
+		// results loaded with another plan have other associations initialized
+		return resultCache.get(input,
+				fetchPlan == null ? additionalSpecification : Arrays.asList(additionalSpecification, fetchPlan),
+				preFilteringSpecification, () -> findAllUncached(input, additionalSpecification,
+						preFilteringSpecification, fetchPlan, this::toEntity));
+	}
+
+	/**
+	 * @param rowOf creates a row from a tuple of the selected fields; whole entities are read when nothing is
+	 *            selected, then the rows must be entities
+	 */
+	private <R> QueryOutput<R> findAllUncached(QueryInput input, Specification<T> additionalSpecification,
+			Specification<T> preFilteringSpecification, FetchPlan fetchPlan,
+			BiFunction<Tuple, List<String>, R> rowOf) {
+		QueryOutput<R> output = new QueryOutput<>();
 		if (input.getLimit() == 0) {
 			return output;
 		}
 
+		Future<Long> totalCount = null;
+		Future<Long> filteredCount = null;
+		final Recording recording = metrics.start(getDomainClass(), "findAll", input.getWhere());
 		try {
-			long recordsTotal = preFilteringSpecification == null ? count() : count(preFilteringSpecification);
-			if (recordsTotal == 0) {
+			queryGuard.check(input);
+			final CountMode countMode = input.getCount_mode() == null ? properties.getCountMode()
+					: input.getCount_mode();
+			totalCount = submitCount(recording, Phase.TOTAL_COUNT,
+					em -> countTotal(countMode, preFilteringSpecification, em));
+			if (!properties.isParallel() && await(totalCount) == 0 && countMode == CountMode.EXACT) {
 				return output;
 			}
-			output.setTotal(recordsTotal);
 
+			long mark = recording.mark();
 			SpecificationBuilder<T> specificationBuilder = new SpecificationBuilder<>(input);
-			Page<T> data = findAll(Specification.where(specificationBuilder.build()).and(additionalSpecification)
-					.and(preFilteringSpecification), specificationBuilder.createPageable());
+			Specification<T> specification = Specification.where(specificationBuilder.build())
+					.and(additionalSpecification).and(preFilteringSpecification);
+			final String idAttribute = idAttribute();
+			Pageable pageable = specificationBuilder.createPageable(idAttribute);
+			final KeysetCursor cursor = KeysetCursor.of(input, idAttribute);
+			recording.record(Phase.BUILD, mark);
+			final boolean isFiltered = !input.getWhere().isEmpty() || additionalSpecification != null;
+			if (properties.isParallel() && countMode != CountMode.NONE
+					&& (isFiltered || countMode != CountMode.EXACT)) {
+				// started before the page is read, cancelled if the page turns out to be the last one
+				filteredCount = submitCount(recording, Phase.FILTERED_COUNT, em -> count(em, specification));
+			}
+
+			// without counting, or reading from a cursor, one more record tells whether there is a next page
+			final boolean lookAhead = countMode == CountMode.NONE || cursor != null;
+			mark = recording.mark();
+			List<R> content = readPage(cursor == null ? specification
+					: specification.and(SpecificationBuilder.cursor(cursor)), pageable, lookAhead,
+					Projection.fieldsOf(input, idAttribute), fetchPlan, rowOf);
+			recording.record(Phase.FETCH, mark);
+			final long recordsTotal = await(totalCount);
+			if (recordsTotal == 0 && countMode == CountMode.EXACT) {
+				return output;
+			}
+			output.setTotal(recordsTotal);
+			if (lookAhead) {
+				output.setHas_more(content.size() > pageable.getPageSize());
+				if (output.getHas_more()) {
+					content = content.subList(0, pageable.getPageSize());
+				}
+			}
+			if (cursor != null && cursor.isBefore()) {
+				content = new ArrayList<>(content);
+				Collections.reverse(content);
+			}
+
+			long recordsFiltered;
+			if (countMode == CountMode.NONE) {
+				recordsFiltered = -1L;
+			} else {
+				if (!isFiltered && countMode == CountMode.EXACT) {
+					// same as the total count
+					recordsFiltered = recordsTotal;
+				} else if (cursor == null && content.size() < pageable.getPageSize()
+						&& (pageable.getOffset() == 0 || !content.isEmpty())) {
+					// last page, no need to count
+					recordsFiltered = pageable.getOffset() + content.size();
+				} else if (filteredCount != null) {
+					recordsFiltered = await(filteredCount);
+				} else {
+					mark = recording.mark();
+					recordsFiltered = count(specification);
+					recording.record(Phase.FILTERED_COUNT, mark);
+				}
+				if (!lookAhead) {
+					output.setHas_more(pageable.getOffset() + content.size() < recordsFiltered);
+				}
+			}
+
+			if (!content.isEmpty() && idAttribute != null) {
+				final List<Sort.Order> keys = KeysetCursor.keysOf(input.getOrders(), idAttribute);
+				output.setStart_cursor(cursorOf(keys, content.get(0)));
+				output.setEnd_cursor(cursorOf(keys, content.get(content.size() - 1)));
+			}
 
 			output.setDraw(input.getDraw());
-			output.setData(data.getContent());
-			output.setFiltered(data.getTotalElements());
+			output.setData(content);
+			output.setFiltered(recordsFiltered);
 
 		} catch (Exception e) {
 			output.setDraw(input.getDraw());
 			output.setError(e.toString());
 			output.setFiltered(0L);
 			log.error("caught exception", e);
+			recording.error(e);
+		} finally {
+			// no-op for finished counts
+			ParallelQueries.cancel(totalCount, filteredCount);
+			recording.close();
 		}
 
 		return output;
 	}
 
+	@Override
+	public Stream<T> streamAll(QueryInput input) {
+		return streamAll(input, null, null);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Stream<T> streamAll(QueryInput input, Specification<T> additionalSpecification,
+			Specification<T> preFilteringSpecification) {
+		if (StringUtils.hasLength(input.getBefore())) {
+			throw new IllegalArgumentException("before is not supported when streaming");
+		}
+		queryGuard.check(input);
+		SpecificationBuilder<T> specificationBuilder = new SpecificationBuilder<>(input);
+		Specification<T> specification = Specification.where(specificationBuilder.build())
+				.and(additionalSpecification).and(preFilteringSpecification);
+		final String idAttribute = idAttribute();
+		final KeysetCursor cursor = KeysetCursor.of(input, idAttribute);
+		if (cursor != null) {
+			specification = specification.and(SpecificationBuilder.cursor(cursor));
+		}
+
+		Pageable pageable = specificationBuilder.createPageable(idAttribute);
+		final List<String> fields = Projection.fieldsOf(input, idAttribute);
+		TypedQuery<?> query = fields == null ? getQuery(specification, pageable.getSort())
+				: getProjectionQuery(specification, pageable.getSort(), fields);
+		query.setFirstResult((int) pageable.getOffset());
+		if (pageable.getPageSize() < Integer.MAX_VALUE) {
+			query.setMaxResults(pageable.getPageSize());
+		}
+		query.setHint(HibernateHints.HINT_FETCH_SIZE, properties.getStreamFetchSize());
+		query.setHint(HibernateHints.HINT_READ_ONLY, true);
+		if (fields != null) {
+			// new instances, not managed
+			return ((TypedQuery<Tuple>) query).getResultStream().map(tuple -> toEntity(tuple, fields));
+		}
+
+		// detach each record once the next one is read, so the persistence context does not grow
+		final AtomicReference<T> previous = new AtomicReference<>();
+		return ((TypedQuery<T>) query).getResultStream().map(entity -> {
+			final T last = previous.getAndSet(entity);
+			if (last != null && last != entity) {
+				entityManager.detach(last);
+			}
+			return entity;
+		});
+	}
+
+	/**
+	 * @param countMode how to count
+	 * @param preFilteringSpecification pre-filtering, may be <code>null</code>
+	 * @return total records, <code>-1</code> if not counted
+	 */
+	private long countTotal(CountMode countMode, Specification<T> preFilteringSpecification, EntityManager em) {
+		switch (countMode) {
+		case NONE:
+			return -1L;
+		case CACHED_TOTAL:
+			// specifications have no equality, only those with a key are cached
+			final Object key = TotalCountCache.keyOf(preFilteringSpecification);
+			if (key == null) {
+				return count(em, preFilteringSpecification);
+			}
+			return totalCountCache.get(key, () -> count(em, preFilteringSpecification));
+		case ESTIMATED:
+			if (preFilteringSpecification == null) {
+				OptionalLong estimated = estimator.estimate(em);
+				if (estimated.isPresent()) {
+					return estimated.getAsLong();
+				}
+			}
+			return count(em, preFilteringSpecification);
+		case EXACT:
+		default:
+			return count(em, preFilteringSpecification);
+		}
+	}
+
+	/**
+	 * @return name of the id attribute, <code>null</code> for composite ids
+	 */
+	private String idAttribute() {
+		return entityInformation.hasCompositeId() || entityInformation.getIdAttribute() == null ? null
+				: entityInformation.getIdAttribute().getName();
+	}
+
+	/**
+	 * @param row an entity, or a {@link TupleBackedMap}
+	 */
+	private static String cursorOf(List<Sort.Order> keys, Object row) {
+		List<Object> values = new ArrayList<>(keys.size());
+		if (row instanceof TupleBackedMap) {
+			for (final Sort.Order key : keys) {
+				values.add(((TupleBackedMap) row).get(key.getProperty()));
+			}
+		} else {
+			final BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(row);
+			for (final Sort.Order key : keys) {
+				values.add(KeysetCursor.read(wrapper, key.getProperty()));
+			}
+		}
+		return KeysetCursor.encode(keys, values);
+	}
+
+	/**
+	 * Read one page of data without counting.
+	 *
+	 * @param specification filter
+	 * @param pageable page and sort
+	 * @param lookAhead whether to read one more record after the page
+	 * @param fields fields to read, <code>null</code> for whole entities
+	 * @param fetchPlan associations to load with whole entities, may be <code>null</code>
+	 * @param rowOf creates a row from a tuple of the fields
+	 * @return content of the page, entities if <code>fields</code> is <code>null</code>
+	 */
+	@SuppressWarnings("unchecked")
+	private <R> List<R> readPage(Specification<T> specification, Pageable pageable, boolean lookAhead,
+			List<String> fields, FetchPlan fetchPlan, BiFunction<Tuple, List<String>, R> rowOf) {
+		final EntityGraph<T> graph = fields == null && fetchPlan != null
+				? fetchPlan.toGraph(entityManager, getDomainClass())
+				: null;
+		final String idAttribute = idAttribute();
+		if (fields == null && idAttribute != null && (properties.isTwoPhasePaging()
+				|| graph != null && FetchPlan.fetchesCollection(entityManager.getMetamodel(),
+						entityManager.getMetamodel().entity(getDomainClass()), graph.getAttributeNodes()))) {
+			return (List<R>) readPageByIds(specification, pageable, lookAhead, idAttribute, graph);
+		}
+		TypedQuery<?> query = fields == null ? getQuery(specification, pageable.getSort())
+				: getProjectionQuery(specification, pageable.getSort(), fields);
+		if (graph != null) {
+			query.setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, graph);
+		}
+		query.setFirstResult((int) pageable.getOffset());
+		int maxResults = pageable.getPageSize();
+		if (lookAhead && maxResults < Integer.MAX_VALUE) {
+			maxResults++;
+		}
+		query.setMaxResults(maxResults);
+		applyTimeout(query);
+		if (fields == null) {
+			return ((TypedQuery<R>) query).getResultList();
+		}
+		final List<Tuple> tuples = ((TypedQuery<Tuple>) query).getResultList();
+		List<R> content = new ArrayList<>(tuples.size());
+		for (final Tuple tuple : tuples) {
+			content.add(rowOf.apply(tuple, fields));
+		}
+		return content;
+	}
+
+	/**
+	 * Read one page in two queries: the ids of the page, limited and ordered by the database, then the entities of
+	 * these ids with their collections. Fetching collections in the page query would repeat rows and page in memory.
+	 *
+	 * @param specification filter
+	 * @param pageable page and sort
+	 * @param lookAhead whether to read one more record after the page
+	 * @param idAttribute name of the id attribute
+	 * @param graph fetch graph of the entities, <code>null</code> to load all their collections
+	 * @return content of the page, in the order of the ids
+	 */
+	private List<T> readPageByIds(Specification<T> specification, Pageable pageable, boolean lookAhead,
+			String idAttribute, EntityGraph<T> graph) {
+		final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		final CriteriaQuery<Tuple> query = builder.createTupleQuery();
+		final Root<T> root = query.from(getDomainClass());
+		if (specification != null) {
+			final Predicate predicate = specification.toPredicate(root, query, builder);
+			if (predicate != null) {
+				query.where(predicate);
+			}
+		}
+		final List<Order> orders = pageable.getSort().isSorted() ? ordersOf(pageable.getSort(), root, builder)
+				: Collections.emptyList();
+		List<Selection<?>> selections = new ArrayList<>(orders.size() + 1);
+		selections.add(root.get(idAttribute));
+		if (joinsCollection(root)) {
+			// additional specifications may join collections and repeat ids, they are made distinct by the
+			// database, before the page is limited; DISTINCT needs the sort keys in the select list
+			for (final Order order : orders) {
+				selections.add(order.getExpression());
+			}
+			query.distinct(true);
+		}
+		query.multiselect(selections);
+		query.orderBy(orders);
+		final TypedQuery<Tuple> idQuery = entityManager.createQuery(query);
+		idQuery.setFirstResult((int) pageable.getOffset());
+		int maxResults = pageable.getPageSize();
+		if (lookAhead && maxResults < Integer.MAX_VALUE) {
+			maxResults++;
+		}
+		idQuery.setMaxResults(maxResults);
+		applyTimeout(idQuery);
+		List<Object> ids = new ArrayList<>();
+		for (final Tuple tuple : idQuery.getResultList()) {
+			ids.add(tuple.get(0));
+		}
+		if (ids.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		// one query per collection, fetching several at once would multiply their rows
+		final List<String> collections = new ArrayList<>();
+		if (graph == null) {
+			for (final PluralAttribute<? super T, ?, ?> attribute : entityManager.getMetamodel()
+					.entity(getDomainClass()).getPluralAttributes()) {
+				collections.add(attribute.getName());
+			}
+		}
+		final TypedQuery<T> byIds = queryByIds(ids, idAttribute);
+		if (graph != null) {
+			byIds.setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, graph);
+		} else if (!collections.isEmpty()) {
+			byIds.setHint(SpecHints.HINT_SPEC_LOAD_GRAPH, collectionGraph(collections.get(0)));
+		}
+		Map<Object, T> entities = new HashMap<>(ids.size() * 2);
+		for (final T entity : byIds.getResultList()) {
+			entities.put(entityInformation.getId(entity), entity);
+		}
+		for (int i = 1; i < collections.size(); i++) {
+			final TypedQuery<T> withCollection = queryByIds(ids, idAttribute);
+			withCollection.setHint(SpecHints.HINT_SPEC_LOAD_GRAPH, collectionGraph(collections.get(i)));
+			// initializes the collection of the entities already read
+			withCollection.getResultList();
+		}
+		List<T> content = new ArrayList<>(ids.size());
+		for (final Object id : ids) {
+			final T entity = entities.get(id);
+			// deleted in between
+			if (entity != null) {
+				content.add(entity);
+			}
+		}
+		return content;
+	}
+
+	private EntityGraph<T> collectionGraph(String collection) {
+		final EntityGraph<T> graph = entityManager.createEntityGraph(getDomainClass());
+		graph.addAttributeNodes(collection);
+		return graph;
+	}
+
+	private TypedQuery<T> queryByIds(List<Object> ids, String idAttribute) {
+		final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		final CriteriaQuery<T> query = builder.createQuery(getDomainClass());
+		final Root<T> root = query.from(getDomainClass());
+		query.select(root).where(root.get(idAttribute).in(ids));
+		final TypedQuery<T> byIds = entityManager.createQuery(query);
+		applyTimeout(byIds);
+		return byIds;
+	}
+
+	/**
+	 * @return whether a collection is joined, so rows of <code>from</code> may repeat
+	 */
+	private static boolean joinsCollection(From<?, ?> from) {
+		for (final Join<?, ?> join : from.getJoins()) {
+			if (join instanceof PluralJoin || joinsCollection(join)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Select only some fields, joining associations as filters do. Collections cannot be selected, they would
+	 * repeat rows.
+	 *
+	 * @param specification filter
+	 * @param sort ordering
+	 * @param fields dotted paths of the fields
+	 * @return query of one tuple per entity, values in the order of the fields
+	 */
+	private TypedQuery<Tuple> getProjectionQuery(Specification<T> specification, Sort sort, List<String> fields) {
+		final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		final CriteriaQuery<Tuple> query = builder.createTupleQuery();
+		final Root<T> root = query.from(getDomainClass());
+		if (specification != null) {
+			final Predicate predicate = specification.toPredicate(root, query, builder);
+			if (predicate != null) {
+				query.where(predicate);
+			}
+		}
+		List<Selection<?>> selections = new ArrayList<>(fields.size());
+		for (final String field : fields) {
+			selections.add(pathOf(root, field));
+		}
+		query.multiselect(selections);
+		if (sort.isSorted()) {
+			query.orderBy(ordersOf(sort, root, builder));
+		}
+		return entityManager.createQuery(query);
+	}
+
+	/**
+	 * Same as {@link SimpleJpaRepository}, but with the null handling of the sort, which <code>toOrders</code>
+	 * ignores.
+	 */
+	@Override
+	protected <S extends T> TypedQuery<S> getQuery(Specification<S> spec, Class<S> domainClass, Sort sort) {
+		if (sort.stream().allMatch(o -> o.getNullHandling() == Sort.NullHandling.NATIVE)) {
+			return super.getQuery(spec, domainClass, sort);
+		}
+		final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		final CriteriaQuery<S> query = builder.createQuery(domainClass);
+		final Root<S> root = query.from(domainClass);
+		if (spec != null) {
+			final Predicate predicate = spec.toPredicate(root, query, builder);
+			if (predicate != null) {
+				query.where(predicate);
+			}
+		}
+		query.select(root);
+		query.orderBy(ordersOf(sort, root, builder));
+		return entityManager.createQuery(query);
+	}
+
+	/**
+	 * @return orders of the sort, with <code>NULLS FIRST</code> or <code>NULLS LAST</code> when it is not native
+	 */
+	private static List<Order> ordersOf(Sort sort, From<?, ?> root, CriteriaBuilder builder) {
+		List<Order> orders = new ArrayList<>(toOrders(sort, root, builder));
+		int i = 0;
+		for (final Sort.Order o : sort) {
+			final Order order = orders.get(i);
+			if (order instanceof JpaOrder && o.getNullHandling() != Sort.NullHandling.NATIVE) {
+				orders.set(i, ((JpaOrder) order).nullPrecedence(
+						o.getNullHandling() == Sort.NullHandling.NULLS_FIRST ? NullPrecedence.FIRST : NullPrecedence.LAST));
+			}
+			i++;
+		}
+		return orders;
+	}
+
+	private static Path<?> pathOf(Root<?> root, String field) {
+		final String[] names = field.split("\\.");
+		From<?, ?> from = root;
+		for (int i = 0; i < names.length - 1; i++) {
+			from = joinOf(from, names[i], field);
+		}
+		final Path<?> path = from.get(names[names.length - 1]);
+		if (path.getModel() instanceof PluralAttribute) {
+			throw new IllegalArgumentException("collection " + field + " cannot be selected");
+		}
+		return path;
+	}
+
+	/**
+	 * @return the left join of an association, the one of the filters if any
+	 */
+	private static From<?, ?> joinOf(From<?, ?> from, String name, String field) {
+		for (final Join<?, ?> join : from.getJoins()) {
+			if (join.getAttribute().getName().equals(name) && join.getJoinType() == JoinType.LEFT) {
+				return join;
+			}
+		}
+		final Join<?, ?> join = from.join(name, JoinType.LEFT);
+		if (join instanceof PluralJoin) {
+			throw new IllegalArgumentException("collection " + field + " cannot be selected");
+		}
+		return join;
+	}
+
+	/**
+	 * @return a new instance of the entity class with the selected fields; associations without any selected value
+	 *         are left <code>null</code>
+	 */
+	private T toEntity(Tuple tuple, List<String> fields) {
+		final T entity = BeanUtils.instantiateClass(getDomainClass());
+		final DirectFieldAccessor accessor = new DirectFieldAccessor(entity);
+		accessor.setAutoGrowNestedPaths(true);
+		for (int i = 0; i < fields.size(); i++) {
+			final Object value = tuple.get(i);
+			if (value != null || fields.get(i).indexOf('.') < 0) {
+				accessor.setPropertyValue(fields.get(i), value);
+			}
+		}
+		return entity;
+	}
+
 	@Override
 	public <R> QueryOutput<R> findAll(QueryInput input, Function<T, R> converter) {
 		return findAll(input, null, null, converter);
@@ -78,7 +799,22 @@ public class EaphoneQueryRepositoryImpl<T, ID extends Serializable> extends Simp
 	public <R> QueryOutput<R> findAll(QueryInput input, Specification<T> additionalSpecification,
 			Specification<T> preFilteringSpecification, Function<T, R> converter) {
 		QueryOutput<T> raw = findAll(input, additionalSpecification, preFilteringSpecification);
-		return Converter.convert(raw, converter);
+		return metrics.time(getDomainClass(), "findAll", input.getWhere(), Phase.CONVERT,
+				() -> Converter.convert(raw, converter));
+	}
+
+	@Override
+	public <P> QueryOutput<P> findAll(QueryInput input, Class<P> projection) {
+		final ProjectionType<P> type = ProjectionType.of(projection);
+		final QueryInput selecting = type.selecting(input);
+		// rows are views of the tuples, projections read them without entities in between
+		QueryOutput<TupleBackedMap> rows = resultCache == null
+				? findAllUncached(selecting, null, null, null, TupleBackedMap::new)
+				// not entities, even if selecting the same fields
+				: resultCache.get(selecting, TupleBackedMap.class, null,
+						() -> findAllUncached(selecting, null, null, null, TupleBackedMap::new));
+		return metrics.time(getDomainClass(), "findAll", input.getWhere(), Phase.CONVERT,
+				() -> Converter.convert(rows, type::fromValues));
 	}
 
 	@Override
@@ -94,25 +830,144 @@ public class EaphoneQueryRepositoryImpl<T, ID extends Serializable> extends Simp
 	@Override
 	public CountOutput count(CountInput input, Specification<T> additionalSpecification,
 			Specification<T> preFilteringSpecification) {
+		if (resultCache == null) {
+			return countUncached(input, additionalSpecification, preFilteringSpecification);
+		}
+		return resultCache.get(input, additionalSpecification, preFilteringSpecification,
+				() -> countUncached(input, additionalSpecification, preFilteringSpecification));
+	}
+
+	private CountOutput countUncached(CountInput input, Specification<T> additionalSpecification,
+			Specification<T> preFilteringSpecification) {
 		CountOutput output = new CountOutput();
+		Future<Long> totalCount = null;
+		Future<Long> filteredCount = null;
+		final Recording recording = metrics.start(getDomainClass(), "count", input);
 		try {
-			long recordsTotal = preFilteringSpecification == null ? count() : count(preFilteringSpecification);
-			if (recordsTotal == 0) {
+			queryGuard.check(input);
+			final CountMode countMode = properties.getCountMode();
+			totalCount = submitCount(recording, Phase.TOTAL_COUNT,
+					em -> countTotal(countMode, preFilteringSpecification, em));
+			if (!properties.isParallel() && await(totalCount) == 0 && countMode == CountMode.EXACT) {
 				return output;
 			}
-			output.setTotal(recordsTotal);
 
-			SpecificationBuilder<T> specificationBuilder = new SpecificationBuilder<>(input);
-			long filtered = count(Specification.where(specificationBuilder.build()).and(additionalSpecification)
-					.and(preFilteringSpecification));
-			output.setFiltered(filtered);
+			final boolean sameAsTotal = input.isEmpty() && additionalSpecification == null
+					&& countMode == CountMode.EXACT;
+			if (!sameAsTotal) {
+				final long mark = recording.mark();
+				SpecificationBuilder<T> specificationBuilder = new SpecificationBuilder<>(input);
+				final Specification<T> specification = Specification.where(specificationBuilder.build())
+						.and(additionalSpecification).and(preFilteringSpecification);
+				recording.record(Phase.BUILD, mark);
+				filteredCount = submitCount(recording, Phase.FILTERED_COUNT, em -> count(em, specification));
+			}
+
+			final long recordsTotal = await(totalCount);
+			if (recordsTotal == 0 && countMode == CountMode.EXACT) {
+				return output;
+			}
+			output.setTotal(recordsTotal);
+			// same as the total count if not filtered
+			output.setFiltered(sameAsTotal ? recordsTotal : await(filteredCount));
 		} catch (Exception e) {
 			output.setError(e.toString());
 			output.setFiltered(0L);
 			log.error("caught exception", e);
+			recording.error(e);
+		} finally {
+			ParallelQueries.cancel(totalCount, filteredCount);
+			recording.close();
 		}
 
 		return output;
 	}
 
-}
\ No newline at end of file
+	@Override
+	public Map<String, CountOutput> countFacets(Map<String, CountInput> inputs) {
+		return countFacets(inputs, null, null);
+	}
+
+	@Override
+	public Map<String, CountOutput> countFacets(Map<String, CountInput> inputs,
+			Specification<T> additionalSpecification, Specification<T> preFilteringSpecification) {
+		Map<String, CountOutput> outputs = new LinkedHashMap<>();
+		if (inputs.isEmpty()) {
+			return outputs;
+		}
+		try {
+			for (final CountInput input : inputs.values()) {
+				queryGuard.check(input);
+			}
+			final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+			final CriteriaQuery<Tuple> query = builder.createTupleQuery();
+			final Root<T> root = query.from(getDomainClass());
+
+			List<Predicate> facets = new ArrayList<>(inputs.size());
+			for (final CountInput input : inputs.values()) {
+				final Predicate predicate = Specification.where(new SpecificationBuilder<T>(input).build())
+						.and(additionalSpecification).toPredicate(root, query, builder);
+				facets.add(predicate == null ? builder.conjunction() : predicate);
+			}
+			if (preFilteringSpecification != null) {
+				final Predicate predicate = preFilteringSpecification.toPredicate(root, query, builder);
+				if (predicate != null) {
+					query.where(predicate);
+				}
+			}
+
+			// joined collections repeat rows, so count distinct ids instead of summing rows
+			final String idAttribute = idAttribute();
+			final boolean distinct = idAttribute != null && hasPluralJoin(root);
+			List<Selection<?>> selections = new ArrayList<>(facets.size() + 1);
+			for (final Predicate facet : facets) {
+				if (distinct) {
+					selections.add(builder.countDistinct(builder.selectCase().when(facet, root.get(idAttribute))
+							.otherwise(builder.nullLiteral(entityInformation.getIdType()))));
+				} else {
+					selections.add(builder.sum(builder.<Long>selectCase().when(facet, builder.literal(1L))
+							.otherwise(builder.literal(0L))));
+				}
+			}
+			selections.add(distinct ? builder.countDistinct(root) : builder.count(root));
+			query.multiselect(selections);
+			final Tuple tuple = entityManager.createQuery(query).getSingleResult();
+
+			final CountMode countMode = properties.getCountMode();
+			final long total = countMode == CountMode.EXACT ? longOf(tuple.get(facets.size()))
+					: countTotal(countMode, preFilteringSpecification, entityManager);
+			int i = 0;
+			for (final String key : inputs.keySet()) {
+				CountOutput output = new CountOutput();
+				output.setTotal(total);
+				output.setFiltered(longOf(tuple.get(i++)));
+				outputs.put(key, output);
+			}
+		} catch (Exception e) {
+			log.error("caught exception", e);
+			for (final String key : inputs.keySet()) {
+				CountOutput output = new CountOutput();
+				output.setError(e.toString());
+				outputs.put(key, output);
+			}
+		}
+		return outputs;
+	}
+
+	private static boolean hasPluralJoin(From<?, ?> from) {
+		for (final Join<?, ?> join : from.getJoins()) {
+			if (join instanceof PluralJoin || hasPluralJoin(join)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * <code>SUM</code> of no rows is <code>null</code>
+	 */
+	private static long longOf(Object value) {
+		return value == null ? 0L : ((Number) value).longValue();
+	}
+
+}
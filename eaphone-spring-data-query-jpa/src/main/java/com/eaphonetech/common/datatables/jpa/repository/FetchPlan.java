@@ -0,0 +1,101 @@
+package com.eaphonetech.common.datatables.jpa.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.util.StringUtils;
+
+import jakarta.persistence.AttributeNode;
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Subgraph;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.Metamodel;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * Associations loaded together with a page, applied as <code>jakarta.persistence.fetchgraph</code>: either a
+ * <code>@NamedEntityGraph</code> of the entity, or dotted paths of associations, e.g. <code>user</code> or
+ * <code>items.product</code>.
+ */
+@EqualsAndHashCode
+@ToString
+public final class FetchPlan {
+
+	/**
+	 * name of a <code>@NamedEntityGraph</code>, <code>null</code> for {@link #attributes}
+	 */
+	private final String graphName;
+	private final List<String> attributes;
+
+	private FetchPlan(String graphName, List<String> attributes) {
+		this.graphName = graphName;
+		this.attributes = attributes;
+	}
+
+	/**
+	 * @param name name of a <code>@NamedEntityGraph</code> of the entity
+	 * @return the plan
+	 */
+	public static FetchPlan graph(String name) {
+		if (!StringUtils.hasText(name)) {
+			throw new IllegalArgumentException("name of the entity graph is required");
+		}
+		return new FetchPlan(name, Collections.emptyList());
+	}
+
+	/**
+	 * @param paths dotted paths of the associations to load
+	 * @return the plan
+	 */
+	public static FetchPlan attributes(String... paths) {
+		if (paths.length == 0) {
+			throw new IllegalArgumentException("at least one attribute is required");
+		}
+		return new FetchPlan(null, Collections.unmodifiableList(Arrays.asList(paths)));
+	}
+
+	/**
+	 * @throws IllegalArgumentException if there is no such named graph, or no such attribute
+	 */
+	@SuppressWarnings("unchecked")
+	<T> EntityGraph<T> toGraph(EntityManager entityManager, Class<T> domainClass) {
+		if (graphName != null) {
+			return (EntityGraph<T>) entityManager.getEntityGraph(graphName);
+		}
+		final EntityGraph<T> graph = entityManager.createEntityGraph(domainClass);
+		for (final String path : attributes) {
+			final String[] names = path.split("\\.");
+			if (names.length == 1) {
+				graph.addAttributeNodes(names[0]);
+				continue;
+			}
+			Subgraph<Object> subgraph = graph.addSubgraph(names[0]);
+			for (int i = 1; i < names.length - 1; i++) {
+				subgraph = subgraph.addSubgraph(names[i]);
+			}
+			subgraph.addAttributeNodes(names[names.length - 1]);
+		}
+		return graph;
+	}
+
+	/**
+	 * @return whether the graph loads a collection, which would repeat the rows of the page query
+	 */
+	static boolean fetchesCollection(Metamodel metamodel, ManagedType<?> type, List<AttributeNode<?>> nodes) {
+		for (final AttributeNode<?> node : nodes) {
+			if (type.getAttribute(node.getAttributeName()).isCollection()) {
+				return true;
+			}
+			for (final Subgraph<?> subgraph : node.getSubgraphs().values()) {
+				if (fetchesCollection(metamodel, metamodel.managedType(subgraph.getClassType()),
+						subgraph.getAttributeNodes())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -1,7 +1,9 @@
 package com.eaphonetech.common.datatables.jpa.repository;
 
 import java.io.Serializable;
+import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
@@ -47,6 +49,31 @@ public interface JpaQueryRepository<T, ID extends Serializable>
 	QueryOutput<T> findAll(QueryInput input, Specification<T> additionalSpecification,
 			Specification<T> preFilteringSpecification);
 
+	/**
+	 * Returns the filtered list for the given {@link QueryInput}, loading the associations of a {@link FetchPlan}
+	 * with the page.
+	 * 
+	 * @param input the {@link QueryInput} mapped from the Ajax request
+	 * @param fetchPlan associations to load
+	 * @return a {@link QueryOutput}
+	 */
+	QueryOutput<T> findAll(QueryInput input, FetchPlan fetchPlan);
+
+	/**
+	 * Returns the filtered list for the given {@link QueryInput}, loading the associations of a {@link FetchPlan}
+	 * with the page.
+	 * 
+	 * @param input the {@link QueryInput} mapped from the Ajax request
+	 * @param additionalSpecification an additional {@link Specification} to apply to the query (with
+	 *            an "AND" clause)
+	 * @param preFilteringSpecification a pre-filtering {@link Specification} to apply to the query
+	 *            (with an "AND" clause)
+	 * @param fetchPlan associations to load, <code>null</code> for the mapping defaults
+	 * @return a {@link QueryOutput}
+	 */
+	QueryOutput<T> findAll(QueryInput input, Specification<T> additionalSpecification,
+			Specification<T> preFilteringSpecification, FetchPlan fetchPlan);
+
 	/**
 	 * Returns the filtered list for the given {@link QueryInput}.
 	 * 
@@ -62,6 +89,20 @@ public interface JpaQueryRepository<T, ID extends Serializable>
 	<R> QueryOutput<R> findAll(QueryInput input, Specification<T> additionalSpecification,
 			Specification<T> preFilteringSpecification, Function<T, R> converter);
 
+	/**
+	 * Returns the filtered records for the given {@link QueryInput} one by one, see
+	 * {@link #streamAll(QueryInput)}.
+	 * 
+	 * @param input the {@link QueryInput} mapped from the Ajax request
+	 * @param additionalSpecification an additional {@link Specification} to apply to the query (with
+	 *            an "AND" clause)
+	 * @param preFilteringSpecification a pre-filtering {@link Specification} to apply to the query
+	 *            (with an "AND" clause)
+	 * @return a {@link Stream} of records, must be closed after use
+	 */
+	Stream<T> streamAll(QueryInput input, Specification<T> additionalSpecification,
+			Specification<T> preFilteringSpecification);
+
 	/**
 	 * Returns the filtered count for the given {@link CountInput}.
 	 * 
@@ -85,4 +126,18 @@ public interface JpaQueryRepository<T, ID extends Serializable>
 	CountOutput count(CountInput input, Specification<T> additionalSpecification,
 			Specification<T> preFilteringSpecification);
 
+	/**
+	 * Returns the filtered counts of many {@link CountInput}s in a single
+	 * <code>SELECT SUM(CASE WHEN ... THEN 1 ELSE 0 END), ...</code> query.
+	 *
+	 * @param inputs the {@link CountInput} of each facet
+	 * @param additionalSpecification an additional {@link Specification} to apply to each facet (with
+	 *            an "AND" clause)
+	 * @param preFilteringSpecification a pre-filtering {@link Specification} to apply to the query
+	 *            (with an "AND" clause)
+	 * @return a {@link CountOutput} for each key of <code>inputs</code>, in the same order
+	 */
+	Map<String, CountOutput> countFacets(Map<String, CountInput> inputs, Specification<T> additionalSpecification,
+			Specification<T> preFilteringSpecification);
+
 }
@@ -0,0 +1,129 @@
+package com.eaphonetech.common.datatables.jpa.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.OptionalLong;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+import com.eaphonetech.common.datatables.model.mapping.CountMode;
+
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Estimated row count of the table of an entity from database statistics, for {@link CountMode#ESTIMATED}.
+ * <p>
+ * Supports H2 (<code>INFORMATION_SCHEMA.TABLES.ROW_COUNT_ESTIMATE</code>), PostgreSQL
+ * (<code>pg_class.reltuples</code>) and MySQL / MariaDB (<code>information_schema.TABLES.TABLE_ROWS</code>).
+ * Other databases, or tables without statistics, give no estimate.
+ * </p>
+ */
+@Slf4j
+class RowCountEstimator {
+	private static final String H2 = "SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES "
+			+ "WHERE LOWER(TABLE_NAME) = ? AND TABLE_SCHEMA = CURRENT_SCHEMA";
+	private static final String POSTGRESQL = "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)";
+	private static final String MYSQL = "SELECT TABLE_ROWS FROM information_schema.TABLES "
+			+ "WHERE LOWER(TABLE_NAME) = ? AND TABLE_SCHEMA = DATABASE()";
+
+	private final EntityManager entityManager;
+	private final Class<?> domainClass;
+
+	/**
+	 * resolved lazily, <code>""</code> if the entity is not mapped to a single table
+	 */
+	private volatile String tableName;
+
+	RowCountEstimator(EntityManager entityManager, Class<?> domainClass) {
+		this.entityManager = entityManager;
+		this.domainClass = domainClass;
+	}
+
+	/**
+	 * @return empty if no estimate is available
+	 */
+	OptionalLong estimate() {
+		return estimate(entityManager);
+	}
+
+	/**
+	 * @param em entity manager to read statistics with
+	 * @return empty if no estimate is available
+	 */
+	OptionalLong estimate(EntityManager em) {
+		final String table = tableName();
+		if (table.isEmpty()) {
+			return OptionalLong.empty();
+		}
+		try {
+			return em.unwrap(Session.class).doReturningWork(connection -> estimate(connection, table));
+		} catch (RuntimeException e) {
+			log.debug("unable to estimate row count of {}", table, e);
+			return OptionalLong.empty();
+		}
+	}
+
+	private static OptionalLong estimate(Connection connection, String table) throws SQLException {
+		final String product = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+		final String sql;
+		final String parameter;
+		if (product.contains("h2")) {
+			sql = H2;
+			parameter = unqualified(table).toLowerCase(Locale.ROOT);
+		} else if (product.contains("postgresql")) {
+			sql = POSTGRESQL;
+			parameter = table;
+		} else if (product.contains("mysql") || product.contains("mariadb")) {
+			sql = MYSQL;
+			parameter = unqualified(table).toLowerCase(Locale.ROOT);
+		} else {
+			return OptionalLong.empty();
+		}
+
+		try (PreparedStatement ps = connection.prepareStatement(sql)) {
+			ps.setString(1, parameter);
+			try (ResultSet rs = ps.executeQuery()) {
+				if (rs.next()) {
+					final long estimate = rs.getLong(1);
+					// PostgreSQL gives -1 for tables never analyzed
+					if (!rs.wasNull() && estimate >= 0) {
+						return OptionalLong.of(estimate);
+					}
+				}
+			}
+		}
+		return OptionalLong.empty();
+	}
+
+	private static String unqualified(String table) {
+		final int dot = table.lastIndexOf('.');
+		final String name = dot < 0 ? table : table.substring(dot + 1);
+		return name.replace("\"", "").replace("`", "");
+	}
+
+	private String tableName() {
+		String name = tableName;
+		if (name == null) {
+			name = "";
+			try {
+				EntityPersister persister = entityManager.getEntityManagerFactory()
+						.unwrap(SessionFactoryImplementor.class).getRuntimeMetamodels().getMappingMetamodel()
+						.getEntityDescriptor(domainClass);
+				if (persister instanceof AbstractEntityPersister) {
+					name = ((AbstractEntityPersister) persister).getTableName();
+				}
+			} catch (RuntimeException e) {
+				log.debug("unable to resolve table of {}", domainClass, e);
+			}
+			tableName = name;
+		}
+		return name;
+	}
+}
@@ -0,0 +1,86 @@
+package com.eaphonetech.common.datatables.jpa.repository;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.persistence.Tuple;
+
+/**
+ * Read-only view of a {@link Tuple} as a map, keyed by the selected fields, so projections are created from the
+ * tuple without an entity in between. Dotted paths read nested fields. The value of an association is a map of its
+ * own, <code>null</code> if none of its fields has a value, as associations of entities read with
+ * <code>select</code>.
+ */
+final class TupleBackedMap extends AbstractMap<String, Object> {
+	private final Tuple tuple;
+	/**
+	 * dotted paths, in the order of the tuple
+	 */
+	private final List<String> fields;
+	/**
+	 * path of this map followed by a dot, empty for the root
+	 */
+	private final String prefix;
+
+	TupleBackedMap(Tuple tuple, List<String> fields) {
+		this(tuple, fields, "");
+	}
+
+	private TupleBackedMap(Tuple tuple, List<String> fields, String prefix) {
+		this.tuple = tuple;
+		this.fields = fields;
+		this.prefix = prefix;
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (!(key instanceof String)) {
+			return null;
+		}
+		final String path = prefix + key;
+		final int index = fields.indexOf(path);
+		if (index >= 0) {
+			return tuple.get(index);
+		}
+		final String nested = path + ".";
+		for (int i = 0; i < fields.size(); i++) {
+			if (fields.get(i).startsWith(nested) && tuple.get(i) != null) {
+				return new TupleBackedMap(tuple, fields, nested);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (!(key instanceof String)) {
+			return false;
+		}
+		final String path = prefix + key;
+		for (final String field : fields) {
+			if (field.equals(path) || field.startsWith(path + ".")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		Map<String, Object> entries = new LinkedHashMap<>();
+		for (final String field : fields) {
+			if (field.startsWith(prefix)) {
+				final String rest = field.substring(prefix.length());
+				final int dot = rest.indexOf('.');
+				final String name = dot < 0 ? rest : rest.substring(0, dot);
+				if (!entries.containsKey(name)) {
+					entries.put(name, get(name));
+				}
+			}
+		}
+		return entries.entrySet();
+	}
+}
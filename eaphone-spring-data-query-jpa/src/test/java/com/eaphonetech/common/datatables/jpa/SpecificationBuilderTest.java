@@ -0,0 +1,147 @@
+package com.eaphonetech.common.datatables.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.hibernate.jpa.HibernatePersistenceProvider;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import com.eaphonetech.common.datatables.jpa.columns.AbstractColumnTypeDecorator;
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+
+public class SpecificationBuilderTest {
+
+	@Entity(name = "Item")
+	@Table(name = "t_item")
+	public static class Item {
+		@Id
+		private Long id;
+		private String name;
+		private BigDecimal price;
+	}
+
+	private static LocalContainerEntityManagerFactoryBean factoryBean;
+	private static EntityManagerFactory emf;
+
+	@BeforeAll
+	public static void setup() {
+		Properties jpaProperties = new Properties();
+		jpaProperties.put("hibernate.hbm2ddl.auto", "create-drop");
+		jpaProperties.put("jakarta.persistence.validation.mode", "none");
+
+		factoryBean = new LocalContainerEntityManagerFactoryBean();
+		factoryBean.setDataSource(
+				new DriverManagerDataSource("jdbc:h2:mem:specification;DB_CLOSE_DELAY=-1", "sa", ""));
+		factoryBean.setPersistenceProviderClass(HibernatePersistenceProvider.class);
+		factoryBean.setPackagesToScan(Item.class.getPackageName());
+		factoryBean.setJpaProperties(jpaProperties);
+		factoryBean.afterPropertiesSet();
+		emf = factoryBean.getObject();
+		AbstractColumnTypeDecorator.register(emf.getMetamodel());
+
+		EntityManager em = emf.createEntityManager();
+		em.getTransaction().begin();
+		for (long i = 0; i < 10; i++) {
+			Item item = new Item();
+			item.id = i;
+			item.name = i % 2 == 0 ? "even" : "odd";
+			item.price = BigDecimal.valueOf(i);
+			em.persist(item);
+		}
+		em.getTransaction().commit();
+		em.close();
+	}
+
+	@AfterAll
+	public static void tearDown() {
+		factoryBean.destroy();
+	}
+
+	private static long count(Specification<Item> specification, CriteriaBuilder cb) {
+		EntityManager em = emf.createEntityManager();
+		try {
+			CriteriaBuilder builder = em.getCriteriaBuilder();
+			CriteriaQuery<Long> query = builder.createQuery(Long.class);
+			Root<Item> root = query.from(Item.class);
+			query.select(builder.count(root))
+					.where(specification.toPredicate(root, query, cb == null ? builder : cb));
+			return em.createQuery(query).getSingleResult();
+		} finally {
+			em.close();
+		}
+	}
+
+	/**
+	 * @return the criteria builder, which stops at its first call until <code>resume</code> is counted down
+	 */
+	private static CriteriaBuilder pausing(CriteriaBuilder cb, CountDownLatch paused, CountDownLatch resume) {
+		final AtomicBoolean first = new AtomicBoolean(true);
+		return (CriteriaBuilder) Proxy.newProxyInstance(CriteriaBuilder.class.getClassLoader(),
+				new Class<?>[] { CriteriaBuilder.class }, (proxy, method, args) -> {
+					if (first.getAndSet(false)) {
+						paused.countDown();
+						resume.await();
+					}
+					try {
+						return method.invoke(cb, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+	}
+
+	@Test
+	public void testConcurrentUse() throws Exception {
+		QueryFilter even = new QueryFilter();
+		even.set_eq("even");
+		QueryFilter cheap = new QueryFilter();
+		cheap.set_lt(7);
+		QueryInput input = new QueryInput();
+		input.getWhere().put("name", even);
+		input.getWhere().put("price", cheap);
+		// the filtered count and the page are built from the same instance at the same time
+		final Specification<Item> specification = new SpecificationBuilder<Item>(input).build();
+
+		final CountDownLatch paused = new CountDownLatch(1);
+		final CountDownLatch resume = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Long> other = executor.submit(() -> {
+				paused.await();
+				try {
+					return count(specification, null);
+				} finally {
+					resume.countDown();
+				}
+			});
+			assertEquals(4L, count(specification, pausing(emf.getCriteriaBuilder(), paused, resume)));
+			assertEquals(4L, other.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.eaphonetech.common.datatables.jpa.columns;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class AbstractColumnTypeDecoratorTest {
+
+	static class Invoice {
+		private String number;
+		private int lines;
+	}
+
+	@Test
+	public void testReflectedAttributes() {
+		final AbstractColumnTypeDecorator number = AbstractColumnTypeDecorator.forType(Invoice.class, "number");
+		assertSame(number, AbstractColumnTypeDecorator.forType(Invoice.class, "number"));
+		assertNotSame(number, AbstractColumnTypeDecorator.forType(Invoice.class, "lines"));
+	}
+
+	@Test
+	public void testMissingAttribute() {
+		for (int i = 0; i < 2; i++) {
+			IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+					() -> AbstractColumnTypeDecorator.forType(Invoice.class, "total"));
+			assertTrue(e.getMessage().contains("total"));
+			assertTrue(e.getMessage().contains(Invoice.class.getName()));
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package com.eaphonetech.common.datatables.jpa.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.hibernate.jpa.HibernatePersistenceProvider;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import com.eaphonetech.common.datatables.config.EaphoneQueryProperties;
+import com.eaphonetech.common.datatables.jpa.columns.AbstractColumnTypeDecorator;
+import com.eaphonetech.common.datatables.model.mapping.CountMode;
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryOrder;
+import com.eaphonetech.common.datatables.model.mapping.QueryOutput;
+
+import jakarta.persistence.ElementCollection;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Id;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PersistenceUnitUtil;
+import jakarta.persistence.Table;
+import lombok.Getter;
+
+public class EaphoneQueryRepositoryImplTest {
+
+	@Getter
+	@Entity(name = "Maker")
+	@Table(name = "t_maker")
+	public static class Maker {
+		@Id
+		private Long id;
+		private String name;
+	}
+
+	@Getter
+	@Entity(name = "Product")
+	@Table(name = "t_product")
+	public static class Product {
+		@Id
+		private Long id;
+		private String name;
+		private BigDecimal price;
+		@ManyToOne
+		private Maker maker;
+		@ElementCollection
+		private Set<String> tags = new HashSet<>();
+		@ElementCollection
+		private List<String> notes = new ArrayList<>();
+	}
+
+	public record MakerName(String name) {
+	}
+
+	public record ProductRow(String name, BigDecimal price, MakerName maker) {
+	}
+
+	public interface ProductView {
+		String getName();
+
+		MakerView getMaker();
+
+		interface MakerView {
+			String getName();
+		}
+	}
+
+	private static LocalContainerEntityManagerFactoryBean factoryBean;
+	private static EntityManager em;
+	private static EaphoneQueryRepositoryImpl<Product, Long> repository;
+
+	@BeforeAll
+	public static void setup() {
+		Properties jpaProperties = new Properties();
+		jpaProperties.put("hibernate.hbm2ddl.auto", "create-drop");
+		jpaProperties.put("jakarta.persistence.validation.mode", "none");
+
+		factoryBean = new LocalContainerEntityManagerFactoryBean();
+		factoryBean.setDataSource(new DriverManagerDataSource("jdbc:h2:mem:repository;DB_CLOSE_DELAY=-1", "sa", ""));
+		factoryBean.setPersistenceProviderClass(HibernatePersistenceProvider.class);
+		factoryBean.setPackagesToScan(Product.class.getPackageName());
+		factoryBean.setJpaProperties(jpaProperties);
+		factoryBean.afterPropertiesSet();
+		AbstractColumnTypeDecorator.register(factoryBean.getObject().getMetamodel());
+
+		em = factoryBean.getObject().createEntityManager();
+		em.getTransaction().begin();
+		Maker maker = new Maker();
+		maker.id = 1L;
+		maker.name = "ACME";
+		em.persist(maker);
+		for (long i = 1; i <= 3; i++) {
+			Product product = new Product();
+			product.id = i;
+			product.name = "p" + i;
+			product.price = BigDecimal.valueOf(i * 10);
+			product.maker = i < 3 ? maker : null;
+			product.tags.addAll(Arrays.asList("new", "sale"));
+			product.notes.addAll(Arrays.asList("first", "second"));
+			em.persist(product);
+		}
+		em.getTransaction().commit();
+		em.clear();
+
+		repository = new EaphoneQueryRepositoryImpl<>(
+				JpaEntityInformationSupport.getEntityInformation(Product.class, em), em);
+	}
+
+	@AfterAll
+	public static void tearDown() {
+		em.close();
+		factoryBean.destroy();
+	}
+
+	private static QueryInput input(int limit) {
+		QueryOrder order = new QueryOrder();
+		order.getValues().put("price", QueryOrder.OrderValue.desc);
+		QueryInput input = new QueryInput();
+		input.setLimit(limit);
+		input.setOrder_by(Collections.singletonList(order));
+		return input;
+	}
+
+	@Test
+	public void testRecordProjection() {
+		QueryOutput<ProductRow> output = repository.findAll(input(2), ProductRow.class);
+		assertNull(output.getError());
+		assertEquals(3L, output.getFiltered());
+		// an association without any value is null
+		assertEquals(Arrays.asList(new ProductRow("p3", new BigDecimal("30.00"), null),
+				new ProductRow("p2", new BigDecimal("20.00"), new MakerName("ACME"))), output.getData());
+
+		// cursors are read from the tuples
+		QueryInput next = input(2);
+		next.setAfter(output.getEnd_cursor());
+		output = repository.findAll(next, ProductRow.class);
+		assertEquals(Collections.singletonList(new ProductRow("p1", new BigDecimal("10.00"), new MakerName("ACME"))),
+				output.getData());
+	}
+
+	@Test
+	public void testTwoPhasePaging() {
+		EaphoneQueryProperties properties = new EaphoneQueryProperties();
+		properties.setTwoPhasePaging(true);
+		EaphoneQueryRepositoryImpl<Product, Long> twoPhase = new EaphoneQueryRepositoryImpl<>(
+				JpaEntityInformationSupport.getEntityInformation(Product.class, em), em);
+		twoPhase.setProperties(properties);
+		// repeats each product once per tag
+		Specification<Product> tagged = (root, query, cb) -> cb.isNotNull(root.join("tags"));
+
+		QueryInput input = input(2);
+		input.setCount_mode(CountMode.NONE);
+		QueryOutput<Product> output = twoPhase.findAll(input, tagged, null);
+		assertNull(output.getError());
+		assertEquals(Arrays.asList(3L, 2L), output.getData().stream().map(p -> p.id).collect(Collectors.toList()));
+		assertTrue(output.getHas_more());
+		final PersistenceUnitUtil util = factoryBean.getObject().getPersistenceUnitUtil();
+		for (final Product product : output.getData()) {
+			assertTrue(util.isLoaded(product, "tags"));
+			assertTrue(util.isLoaded(product, "notes"));
+			assertEquals(2, product.tags.size());
+			assertEquals(2, product.notes.size());
+		}
+
+		input.setOffset(2);
+		output = twoPhase.findAll(input, tagged, null);
+		assertEquals(Collections.singletonList(1L),
+				output.getData().stream().map(p -> p.id).collect(Collectors.toList()));
+		assertFalse(output.getHas_more());
+		em.clear();
+	}
+
+	@Test
+	public void testInterfaceProjection() {
+		QueryOutput<ProductView> output = repository.findAll(input(3), ProductView.class);
+		assertNull(output.getError());
+		assertEquals(3, output.getData().size());
+		assertEquals("p3", output.getData().get(0).getName());
+		assertNull(output.getData().get(0).getMaker());
+		assertEquals("ACME", output.getData().get(1).getMaker().getName());
+	}
+}
@@ -0,0 +1,72 @@
+package com.eaphonetech.common.datatables.jpa.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TupleElement;
+
+public class TupleBackedMapTest {
+
+	private static Tuple tuple(Object... values) {
+		return new Tuple() {
+			@Override
+			public Object get(int i) {
+				return values[i];
+			}
+
+			@Override
+			public <X> X get(int i, Class<X> type) {
+				return type.cast(values[i]);
+			}
+
+			@Override
+			public Object get(String alias) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public <X> X get(String alias, Class<X> type) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public <X> X get(TupleElement<X> element) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public Object[] toArray() {
+				return values;
+			}
+
+			@Override
+			public List<TupleElement<?>> getElements() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Test
+	public void testNestedPaths() {
+		final List<String> fields = Arrays.asList("id", "status", "customer.name", "customer.address.city");
+		final TupleBackedMap map = new TupleBackedMap(tuple(1L, "paid", "Alice", null), fields);
+
+		assertEquals(1L, map.get("id"));
+		assertEquals("Alice", map.get("customer.name"));
+		assertEquals("Alice", ((Map<?, ?>) map.get("customer")).get("name"));
+		assertTrue(((Map<?, ?>) map.get("customer")).containsKey("address"));
+		// associations without any value are null
+		assertNull(((Map<?, ?>) map.get("customer")).get("address"));
+		assertFalse(map.containsKey("amount"));
+		assertEquals(Arrays.asList("id", "status", "customer"), Arrays.asList(map.keySet().toArray()));
+	}
+}
@@ -0,0 +1,91 @@
+package com.eaphonetech.common.datatables.mongodb.repository;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.Document;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+
+/**
+ * Read-only view of a {@link Document} as a map, keyed by the properties of the entity it is stored for, so
+ * projections are created from the document without an entity in between. Values are converted to the types of the
+ * properties, e.g. an <code>ObjectId</code> to a <code>String</code> id; an embedded document is a map of its own.
+ */
+final class DocumentBackedMap extends AbstractMap<String, Object> {
+	private final Document document;
+	private final MongoPersistentEntity<?> entity;
+	private final MongoConverter converter;
+
+	DocumentBackedMap(Document document, MongoPersistentEntity<?> entity, MongoConverter converter) {
+		this.document = document;
+		this.entity = entity;
+		this.converter = converter;
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (!(key instanceof String)) {
+			return null;
+		}
+		final MongoPersistentProperty property = entity.getPersistentProperty((String) key);
+		return property == null ? null : valueOf(property);
+	}
+
+	/**
+	 * @param path dotted path of properties
+	 * @return the value, <code>null</code> if it or one of its parents is missing
+	 */
+	Object read(String path) {
+		Object current = this;
+		for (final String name : path.split("\\.")) {
+			if (!(current instanceof Map)) {
+				return null;
+			}
+			current = ((Map<?, ?>) current).get(name);
+		}
+		return current;
+	}
+
+	private Object valueOf(MongoPersistentProperty property) {
+		final Object value = document.get(property.getFieldName());
+		if (value == null) {
+			return null;
+		}
+		if (value instanceof Document && property.isEntity() && !property.isCollectionLike() && !property.isMap()) {
+			final MongoPersistentEntity<?> nested = converter.getMappingContext().getPersistentEntity(property);
+			return nested == null ? value : new DocumentBackedMap((Document) value, nested, converter);
+		}
+		final ConversionService conversions = converter.getConversionService();
+		final Class<?> type = property.getType();
+		if (!type.isInstance(value) && conversions.canConvert(value.getClass(), type)) {
+			return conversions.convert(value, type);
+		}
+		return value;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (!(key instanceof String)) {
+			return false;
+		}
+		final MongoPersistentProperty property = entity.getPersistentProperty((String) key);
+		return property != null && document.containsKey(property.getFieldName());
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		Map<String, Object> entries = new LinkedHashMap<>();
+		entity.doWithProperties((PropertyHandler<MongoPersistentProperty>) property -> {
+			if (document.containsKey(property.getFieldName())) {
+				entries.put(property.getName(), valueOf(property));
+			}
+		});
+		return entries.entrySet();
+	}
+}
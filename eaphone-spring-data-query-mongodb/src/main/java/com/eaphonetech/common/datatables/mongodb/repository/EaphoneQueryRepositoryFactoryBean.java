@@ -1,36 +1,184 @@
 package com.eaphonetech.common.datatables.mongodb.repository;
 
 import java.io.Serializable;
+import java.util.concurrent.Executor;
 
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.env.Environment;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
 import org.springframework.data.mongodb.repository.support.MongoRepositoryFactoryBean;
+import org.springframework.data.repository.core.RepositoryInformation;
 import org.springframework.data.repository.core.RepositoryMetadata;
 import org.springframework.data.repository.core.support.RepositoryFactorySupport;
 
+import com.eaphonetech.common.datatables.config.EaphoneQueryProperties;
+import com.eaphonetech.common.datatables.metrics.QueryMetrics;
+import com.eaphonetech.common.datatables.util.ParallelQueries;
+import com.eaphonetech.common.datatables.util.QueryGuard;
+
 /**
  * {@link FactoryBean} creating DataTablesRepositoryFactory instances.
  *
  * @author Damien Arrachequesne
  */
 public class EaphoneQueryRepositoryFactoryBean<R extends MongoRepository<T, ID>, T, ID extends Serializable>
-        extends MongoRepositoryFactoryBean<R, T, ID> {
+        extends MongoRepositoryFactoryBean<R, T, ID> implements EnvironmentAware, DisposableBean {
+
+    /**
+     * property to resolve field metadata of each {@link MongoDBQueryRepository} entity at startup
+     */
+    public static final String PREWARM_PROPERTY = "eaphone.query.mongodb.prewarm";
+
+    private boolean prewarm = false;
+
+    private EaphoneQueryProperties properties = new EaphoneQueryProperties();
+
+    private Executor executor;
+
+    private QueryMetrics metrics;
+
+    private BeanFactory beanFactory;
+
+    /**
+     * change streams dropping cached results, with <code>eaphone.query.result-cache-change-streams</code>
+     */
+    private MessageListenerContainer changeStreams;
 
     public EaphoneQueryRepositoryFactoryBean(Class<? extends R> repositoryInterface) {
         super(repositoryInterface);
     }
 
+    /**
+     * Whether field metadata of the entity should be resolved at startup, defaults to <code>false</code>.
+     *
+     * @param prewarm <code>true</code> to pre-warm
+     */
+    public void setPrewarm(boolean prewarm) {
+        this.prewarm = prewarm;
+    }
+
+    /**
+     * @param properties settings of created repositories
+     */
+    public void setProperties(EaphoneQueryProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * @param executor runs the counts when <code>eaphone.query.parallel</code> is on, defaults to
+     *            {@link ParallelQueries#defaultExecutor()}
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param metrics instrumentation of queries, defaults to Micrometer if a <code>MeterRegistry</code> is defined
+     */
+    public void setMetrics(QueryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        super.setBeanFactory(beanFactory);
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.prewarm = environment.getProperty(PREWARM_PROPERTY, Boolean.class, this.prewarm);
+        this.properties = EaphoneQueryProperties.from(environment);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+
+        if (prewarm && MongoDBQueryRepository.class.isAssignableFrom(getObjectType())) {
+            FieldResolver.prewarm(getEntityInformation().getJavaType());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (changeStreams != null) {
+            changeStreams.stop();
+        }
+    }
+
     @Override
     protected RepositoryFactorySupport getFactoryInstance(MongoOperations operations) {
-        return new DataTablesRepositoryFactory(operations);
+        if (properties.getResultCacheSize() > 0 && properties.isResultCacheChangeStreams()
+                && changeStreams == null) {
+            if (operations instanceof MongoTemplate) {
+                changeStreams = new DefaultMessageListenerContainer((MongoTemplate) operations);
+                changeStreams.start();
+            } else {
+                throw new IllegalArgumentException("change streams need a MongoTemplate");
+            }
+        }
+        QueryMetrics queryMetrics = this.metrics;
+        if (queryMetrics == null) {
+            queryMetrics = properties.isMetricsEnabled() ? QueryMetrics.of(beanFactory, "mongodb") : QueryMetrics.NOOP;
+        }
+        return new DataTablesRepositoryFactory(operations, properties, executor, changeStreams, queryMetrics);
     }
 
     private static class DataTablesRepositoryFactory extends MongoRepositoryFactory {
 
-        public DataTablesRepositoryFactory(MongoOperations mongoOperations) {
+        private final MongoOperations mongoOperations;
+        private final EaphoneQueryProperties properties;
+        private final Executor executor;
+        private final MessageListenerContainer changeStreams;
+        private final QueryMetrics metrics;
+
+        public DataTablesRepositoryFactory(MongoOperations mongoOperations, EaphoneQueryProperties properties,
+                Executor executor, MessageListenerContainer changeStreams, QueryMetrics metrics) {
             super(mongoOperations);
+            this.mongoOperations = mongoOperations;
+            this.properties = properties;
+            this.executor = executor;
+            this.changeStreams = changeStreams;
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected Object getTargetRepository(RepositoryInformation information) {
+            Object repository = super.getTargetRepository(information);
+            if (repository instanceof EaphoneQueryRepositoryImpl) {
+                ((EaphoneQueryRepositoryImpl<?, ?>) repository).setProperties(properties);
+                ((EaphoneQueryRepositoryImpl<?, ?>) repository).setExecutor(executor);
+                ((EaphoneQueryRepositoryImpl<?, ?>) repository).setMetrics(metrics);
+                ((EaphoneQueryRepositoryImpl<?, ?>) repository)
+                        .setQueryGuard(QueryGuard.of(information.getRepositoryInterface(), properties));
+                if (changeStreams != null) {
+                    ((EaphoneQueryRepositoryImpl<?, ?>) repository).invalidateOnChanges(changeStreams);
+                }
+                final IndexPolicy policy = AnnotatedElementUtils
+                        .findMergedAnnotation(information.getRepositoryInterface(), IndexPolicy.class);
+                if (policy != null) {
+                    final String collection = getEntityInformation(information.getDomainType()).getCollectionName();
+                    final MongoConverter converter = mongoOperations.getConverter();
+                    ((EaphoneQueryRepositoryImpl<?, ?>) repository).setIndexAdvisor(new IndexAdvisor(collection,
+                            policy, () -> mongoOperations.indexOps(collection).getIndexInfo(),
+                            new QueryMapper(converter),
+                            converter.getMappingContext().getRequiredPersistentEntity(information.getDomainType())));
+                }
+            }
+            return repository;
         }
 
         @Override
@@ -3,31 +3,59 @@ package com.eaphonetech.common.datatables.mongodb.repository;
 import static org.springframework.data.mongodb.core.query.Query.query;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
+import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
-import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.FacetOperation;
 import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.repository.query.MongoEntityInformation;
 import org.springframework.data.mongodb.repository.support.SimpleMongoRepository;
-
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import com.eaphonetech.common.datatables.config.EaphoneQueryProperties;
+import com.eaphonetech.common.datatables.metrics.QueryMetrics;
+import com.eaphonetech.common.datatables.metrics.QueryMetrics.Phase;
+import com.eaphonetech.common.datatables.metrics.QueryMetrics.Recording;
 import com.eaphonetech.common.datatables.model.mapping.CountInput;
+import com.eaphonetech.common.datatables.model.mapping.CountMode;
 import com.eaphonetech.common.datatables.model.mapping.CountOutput;
 import com.eaphonetech.common.datatables.model.mapping.QueryInput;
 import com.eaphonetech.common.datatables.model.mapping.QueryOutput;
-import com.eaphonetech.common.datatables.mongodb.model.QueryCount;
 import com.eaphonetech.common.datatables.util.Converter;
+import com.eaphonetech.common.datatables.util.KeysetCursor;
+import com.eaphonetech.common.datatables.util.ParallelQueries;
+import com.eaphonetech.common.datatables.util.ProjectionType;
+import com.eaphonetech.common.datatables.util.QueryGuard;
+import com.eaphonetech.common.datatables.util.QueryResultCache;
+import com.eaphonetech.common.datatables.util.TotalCountCache;
 
 /**
  * Repository implementation
@@ -39,8 +67,19 @@ public class EaphoneQueryRepositoryImpl<T, ID extends Serializable> extends Simp
 
 	private static final Logger log = LoggerFactory.getLogger(EaphoneQueryRepositoryImpl.class);
 
+	private static final String COUNT_FIELD = "_count";
+	private static final String FACET_PREFIX = "f";
+	private static final String FACET_TOTAL = "total";
+
 	private final MongoEntityInformation<T, ID> entityInformation;
 	private final MongoOperations mongoOperations;
+	private EaphoneQueryProperties properties = new EaphoneQueryProperties();
+	private TotalCountCache totalCountCache = new TotalCountCache(properties.getTotalCacheTtl());
+	private Executor executor;
+	private QueryResultCache resultCache;
+	private QueryMetrics metrics = QueryMetrics.NOOP;
+	private QueryGuard queryGuard = QueryGuard.NONE;
+	private IndexAdvisor indexAdvisor;
 
 	public EaphoneQueryRepositoryImpl(MongoEntityInformation<T, ID> metadata, MongoOperations mongoOperations) {
 		super(metadata, mongoOperations);
@@ -48,6 +87,210 @@ public class EaphoneQueryRepositoryImpl<T, ID extends Serializable> extends Simp
 		this.mongoOperations = mongoOperations;
 	}
 
+	void setProperties(EaphoneQueryProperties properties) {
+		this.properties = properties;
+		this.totalCountCache = new TotalCountCache(properties.getTotalCacheTtl());
+		this.resultCache = properties.getResultCacheSize() > 0
+				? new QueryResultCache(properties.getResultCacheSize(), properties.getResultCacheTtl())
+				: null;
+	}
+
+	/**
+	 * @param metrics instrumentation of queries
+	 */
+	void setMetrics(QueryMetrics metrics) {
+		this.metrics = metrics;
+		if (resultCache != null) {
+			metrics.monitor(this.entityInformation.getJavaType(), resultCache);
+		}
+	}
+
+	/**
+	 * @param queryGuard limits of requests, checked before any query
+	 */
+	void setQueryGuard(QueryGuard queryGuard) {
+		this.queryGuard = queryGuard;
+	}
+
+	/**
+	 * @param indexAdvisor applies the {@link IndexPolicy} of the repository, <code>null</code> if it has none
+	 */
+	void setIndexAdvisor(IndexAdvisor indexAdvisor) {
+		this.indexAdvisor = indexAdvisor;
+	}
+
+	/**
+	 * Check a query against the indexes of the collection, if the repository has an {@link IndexPolicy}.
+	 *
+	 * @param query the query, may get a hint
+	 * @param sort ordering of the query, may be <code>null</code>
+	 * @throws IllegalArgumentException if the query is rejected
+	 */
+	private void applyIndexPolicy(Query query, Sort sort) {
+		if (indexAdvisor != null) {
+			indexAdvisor.apply(query, sort);
+		}
+	}
+
+	/**
+	 * Drop cached results on every change of the collection, including changes made by other applications.
+	 *
+	 * @param container running container of change streams
+	 */
+	void invalidateOnChanges(MessageListenerContainer container) {
+		final QueryResultCache cache = this.resultCache;
+		if (cache == null) {
+			return;
+		}
+		final ChangeStreamRequest<Document> request = ChangeStreamRequest.builder()
+				.collection(this.entityInformation.getCollectionName())
+				.publishTo(message -> cache.invalidate())
+				.build();
+		container.register(request, Document.class, e -> log.warn(
+				"change stream of {} failed, cached results only expire by time: {}",
+				this.entityInformation.getCollectionName(), e.toString()));
+	}
+
+	/**
+	 * Drop cached results after a change, and again when the transaction completes, since results read by others
+	 * until then still see the data before the change.
+	 */
+	private void invalidateResults() {
+		final QueryResultCache cache = this.resultCache;
+		if (cache == null) {
+			return;
+		}
+		cache.invalidate();
+		if (TransactionSynchronizationManager.isSynchronizationActive()
+				&& !TransactionSynchronizationManager.hasResource(cache)) {
+			// once per transaction, not per saved entity
+			TransactionSynchronizationManager.bindResource(cache, Boolean.TRUE);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(cache);
+					cache.invalidate();
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return key of a filter in the result cache, {@link Criteria} itself has no equality
+	 */
+	private static Object keyOf(Criteria criteria) {
+		return criteria == null ? null : criteria.getCriteriaObject();
+	}
+
+	@Override
+	public <S extends T> S save(S entity) {
+		final S saved = super.save(entity);
+		invalidateResults();
+		return saved;
+	}
+
+	@Override
+	public <S extends T> List<S> saveAll(Iterable<S> entities) {
+		final List<S> saved = super.saveAll(entities);
+		invalidateResults();
+		return saved;
+	}
+
+	@Override
+	public <S extends T> S insert(S entity) {
+		final S inserted = super.insert(entity);
+		invalidateResults();
+		return inserted;
+	}
+
+	@Override
+	public <S extends T> List<S> insert(Iterable<S> entities) {
+		final List<S> inserted = super.insert(entities);
+		invalidateResults();
+		return inserted;
+	}
+
+	@Override
+	public void deleteById(ID id) {
+		super.deleteById(id);
+		invalidateResults();
+	}
+
+	@Override
+	public void delete(T entity) {
+		super.delete(entity);
+		invalidateResults();
+	}
+
+	@Override
+	public void deleteAllById(Iterable<? extends ID> ids) {
+		super.deleteAllById(ids);
+		invalidateResults();
+	}
+
+	@Override
+	public void deleteAll(Iterable<? extends T> entities) {
+		super.deleteAll(entities);
+		invalidateResults();
+	}
+
+	@Override
+	public void deleteAll() {
+		super.deleteAll();
+		invalidateResults();
+	}
+
+	/**
+	 * @param executor runs the counts in parallel mode, <code>null</code> for
+	 *            {@link ParallelQueries#defaultExecutor()}
+	 */
+	void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Start a count. In parallel mode it runs on the executor, {@link MongoOperations} is thread-safe and checks out
+	 * a connection per operation; otherwise it runs at once.
+	 *
+	 * @param recording recording of the query
+	 * @param phase phase the count is timed as
+	 * @param counter the count
+	 * @return future of the count
+	 */
+	private Future<Long> submitCount(Recording recording, Phase phase, Callable<Long> counter) {
+		final Callable<Long> timed = () -> {
+			final long mark = recording.mark();
+			try {
+				return counter.call();
+			} finally {
+				recording.record(phase, mark);
+			}
+		};
+		if (!properties.isParallel()) {
+			return ParallelQueries.submit(null, timed);
+		}
+		return ParallelQueries.submit(executor == null ? ParallelQueries.defaultExecutor() : executor, timed);
+	}
+
+	/**
+	 * @param future a count started by {@link #submitCount(Recording, Phase, Callable)}
+	 * @return the count
+	 */
+	private long await(Future<Long> future) {
+		return ParallelQueries.await(future, properties.isParallel() ? properties.getParallelTimeout() : null);
+	}
+
+	/**
+	 * In parallel mode, limit the time of a query on the server, so cancelled or timed out queries do not keep
+	 * running there.
+	 */
+	private Query withTimeout(Query query) {
+		if (properties.isParallel() && properties.getParallelTimeout() != null) {
+			query.maxTime(properties.getParallelTimeout());
+		}
+		return query;
+	}
+
 	@Override
 	public long count() {
 		// count() -> estimatedDocumentCount()
@@ -59,26 +302,94 @@ public class EaphoneQueryRepositoryImpl<T, ID extends Serializable> extends Simp
 	}
 
 	private long count(Query query) {
-		return this.mongoOperations.count(query, this.entityInformation.getJavaType());
+		return this.mongoOperations.count(withTimeout(query), this.entityInformation.getJavaType());
 	}
 
 
-	private Page<T> findAll(Query q, Pageable p) {
-		// count() -> estimatedDocumentCount()
-		long count = q.getQueryObject().isEmpty() ? count()
-				: mongoOperations.count(q, this.entityInformation.getJavaType());
+	/**
+	 * @param countMode how to count
+	 * @param preFilteringCriteria pre-filtering, may be <code>null</code>
+	 * @return total records, <code>-1</code> if not counted
+	 */
+	private long countTotal(CountMode countMode, Criteria preFilteringCriteria) {
+		switch (countMode) {
+		case NONE:
+			return -1L;
+		case CACHED_TOTAL:
+			final Object key = preFilteringCriteria == null ? TotalCountCache.ALL
+					: QueryUtils.totalKeyOf(preFilteringCriteria.getCriteriaObject());
+			if (key == null) {
+				return countTotal(preFilteringCriteria);
+			}
+			return totalCountCache.get(key, () -> countTotal(preFilteringCriteria));
+		case EXACT:
+		case ESTIMATED:
+		default:
+			// count() is already estimatedDocumentCount, so ESTIMATED is the same as EXACT
+			return countTotal(preFilteringCriteria);
+		}
+	}
 
-		if (count == 0) {
-			return new PageImpl<T>(Collections.<T>emptyList());
+	private long countTotal(Criteria preFilteringCriteria) {
+		return preFilteringCriteria == null ? count() : count(preFilteringCriteria);
+	}
+
+	/**
+	 * @param input the query
+	 * @param pageable sort keys with MongoDB field names, in the same order as <code>order_by</code>
+	 * @param row an entity, or a {@link DocumentBackedMap}
+	 * @return cursor of the row
+	 */
+	private String cursorOf(QueryInput input, Pageable pageable, Object row) {
+		final List<Sort.Order> keys = KeysetCursor.keysOf(input.getOrders(), this.entityInformation.getIdAttribute());
+		final List<Sort.Order> fields = pageable.getSort().toList();
+		List<Object> values = new ArrayList<>(keys.size());
+		if (row instanceof DocumentBackedMap) {
+			for (int i = 0; i < keys.size(); i++) {
+				values.add(((DocumentBackedMap) row).read(fields.get(i).getProperty()));
+			}
+		} else {
+			final DirectFieldAccessor accessor = new DirectFieldAccessor(row);
+			for (int i = 0; i < keys.size(); i++) {
+				values.add(KeysetCursor.read(accessor, fields.get(i).getProperty()));
+			}
 		}
+		return KeysetCursor.encode(keys, values);
+	}
+
+	/**
+	 * Read one page of data without counting.
+	 *
+	 * @param q filter
+	 * @param p page and sort
+	 * @param lookAhead whether to read one more record after the page
+	 * @param rows maps the documents read, <code>null</code> to read entities
+	 * @return content of the page
+	 */
+	@SuppressWarnings("unchecked")
+	private <R> List<R> findPage(Query q, Pageable p, boolean lookAhead, Function<Document, R> rows) {
 		if (p != null) {
 			if (p.getSort() == null) {
 				q.limit(p.getPageSize()).skip(p.getOffset());
 			} else {
 				q.with(p);
 			}
+			if (lookAhead && p.getPageSize() < Integer.MAX_VALUE) {
+				q.limit(p.getPageSize() + 1);
+			}
+		}
+		if (rows == null) {
+			return (List<R>) mongoOperations.find(withTimeout(q), this.entityInformation.getJavaType());
 		}
-		return new PageImpl<T>(mongoOperations.find(q, this.entityInformation.getJavaType()), p, count);
+		// mapped for the entity, but not read into it
+		final List<Document> documents = mongoOperations.query(this.entityInformation.getJavaType())
+				.inCollection(this.entityInformation.getCollectionName()).as(Document.class).matching(withTimeout(q))
+				.all();
+		List<R> content = new ArrayList<>(documents.size());
+		for (final Document document : documents) {
+			content.add(rows.apply(document));
+		}
+		return content;
 	}
 
 	/*
@@ -112,37 +423,122 @@ public class EaphoneQueryRepositoryImpl<T, ID extends Serializable> extends Simp
 
 	@Override
 	public QueryOutput<T> findAll(QueryInput input, Criteria additionalCriteria, Criteria preFilteringCriteria) {
-		QueryOutput<T> output = new QueryOutput<>();
+		if (resultCache == null) {
+			return findAllUncached(input, additionalCriteria, preFilteringCriteria, null);
+		}
+		return resultCache.get(input, keyOf(additionalCriteria), keyOf(preFilteringCriteria),
+				() -> findAllUncached(input, additionalCriteria, preFilteringCriteria, null));
+	}
 
+	/**
+	 * @param rows maps the documents read, <code>null</code> to read entities
+	 */
+	private <R> QueryOutput<R> findAllUncached(QueryInput input, Criteria additionalCriteria,
+			Criteria preFilteringCriteria, Function<Document, R> rows) {
+		QueryOutput<R> output = new QueryOutput<>();
+
+		Future<Long> totalCount = null;
+		Future<Long> filteredCount = null;
+		final Recording recording = metrics.start(this.entityInformation.getJavaType(), "findAll",
+				input.getWhere());
 		try {
-			long recordsTotal = preFilteringCriteria == null ? count() : count(preFilteringCriteria);
-			if (recordsTotal == 0) {
+			queryGuard.check(input);
+			final CountMode countMode = input.getCount_mode() == null ? properties.getCountMode()
+					: input.getCount_mode();
+			totalCount = submitCount(recording, Phase.TOTAL_COUNT, () -> countTotal(countMode, preFilteringCriteria));
+			if (!properties.isParallel() && await(totalCount) == 0 && countMode == CountMode.EXACT) {
 				return output;
 			}
-			output.setTotal(recordsTotal);
 
-			Query query = QueryUtils.getQuery(this.entityInformation, input);
-			if (additionalCriteria != null) {
-				query.addCriteria(additionalCriteria);
+			long mark = recording.mark();
+			final FilterCriteria where = QueryUtils.getFilter(this.entityInformation, input);
+			final boolean isFiltered = !where.isEmpty() || additionalCriteria != null;
+			final FilterCriteria filter = where.and(additionalCriteria, preFilteringCriteria);
+			final Query query = filter.toQuery();
+
+			Pageable pageable = QueryUtils.getPageable(this.entityInformation, input);
+			// before the page query is built, so both get the hint
+			applyIndexPolicy(query, pageable.getSort());
+			final KeysetCursor cursor = KeysetCursor.of(input, this.entityInformation.getIdAttribute());
+			Query pageQuery = Query.of(query);
+			if (cursor != null) {
+				pageQuery = filter.and(QueryUtils.getCursorCriteria(this.entityInformation, cursor)).toQuery();
+				if (query.getHint() != null) {
+					pageQuery.withHint(query.getHint());
+				}
+			}
+			pageQuery = QueryUtils.applySelect(this.entityInformation, input, pageQuery);
+			recording.record(Phase.BUILD, mark);
+			if (properties.isParallel() && countMode != CountMode.NONE
+					&& (isFiltered || countMode != CountMode.EXACT)) {
+				// started before the page is read, cancelled if the page turns out to be the last one
+				final Query countQuery = Query.of(query);
+				filteredCount = submitCount(recording, Phase.FILTERED_COUNT, () -> count(countQuery));
 			}
 
-			if (preFilteringCriteria != null) {
-				query.addCriteria(preFilteringCriteria);
+			// without counting, or reading from a cursor, one more record tells whether there is a next page
+			final boolean lookAhead = countMode == CountMode.NONE || cursor != null;
+			mark = recording.mark();
+			List<R> content = findPage(pageQuery, pageable, lookAhead, rows);
+			recording.record(Phase.FETCH, mark);
+			final long recordsTotal = await(totalCount);
+			if (recordsTotal == 0 && countMode == CountMode.EXACT) {
+				return output;
+			}
+			output.setTotal(recordsTotal);
+			if (lookAhead) {
+				output.setHas_more(content.size() > pageable.getPageSize());
+				if (output.getHas_more()) {
+					content = content.subList(0, pageable.getPageSize());
+				}
+			}
+			if (cursor != null && cursor.isBefore()) {
+				content = new ArrayList<>(content);
+				Collections.reverse(content);
 			}
 
-			Pageable pageable = QueryUtils.getPageable(this.entityInformation, input);
+			long recordsFiltered;
+			if (countMode == CountMode.NONE) {
+				recordsFiltered = -1L;
+			} else {
+				if (!isFiltered && countMode == CountMode.EXACT) {
+					// same as the total count
+					recordsFiltered = recordsTotal;
+				} else if (cursor == null && content.size() < pageable.getPageSize()
+						&& (pageable.getOffset() == 0 || !content.isEmpty())) {
+					// last page, no need to count
+					recordsFiltered = pageable.getOffset() + content.size();
+				} else if (filteredCount != null) {
+					recordsFiltered = await(filteredCount);
+				} else {
+					mark = recording.mark();
+					recordsFiltered = count(query);
+					recording.record(Phase.FILTERED_COUNT, mark);
+				}
+				if (!lookAhead) {
+					output.setHas_more(pageable.getOffset() + content.size() < recordsFiltered);
+				}
+			}
 
-			Page<T> data = findAll(query, pageable);
+			if (!content.isEmpty()) {
+				output.setStart_cursor(cursorOf(input, pageable, content.get(0)));
+				output.setEnd_cursor(cursorOf(input, pageable, content.get(content.size() - 1)));
+			}
 
 			output.setDraw(input.getDraw());
-			output.setData(data.getContent());
-			output.setFiltered(data.getTotalElements());
+			output.setData(content);
+			output.setFiltered(recordsFiltered);
 
 		} catch (Exception e) {
 			output.setDraw(input.getDraw());
 			output.setError(e.toString());
 			output.setFiltered(0L);
 			log.error("caught exception", e);
+			recording.error(e);
+		} finally {
+			// no-op for finished counts
+			ParallelQueries.cancel(totalCount, filteredCount);
+			recording.close();
 		}
 
 		return output;
@@ -152,7 +548,54 @@ public class EaphoneQueryRepositoryImpl<T, ID extends Serializable> extends Simp
 	public <View> QueryOutput<View> findAll(QueryInput input, Criteria additionalCrit, Criteria preFilteringCrit,
 			Function<T, View> converter) {
 		QueryOutput<T> raw = findAll(input, additionalCrit, preFilteringCrit);
-		return Converter.convert(raw, converter);
+		return metrics.time(this.entityInformation.getJavaType(), "findAll", input.getWhere(), Phase.CONVERT,
+				() -> Converter.convert(raw, converter));
+	}
+
+	@Override
+	public <P> QueryOutput<P> findAll(QueryInput input, Class<P> projection) {
+		final ProjectionType<P> type = ProjectionType.of(projection);
+		final QueryInput selecting = type.selecting(input);
+		final MongoConverter converter = mongoOperations.getConverter();
+		final MongoPersistentEntity<?> entity = converter.getMappingContext()
+				.getRequiredPersistentEntity(this.entityInformation.getJavaType());
+		final Function<Document, DocumentBackedMap> rows = document -> new DocumentBackedMap(document, entity,
+				converter);
+		// rows are views of the documents, projections read them without entities in between
+		QueryOutput<DocumentBackedMap> raw = resultCache == null ? findAllUncached(selecting, null, null, rows)
+				// not entities, even if selecting the same fields
+				: resultCache.get(selecting, DocumentBackedMap.class, null,
+						() -> findAllUncached(selecting, null, null, rows));
+		return metrics.time(this.entityInformation.getJavaType(), "findAll", input.getWhere(), Phase.CONVERT,
+				() -> Converter.convert(raw, type::fromValues));
+	}
+
+	@Override
+	public Stream<T> streamAll(QueryInput input) {
+		return streamAll(input, null, null);
+	}
+
+	@Override
+	public Stream<T> streamAll(QueryInput input, Criteria additionalCriteria, Criteria preFilteringCriteria) {
+		if (StringUtils.hasLength(input.getBefore())) {
+			throw new IllegalArgumentException("before is not supported when streaming");
+		}
+		queryGuard.check(input);
+		final KeysetCursor cursor = KeysetCursor.of(input, this.entityInformation.getIdAttribute());
+		Query query = QueryUtils.getFilter(this.entityInformation, input)
+				.and(additionalCriteria, preFilteringCriteria,
+						cursor == null ? null : QueryUtils.getCursorCriteria(this.entityInformation, cursor))
+				.toQuery();
+
+		Pageable pageable = QueryUtils.getPageable(this.entityInformation, input);
+		applyIndexPolicy(query, pageable.getSort());
+		query.with(pageable.getSort()).skip(pageable.getOffset());
+		if (pageable.getPageSize() < Integer.MAX_VALUE) {
+			query.limit(pageable.getPageSize());
+		}
+		query.cursorBatchSize(properties.getStreamFetchSize());
+		QueryUtils.applySelect(this.entityInformation, input, query);
+		return mongoOperations.stream(query, this.entityInformation.getJavaType());
 	}
 
 	/*
@@ -168,18 +611,30 @@ public class EaphoneQueryRepositoryImpl<T, ID extends Serializable> extends Simp
 		QueryOutput<View> output = new QueryOutput<View>();
 
 		try {
-			// TODO here count() may not be accurate because Aggregation is not simply a filter
-			long recordsTotal = count();
-			if (recordsTotal == 0) {
-				return output;
+			queryGuard.check(input);
+			final CountMode countMode = input.getCount_mode() == null ? properties.getCountMode()
+					: input.getCount_mode();
+			Object totalKey = null;
+			OptionalLong total = OptionalLong.empty();
+			if (operations == null || operations.length == 0 || countMode == CountMode.ESTIMATED
+					|| countMode == CountMode.NONE) {
+				// documents of the collection: the total without operations, an estimate with them
+				total = OptionalLong.of(countTotal(countMode, null));
+			} else if (countMode == CountMode.CACHED_TOTAL) {
+				// without a stable key the facet counts the total every time
+				totalKey = QueryUtils.totalKeyOf(entityInformation.getJavaType(), operations,
+						mongoOperations.getConverter());
+				if (totalKey != null) {
+					total = totalCountCache.peek(totalKey);
+				}
 			}
-			output.setTotal(recordsTotal);
-
-			Page<View> data = findPage(this.entityInformation, classOfView, input, operations);
-
-			output.setData(data.getContent());
-			output.setFiltered(data.getTotalElements());
 
+			readPage(output, classOfView, input, !total.isPresent(), operations);
+			if (total.isPresent()) {
+				output.setTotal(total.getAsLong());
+			} else if (totalKey != null) {
+				totalCountCache.put(totalKey, output.getTotal());
+			}
 		} catch (Exception e) {
 			output.setError(e.toString());
 			output.setFiltered(0L);
@@ -202,32 +657,48 @@ public class EaphoneQueryRepositoryImpl<T, ID extends Serializable> extends Simp
 		return findAll(classOfView, input, opArray);
 	}
 
-	private <View> Page<View> findPage(MongoEntityInformation<T, ID> entityInformation, Class<View> classOfView,
-			QueryInput input, AggregationOperation... operations) {
-		final Pageable pageable = QueryUtils.getPageable(entityInformation, input);
-
-		final TypedAggregation<T> aggWithPage = QueryUtils.makeAggregation(entityInformation.getJavaType(), input,
-				pageable, operations);
-
-		final TypedAggregation<T> aggCount = QueryUtils.makeAggregationCountOnly(entityInformation, input, operations);
-		long count = 0L;
-		AggregationResults<QueryCount> countResult = mongoOperations.aggregate(aggCount, QueryCount.class);
-
-		if (countResult != null) {
-			count = countResult.getUniqueMappedResult().getCount();
+	/**
+	 * Read the page and the count of the pipeline in one aggregation, see {@link QueryUtils#makeFacetAggregation}. The
+	 * page is returned in one document, so it must not exceed 16 MB.
+	 *
+	 * @param total whether to count the documents of the pipeline without the filters in the same aggregation
+	 */
+	private <View> void readPage(QueryOutput<View> output, Class<View> classOfView, QueryInput input, boolean total,
+			AggregationOperation... operations) {
+		final Pageable pageable = QueryUtils.getPageable(entityInformation.getJavaType(), input, null);
+		final TypedAggregation<T> aggregation = QueryUtils
+				.makeFacetAggregation(entityInformation, input, pageable, operations, total)
+				.withOptions(aggregationOptions());
+		final Document result = mongoOperations.aggregate(aggregation, Document.class).getUniqueMappedResult();
+
+		final long count = facetCount(result, QueryUtils.FACET_COUNT);
+		output.setFiltered(count);
+		if (total) {
+			output.setTotal(result != null && result.containsKey(QueryUtils.FACET_TOTAL)
+					? facetCount(result, QueryUtils.FACET_TOTAL)
+					: count);
 		}
-
 		if (count == 0) {
-			return new PageImpl<View>(Collections.<View>emptyList());
+			return;
 		}
-
-		List<View> result = null;
-		AggregationResults<View> aggResult = mongoOperations.aggregate(aggWithPage, classOfView);
-		if (aggResult != null) {
-			result = aggResult.getMappedResults();
+		final List<Document> documents = result.getList(QueryUtils.FACET_PAGE, Document.class);
+		List<View> content = new ArrayList<>(documents.size());
+		for (final Document document : documents) {
+			content.add(mongoOperations.getConverter().read(classOfView, document));
 		}
+		output.setData(content);
+	}
 
-		return new PageImpl<View>(result, pageable, count);
+	/**
+	 * @return options of the aggregations of <code>findAll</code>
+	 */
+	private AggregationOptions aggregationOptions() {
+		AggregationOptions.Builder builder = AggregationOptions.builder()
+				.allowDiskUse(properties.isAggregationAllowDiskUse());
+		if (properties.getAggregationMaxTime() != null) {
+			builder.maxTime(properties.getAggregationMaxTime());
+		}
+		return builder.build();
 	}
 
 	@Override
@@ -242,30 +713,132 @@ public class EaphoneQueryRepositoryImpl<T, ID extends Serializable> extends Simp
 
 	@Override
 	public CountOutput count(CountInput input, Criteria additionalCriteria, Criteria preFilteringCriteria) {
+		if (resultCache == null) {
+			return countUncached(input, additionalCriteria, preFilteringCriteria);
+		}
+		return resultCache.get(input, keyOf(additionalCriteria), keyOf(preFilteringCriteria),
+				() -> countUncached(input, additionalCriteria, preFilteringCriteria));
+	}
+
+	private CountOutput countUncached(CountInput input, Criteria additionalCriteria, Criteria preFilteringCriteria) {
 		CountOutput output = new CountOutput();
+		Future<Long> totalCount = null;
+		Future<Long> filteredCount = null;
+		final Recording recording = metrics.start(this.entityInformation.getJavaType(), "count", input);
 		try {
-			long recordsTotal = preFilteringCriteria == null ? count() : count(preFilteringCriteria);
-			if (recordsTotal == 0) {
+			queryGuard.check(input);
+			final CountMode countMode = properties.getCountMode();
+			totalCount = submitCount(recording, Phase.TOTAL_COUNT, () -> countTotal(countMode, preFilteringCriteria));
+			if (!properties.isParallel() && await(totalCount) == 0 && countMode == CountMode.EXACT) {
 				return output;
 			}
-			output.setTotal(recordsTotal);
 
-			Query query = QueryUtils.getQuery(this.entityInformation, input);
-			if (additionalCriteria != null) {
-				query.addCriteria(additionalCriteria);
+			final long mark = recording.mark();
+			final FilterCriteria where = QueryUtils.getFilter(this.entityInformation, input);
+			final boolean sameAsTotal = where.isEmpty() && additionalCriteria == null
+					&& countMode == CountMode.EXACT;
+			final Query query = where.and(additionalCriteria, preFilteringCriteria).toQuery();
+			if (!sameAsTotal) {
+				applyIndexPolicy(query, null);
 			}
-
-			if (preFilteringCriteria != null) {
-				query.addCriteria(preFilteringCriteria);
+			recording.record(Phase.BUILD, mark);
+			if (!sameAsTotal) {
+				filteredCount = submitCount(recording, Phase.FILTERED_COUNT, () -> count(query));
 			}
 
-			output.setFiltered(count(query));
+			final long recordsTotal = await(totalCount);
+			if (recordsTotal == 0 && countMode == CountMode.EXACT) {
+				return output;
+			}
+			output.setTotal(recordsTotal);
+			// same as the total count if not filtered
+			output.setFiltered(sameAsTotal ? recordsTotal : await(filteredCount));
 		} catch (Exception e) {
 			output.setError(e.toString());
 			output.setFiltered(0L);
 			log.error("caught exception", e);
+			recording.error(e);
+		} finally {
+			ParallelQueries.cancel(totalCount, filteredCount);
+			recording.close();
 		}
 		return output;
 	}
 
+	@Override
+	public Map<String, CountOutput> countFacets(Map<String, CountInput> inputs) {
+		return countFacets(inputs, null, null);
+	}
+
+	@Override
+	public Map<String, CountOutput> countFacets(Map<String, CountInput> inputs, Criteria additionalCriteria,
+			Criteria preFilteringCriteria) {
+		Map<String, CountOutput> outputs = new LinkedHashMap<>();
+		if (inputs.isEmpty()) {
+			return outputs;
+		}
+		try {
+			for (final CountInput input : inputs.values()) {
+				queryGuard.check(input);
+			}
+			final CountMode countMode = properties.getCountMode();
+			// facet names are generated, keys may contain '.' or start with '$'
+			FacetOperation facet = Aggregation.facet();
+			int i = 0;
+			for (final CountInput input : inputs.values()) {
+				final Criteria criteria = QueryUtils.getFilter(this.entityInformation, input).and(additionalCriteria)
+						.toCriteria();
+				facet = facet.and(Aggregation.match(criteria), Aggregation.count().as(COUNT_FIELD))
+						.as(FACET_PREFIX + i++);
+			}
+			if (countMode == CountMode.EXACT) {
+				facet = facet.and(Aggregation.count().as(COUNT_FIELD)).as(FACET_TOTAL);
+			}
+
+			// facets cannot use indexes, only the documents read for them are checked
+			applyIndexPolicy(preFilteringCriteria == null ? new Query() : query(preFilteringCriteria), null);
+			List<AggregationOperation> operations = new ArrayList<>(2);
+			if (preFilteringCriteria != null) {
+				operations.add(Aggregation.match(preFilteringCriteria));
+			}
+			operations.add(facet);
+			final Document result = mongoOperations
+					.aggregate(Aggregation.newAggregation(this.entityInformation.getJavaType(), operations),
+							Document.class)
+					.getUniqueMappedResult();
+
+			final long total = countMode == CountMode.EXACT ? facetCount(result, FACET_TOTAL)
+					: countTotal(countMode, preFilteringCriteria);
+			i = 0;
+			for (final String key : inputs.keySet()) {
+				CountOutput output = new CountOutput();
+				output.setTotal(total);
+				output.setFiltered(facetCount(result, FACET_PREFIX + i++));
+				outputs.put(key, output);
+			}
+		} catch (Exception e) {
+			log.error("caught exception", e);
+			for (final String key : inputs.keySet()) {
+				CountOutput output = new CountOutput();
+				output.setError(e.toString());
+				outputs.put(key, output);
+			}
+		}
+		return outputs;
+	}
+
+	/**
+	 * @return the count of a facet, which is an empty array if nothing matched
+	 */
+	private static long facetCount(Document result, String facet) {
+		if (result == null) {
+			return 0L;
+		}
+		final List<Document> counts = result.getList(facet, Document.class);
+		if (counts == null || counts.isEmpty()) {
+			return 0L;
+		}
+		return ((Number) counts.get(0).get(COUNT_FIELD)).longValue();
+	}
+
 }
@@ -0,0 +1,302 @@
+package com.eaphonetech.common.datatables.mongodb.repository;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.reflections.ReflectionUtils;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+
+import com.eaphonetech.common.datatables.model.mapping.ColumnType;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resolves frontend provided (possibly dotted) field names, e.g. <code>price.value</code>, to the
+ * {@link ColumnType} and the actual MongoDB field name of an entity class.
+ * <p>
+ * Reflection is only done once for each (class, path) pair, results are kept in a bounded concurrent map.
+ * </p>
+ *
+ * @author Xiaoyu Guo
+ */
+@Slf4j
+public final class FieldResolver {
+    /**
+     * check jackson at startup
+     */
+    private static final boolean IS_JACKSON_AVAILABLE;
+    static {
+        boolean available = false;
+        try {
+            Class.forName("com.fasterxml.jackson.annotation.JsonProperty");
+            available = true;
+        } catch (ClassNotFoundException cnfe) {
+        }
+        IS_JACKSON_AVAILABLE = available;
+    }
+
+    /**
+     * check jackson-databind at startup, for <code>@JsonNaming</code>
+     */
+    private static final boolean IS_JACKSON_DATABIND_AVAILABLE;
+    static {
+        boolean available = false;
+        try {
+            Class.forName("com.fasterxml.jackson.databind.annotation.JsonNaming");
+            available = true;
+        } catch (ClassNotFoundException cnfe) {
+        }
+        IS_JACKSON_DATABIND_AVAILABLE = available;
+    }
+
+    /**
+     * max number of cached (class, path) pairs
+     */
+    static final int MAX_ENTRIES = 4096;
+
+    /**
+     * max depth of nested objects when pre-warming an entity class
+     */
+    private static final int MAX_PREWARM_DEPTH = 3;
+
+    private static final Map<Key, ResolvedField> CACHE = new ConcurrentHashMap<>();
+
+    private static final ResolvedField UNRESOLVED = new ResolvedField(null, null);
+
+    private FieldResolver() {
+    }
+
+    /**
+     * Resolved type and name of a field path. <code>type</code> is <code>null</code> if the path does not
+     * exist.
+     */
+    public static final class ResolvedField {
+        private final ColumnType type;
+        private final String name;
+
+        ResolvedField(ColumnType type, String name) {
+            this.type = type;
+            this.name = name;
+        }
+
+        public ColumnType getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name + ":" + type;
+        }
+    }
+
+    private record Key(Class<?> javaType, String path) {
+    }
+
+    /**
+     * Determine actual MongoDB field type and name from input (including jackson-databind, etc.)
+     *
+     * @param javaType actual java type
+     * @param fieldName frontend provided field name
+     * @return never <code>null</code>
+     */
+    public static ResolvedField resolve(Class<?> javaType, String fieldName) {
+        if (javaType == null || ObjectUtils.isEmpty(fieldName)) {
+            return UNRESOLVED;
+        }
+        final Key key = new Key(javaType, fieldName);
+        ResolvedField result = CACHE.get(key);
+        if (result == null) {
+            result = getField(javaType, fieldName.split("\\."), 0);
+            log.trace("resolve({}, '{}') returns : '{}'", javaType.getSimpleName(), fieldName, result);
+            put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Resolve all fields (including nested ones) of the given entity class, so that the first request will
+     * not pay for reflection.
+     *
+     * @param javaType entity class
+     */
+    public static void prewarm(Class<?> javaType) {
+        if (javaType == null) {
+            return;
+        }
+        prewarm(javaType, javaType, "", 0, new ArrayDeque<>());
+        log.debug("field metadata of {} pre-warmed, {} entries cached", javaType.getSimpleName(), CACHE.size());
+    }
+
+    private static void prewarm(Class<?> rootType, Class<?> currentType, String prefix, int depth,
+            Deque<Class<?>> visiting) {
+        if (depth >= MAX_PREWARM_DEPTH || visiting.contains(currentType)) {
+            return;
+        }
+        visiting.push(currentType);
+        @SuppressWarnings("unchecked")
+        Set<Field> fields = ReflectionUtils.getAllFields(currentType,
+                f -> f != null && !Modifier.isStatic(f.getModifiers()) && !f.isSynthetic());
+        for (final Field field : fields) {
+            for (final String name : namesOf(field)) {
+                final String path = prefix + name;
+                final ResolvedField resolved = resolve(rootType, path);
+                if (ColumnType.NESTED_OBJECT.equals(resolved.getType())) {
+                    prewarm(rootType, elementTypeOf(field), path + ".", depth + 1, visiting);
+                }
+            }
+        }
+        visiting.pop();
+    }
+
+    /**
+     * clear all cached metadata
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    static int size() {
+        return CACHE.size();
+    }
+
+    private static void put(Key key, ResolvedField value) {
+        if (CACHE.size() >= MAX_ENTRIES) {
+            // evict any entry, the map is only a cache
+            Iterator<Key> it = CACHE.keySet().iterator();
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        CACHE.putIfAbsent(key, value);
+    }
+
+    private static String[] namesOf(Field field) {
+        final String jsonName = jsonNameOf(field);
+        if (jsonName != null && !field.getName().equals(jsonName)) {
+            return new String[] { field.getName(), jsonName };
+        }
+        return new String[] { field.getName() };
+    }
+
+    /**
+     * @return the name of the field in JSON, from <code>@JsonProperty</code> or the <code>@JsonNaming</code> of its
+     *         class; <code>null</code> if neither is present
+     */
+    private static String jsonNameOf(Field field) {
+        if (IS_JACKSON_AVAILABLE) {
+            final JsonProperty jsonProperty = field.getAnnotation(JsonProperty.class);
+            if (jsonProperty != null && StringUtils.hasLength(jsonProperty.value())) {
+                return jsonProperty.value();
+            }
+        }
+        if (IS_JACKSON_DATABIND_AVAILABLE) {
+            return JacksonNaming.translate(field);
+        }
+        return null;
+    }
+
+    /**
+     * @return the element type of collections, e.g. <code>T</code> of <code>List&lt;T&gt;</code>, otherwise the type
+     *         of the field
+     */
+    private static Class<?> elementTypeOf(Field field) {
+        Class<?> fieldType = field.getType();
+        if (!Iterable.class.isAssignableFrom(fieldType)) {
+            return fieldType;
+        }
+        try {
+            Type t = field.getGenericType();
+            if (t != null && t instanceof ParameterizedType) {
+                ParameterizedType pti = (ParameterizedType) t;
+                Type tt = pti.getActualTypeArguments()[0];
+                if (tt instanceof Class) {
+                    fieldType = (Class<?>) tt;
+                }
+            }
+        } catch (Exception ex) {
+            log.debug("Caught unhandled exception", ex);
+        }
+        return fieldType;
+    }
+
+    private static boolean matches(Field input, String currentLevelName) {
+        if (input != null) {
+            // the name of the field, or its name in JSON
+            return currentLevelName.equals(input.getName()) || currentLevelName.equals(jsonNameOf(input));
+        }
+        return false;
+    }
+
+    /**
+     * Find one possible field of nested name parts.
+     *
+     * @param javaType
+     * @param fieldNameParts
+     * @param currentIndex
+     * @return Never return <code>null</code>.
+     */
+    private static ResolvedField getField(Class<?> javaType, String[] fieldNameParts, int currentIndex) {
+        Objects.requireNonNull(fieldNameParts);
+        if (javaType == null || currentIndex > fieldNameParts.length - 1) {
+            return UNRESOLVED;
+        }
+
+        final String currentLevelName = fieldNameParts[currentIndex];
+        String decidedName = null;
+        Class<?> currentLevelFieldType = null;
+
+        @SuppressWarnings("unchecked")
+        Set<Field> possibleFields = ReflectionUtils.getAllFields(javaType, input -> matches(input, currentLevelName));
+
+        if (possibleFields != null && !possibleFields.isEmpty()) {
+            final Field field = possibleFields.iterator().next();
+            decidedName = field.getName();
+            currentLevelFieldType = elementTypeOf(field);
+        }
+
+        if (currentLevelFieldType == null) {
+            return UNRESOLVED;
+        }
+
+        if (currentIndex < fieldNameParts.length - 1) {
+            ResolvedField childrenField = getField(currentLevelFieldType, fieldNameParts, currentIndex + 1);
+            return new ResolvedField(childrenField.type, decidedName + "." + childrenField.name);
+        }
+        return new ResolvedField(ColumnType.parse(currentLevelFieldType), decidedName);
+    }
+
+    /**
+     * Only loaded if jackson-databind is available. The naming strategy of an <code>ObjectMapper</code> is not known
+     * here, only <code>@JsonNaming</code> of the class is considered.
+     */
+    private static final class JacksonNaming {
+        static String translate(Field field) {
+            final JsonNaming naming = field.getDeclaringClass().getAnnotation(JsonNaming.class);
+            if (naming == null || !PropertyNamingStrategies.NamingBase.class.isAssignableFrom(naming.value())) {
+                return null;
+            }
+            final PropertyNamingStrategies.NamingBase strategy = (PropertyNamingStrategies.NamingBase) BeanUtils
+                    .instantiateClass(naming.value());
+            return strategy.translate(field.getName());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.eaphonetech.common.datatables.mongodb.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * Filters of one request compiled by {@link QueryUtils}, joined with AND. It is compiled once per request and shared
+ * by the count and the page query: {@link #and(Criteria...)} returns a new instance, {@link #toQuery()} a new query
+ * each time, and the criteria are never modified.
+ */
+public final class FilterCriteria {
+
+    public static final FilterCriteria EMPTY = new FilterCriteria(Collections.emptyList());
+
+    private final List<Criteria> criteria;
+
+    FilterCriteria(List<Criteria> criteria) {
+        this.criteria = Collections.unmodifiableList(criteria);
+    }
+
+    /**
+     * @return whether nothing is filtered
+     */
+    public boolean isEmpty() {
+        return criteria.isEmpty();
+    }
+
+    /**
+     * @param others criteria to add, <code>null</code>s are ignored
+     * @return a new instance with the other criteria
+     */
+    public FilterCriteria and(Criteria... others) {
+        List<Criteria> list = new ArrayList<>(criteria.size() + others.length);
+        list.addAll(criteria);
+        for (final Criteria other : others) {
+            if (other != null) {
+                list.add(other);
+            }
+        }
+        return list.size() == criteria.size() ? this : new FilterCriteria(list);
+    }
+
+    /**
+     * Criteria of distinct fields are top level fields of the query, as the query planner and
+     * {@link IndexAdvisor} prefer. Criteria which cannot share the query document, e.g. two <code>$or</code> or two
+     * criteria of the same field, are nested in one <code>$and</code>.
+     *
+     * @return a new query of all criteria
+     */
+    public Query toQuery() {
+        Map<String, List<Criteria>> byKey = new LinkedHashMap<>();
+        for (final Criteria c : criteria) {
+            byKey.computeIfAbsent(c.getKey(), k -> new ArrayList<>(1)).add(c);
+        }
+        Query query = new Query();
+        List<Criteria> nested = new ArrayList<>();
+        for (final Map.Entry<String, List<Criteria>> entry : byKey.entrySet()) {
+            if (entry.getKey() != null && entry.getValue().size() == 1) {
+                query.addCriteria(entry.getValue().get(0));
+            } else {
+                nested.addAll(entry.getValue());
+            }
+        }
+        if (nested.size() == 1) {
+            query.addCriteria(nested.get(0));
+        } else if (!nested.isEmpty()) {
+            query.addCriteria(new Criteria().andOperator(nested));
+        }
+        return query;
+    }
+
+    /**
+     * @return all criteria as one, e.g. for <code>$match</code>; empty {@link Criteria} if there is none
+     */
+    public Criteria toCriteria() {
+        if (criteria.isEmpty()) {
+            return new Criteria();
+        }
+        return criteria.size() == 1 ? criteria.get(0) : new Criteria().andOperator(criteria);
+    }
+}
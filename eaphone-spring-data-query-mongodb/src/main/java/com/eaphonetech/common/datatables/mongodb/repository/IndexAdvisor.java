@@ -0,0 +1,334 @@
+package com.eaphonetech.common.datatables.mongodb.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import org.bson.BsonRegularExpression;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.StringUtils;
+
+import com.eaphonetech.common.datatables.mongodb.repository.IndexPolicy.Action;
+import com.eaphonetech.common.datatables.mongodb.repository.IndexPolicy.Coverage;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Applies the {@link IndexPolicy} of a repository: classifies queries against the cached indexes of the collection,
+ * then warns, hints or rejects.
+ */
+@Slf4j
+final class IndexAdvisor {
+
+    /**
+     * operators index bounds can be computed from
+     */
+    private static final Set<String> SELECTIVE_OPERATORS = Set.of("$eq", "$in", "$gt", "$gte", "$lt", "$lte", "$all",
+            "$elemMatch");
+
+    /**
+     * warnings logged per advisor, further distinct shapes are logged at debug level
+     */
+    private static final int MAX_WARNINGS = 1024;
+
+    /**
+     * Coverage of one query.
+     *
+     * @param coverage how well the query is served
+     * @param index name of the index with the longest matching prefix, <code>null</code> if none
+     * @param fields filtered fields, in order of the query
+     */
+    record Advice(Coverage coverage, String index, Set<String> fields) {
+    }
+
+    private final String collection;
+    private final IndexPolicy policy;
+    private final Supplier<List<IndexInfo>> indexReader;
+    private final QueryMapper mapper;
+    private final MongoPersistentEntity<?> entity;
+    private final Set<String> warned = ConcurrentHashMap.newKeySet();
+
+    private volatile List<IndexInfo> indexes;
+    private volatile long readAt;
+
+    /**
+     * @param collection collection queried, for messages
+     * @param policy policy of the repository
+     * @param indexReader reads the indexes of the collection
+     * @param mapper maps properties of queries to the names fields are stored with, as indexes list them
+     * @param entity entity stored in the collection
+     */
+    IndexAdvisor(String collection, IndexPolicy policy, Supplier<List<IndexInfo>> indexReader, QueryMapper mapper,
+            MongoPersistentEntity<?> entity) {
+        this.collection = collection;
+        this.policy = policy;
+        this.indexReader = indexReader;
+        this.mapper = mapper;
+        this.entity = entity;
+    }
+
+    /**
+     * Apply the policy to a query before it is executed.
+     *
+     * @param query the query, a hint is added to it with {@link Action#HINT}
+     * @param sort ordering applied to the query, may be <code>null</code>
+     * @return the hinted index, <code>null</code> if none
+     * @throws IllegalArgumentException if the query is rejected
+     */
+    String apply(Query query, Sort sort) {
+        final List<IndexInfo> current = indexes();
+        if (current == null) {
+            return null;
+        }
+        final Advice advice = advise(mapper.getMappedObject(query.getQueryObject(), entity), mappedSort(sort),
+                current);
+        if (advice.coverage().compareTo(policy.minimum()) >= 0) {
+            return null;
+        }
+        final String message = String.format("query on fields %s of collection %s is %s", advice.fields(),
+                collection, advice.coverage());
+        switch (policy.action()) {
+        case REJECT:
+            throw new IllegalArgumentException(message + ", rejected by index policy");
+        case HINT:
+            if (advice.index() != null) {
+                query.withHint(advice.index());
+                return advice.index();
+            }
+            warn(advice, message);
+            return null;
+        case WARN:
+        default:
+            warn(advice, message);
+            return null;
+        }
+    }
+
+    /**
+     * @return the ordering by stored field names, e.g. <code>_id</code> for the id property
+     */
+    private Sort mappedSort(Sort sort) {
+        if (sort == null || sort.isUnsorted()) {
+            return sort;
+        }
+        final Document mapped = mapper.getMappedSort(new Query().with(sort).getSortObject(), entity);
+        final List<Sort.Order> orders = new ArrayList<>(mapped.size());
+        for (final Map.Entry<String, Object> entry : mapped.entrySet()) {
+            orders.add(new Sort.Order(Integer.valueOf(-1).equals(entry.getValue()) ? Direction.DESC : Direction.ASC,
+                    entry.getKey()));
+        }
+        return Sort.by(orders);
+    }
+
+    private void warn(Advice advice, String message) {
+        final String key = advice.coverage() + " " + advice.fields();
+        if (warned.contains(key) || warned.size() >= MAX_WARNINGS) {
+            log.debug(message);
+        } else if (warned.add(key)) {
+            log.warn(message);
+        }
+    }
+
+    /**
+     * @return indexes of the collection, read again after {@link IndexPolicy#refreshSeconds()}; <code>null</code> if
+     *         they cannot be read, then queries are not checked
+     */
+    private List<IndexInfo> indexes() {
+        final long now = System.nanoTime();
+        List<IndexInfo> current = indexes;
+        if (current == null || now - readAt > policy.refreshSeconds() * 1_000_000_000L) {
+            synchronized (this) {
+                if (indexes == current) {
+                    try {
+                        current = indexReader.get();
+                    } catch (RuntimeException e) {
+                        log.warn("indexes of collection {} cannot be read, queries are not checked: {}", collection,
+                                e.toString());
+                    }
+                    indexes = current;
+                    readAt = now;
+                }
+                current = indexes;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Classify a query.
+     *
+     * @param queryObject filters of the query, by stored field names
+     * @param sort ordering of the query by stored field names, may be <code>null</code>
+     * @param indexes indexes of the collection
+     * @return the coverage
+     */
+    static Advice advise(Document queryObject, Sort sort, List<IndexInfo> indexes) {
+        final Set<String> selective = new LinkedHashSet<>();
+        final Set<String> residual = new LinkedHashSet<>();
+        collect(queryObject, selective, residual);
+        final Set<String> fields = new LinkedHashSet<>(selective);
+        fields.addAll(residual);
+
+        if (fields.isEmpty()) {
+            return adviseSort(sort, indexes);
+        }
+
+        String best = null;
+        int bestPrefix = 0;
+        int bestSize = Integer.MAX_VALUE;
+        boolean covered = false;
+        for (final IndexInfo index : indexes) {
+            if (!usable(index)) {
+                continue;
+            }
+            final List<IndexField> keys = index.getIndexFields();
+            int prefix = 0;
+            while (prefix < keys.size() && !keys.get(prefix).isText() && !keys.get(prefix).isGeo()
+                    && selective.contains(keys.get(prefix).getKey())) {
+                prefix++;
+            }
+            if (prefix == 0) {
+                continue;
+            }
+            final boolean all = residual.isEmpty() && prefix == selective.size();
+            if (all && !covered || (all == covered && (prefix > bestPrefix
+                    || prefix == bestPrefix && keys.size() < bestSize))) {
+                best = index.getName();
+                bestPrefix = prefix;
+                bestSize = keys.size();
+                covered = all;
+            }
+        }
+        if (best == null) {
+            return new Advice(Coverage.UNINDEXED, null, fields);
+        }
+        return new Advice(covered ? Coverage.COVERED : Coverage.PARTIAL, best, fields);
+    }
+
+    /**
+     * Without filters all documents are read, only in the order of an index the first page is found at once.
+     */
+    private static Advice adviseSort(Sort sort, List<IndexInfo> indexes) {
+        if (sort == null || sort.isUnsorted()) {
+            return new Advice(Coverage.COVERED, null, Collections.emptySet());
+        }
+        final List<Sort.Order> orders = sort.toList();
+        for (final IndexInfo index : indexes) {
+            final List<IndexField> keys = index.getIndexFields();
+            if (!usable(index) || keys.size() < orders.size()) {
+                continue;
+            }
+            // the index can be read forward or backward
+            boolean forward = true;
+            boolean backward = true;
+            for (int i = 0; i < orders.size(); i++) {
+                final IndexField key = keys.get(i);
+                final Sort.Order order = orders.get(i);
+                if (!order.getProperty().equals(key.getKey()) || key.getDirection() == null) {
+                    forward = false;
+                    backward = false;
+                    break;
+                }
+                forward &= order.getDirection() == key.getDirection();
+                backward &= order.getDirection() != key.getDirection();
+            }
+            if (forward || backward) {
+                return new Advice(Coverage.COVERED, index.getName(), Collections.emptySet());
+            }
+        }
+        return new Advice(Coverage.UNINDEXED, null, Collections.emptySet());
+    }
+
+    /**
+     * partial and wildcard indexes may not contain all documents, or any given field
+     */
+    private static boolean usable(IndexInfo index) {
+        return !StringUtils.hasText(index.getPartialFilterExpression()) && !index.isWildcard()
+                && !index.getIndexFields().isEmpty();
+    }
+
+    /**
+     * Split fields of a query object into those index bounds can be computed for, and the others.
+     */
+    private static void collect(Document queryObject, Set<String> selective, Set<String> residual) {
+        for (final Map.Entry<String, Object> entry : queryObject.entrySet()) {
+            final String key = entry.getKey();
+            final Object value = entry.getValue();
+            if ("$and".equals(key) && value instanceof List) {
+                for (final Object part : (List<?>) value) {
+                    if (part instanceof Document) {
+                        collect((Document) part, selective, residual);
+                    }
+                }
+            } else if (key.startsWith("$")) {
+                // $or, $nor, $expr, $text etc.: each branch would need its own index
+                final Set<String> nested = new LinkedHashSet<>();
+                if (value instanceof List) {
+                    for (final Object part : (List<?>) value) {
+                        if (part instanceof Document) {
+                            collect((Document) part, nested, nested);
+                        }
+                    }
+                }
+                residual.addAll(nested.isEmpty() ? Collections.singleton(key) : nested);
+            } else if (isSelective(value)) {
+                selective.add(key);
+            } else {
+                residual.add(key);
+            }
+        }
+        residual.removeAll(selective);
+    }
+
+    private static boolean isSelective(Object value) {
+        if (value instanceof Pattern) {
+            return isPrefix(((Pattern) value).pattern(), ((Pattern) value).flags());
+        }
+        if (value instanceof BsonRegularExpression) {
+            final BsonRegularExpression regex = (BsonRegularExpression) value;
+            return isPrefix(regex.getPattern(), regex.getOptions().contains("i") ? Pattern.CASE_INSENSITIVE : 0);
+        }
+        if (!(value instanceof Document)) {
+            // equality, including null
+            return true;
+        }
+        final Document operators = (Document) value;
+        if (operators.containsKey("$regex")) {
+            final Object regex = operators.get("$regex");
+            final String options = String.valueOf(operators.getOrDefault("$options", ""));
+            if (regex instanceof Pattern || regex instanceof BsonRegularExpression) {
+                return isSelective(regex) && !options.contains("i");
+            }
+            return isPrefix(String.valueOf(regex), options.contains("i") ? Pattern.CASE_INSENSITIVE : 0);
+        }
+        boolean hasOperator = false;
+        for (final String operator : operators.keySet()) {
+            if (SELECTIVE_OPERATORS.contains(operator)) {
+                return true;
+            }
+            hasOperator |= operator.startsWith("$");
+        }
+        // an embedded document is compared for equality
+        return !hasOperator;
+    }
+
+    /**
+     * only anchored case-sensitive regular expressions are answered with index bounds
+     */
+    private static boolean isPrefix(String pattern, int flags) {
+        return pattern.startsWith("^") && (flags & Pattern.CASE_INSENSITIVE) == 0;
+    }
+}
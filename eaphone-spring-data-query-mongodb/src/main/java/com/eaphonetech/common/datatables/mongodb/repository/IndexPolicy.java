@@ -0,0 +1,73 @@
+package com.eaphonetech.common.datatables.mongodb.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Opt-in check of queries of a {@link MongoDBQueryRepository} against the indexes of its collection. Each query
+ * (filters and ordering, including additional and pre-filtering criteria) is classified as {@link Coverage}, and
+ * queries below {@link #minimum()} are handled with {@link #action()}.
+ *
+ * <pre>
+ * &#64;IndexPolicy(action = IndexPolicy.Action.REJECT, minimum = IndexPolicy.Coverage.PARTIAL)
+ * public interface OrderRepository extends MongoDBQueryRepository&lt;Order, String&gt; {
+ * }
+ * </pre>
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface IndexPolicy {
+
+    /**
+     * How well the indexes of the collection serve a query, from worst to best.
+     */
+    enum Coverage {
+        /**
+         * no index starts with a selectively filtered field, i.e. a collection scan
+         */
+        UNINDEXED,
+        /**
+         * an index narrows the query down, the remaining filters are applied to the documents it finds
+         */
+        PARTIAL,
+        /**
+         * all filters are <code>$eq</code>, <code>$in</code>, ranges or anchored case-sensitive regular expressions
+         * on the leading fields of one index; without filters, the ordering matches the leading fields of an index
+         */
+        COVERED
+    }
+
+    enum Action {
+        /**
+         * log a warning, once per distinct query shape
+         */
+        WARN,
+        /**
+         * pin the query to the index with the longest matching prefix, or warn if there is none
+         */
+        HINT,
+        /**
+         * fail the query, its output has an error
+         */
+        REJECT
+    }
+
+    /**
+     * @return what to do with queries below {@link #minimum()}
+     */
+    Action action() default Action.WARN;
+
+    /**
+     * @return the least coverage accepted as is
+     */
+    Coverage minimum() default Coverage.COVERED;
+
+    /**
+     * @return seconds indexes of the collection are cached before being read again
+     */
+    long refreshSeconds() default 300;
+}
@@ -2,7 +2,9 @@ package com.eaphonetech.common.datatables.mongodb.repository;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
 import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
@@ -52,6 +54,19 @@ public interface MongoDBQueryRepository<T, ID extends Serializable> extends Eaph
 	<View> QueryOutput<View> findAll(QueryInput input, Criteria additionalCrit, Criteria preFilteringCrit,
 			Function<T, View> converter);
 
+	/**
+	 * Returns the filtered records for the given {@link QueryInput} one by one from a MongoDB cursor, see
+	 * {@link #streamAll(QueryInput)}.
+	 *
+	 * @param input the {@link QueryInput} mapped from the Ajax request
+	 * @param additionalCriteria an additional {@link Criteria} to apply to the query
+	 *            (with an "AND" clause)
+	 * @param preFilteringCriteria a pre-filtering {@link Criteria} to apply to the query
+	 *            (with an "AND" clause)
+	 * @return a {@link Stream} of records, must be closed after use
+	 */
+	Stream<T> streamAll(QueryInput input, Criteria additionalCriteria, Criteria preFilteringCriteria);
+
 	/**
 	 * Returns the filtered list for the given {@link QueryInput} using the given {@link TypedAggregation}
 	 * 
@@ -97,4 +112,17 @@ public interface MongoDBQueryRepository<T, ID extends Serializable> extends Eaph
 	 */
 	CountOutput count(CountInput input, Criteria additionalCriteria, Criteria preFilteringCriteria);
 
+	/**
+	 * Returns the filtered counts of many {@link CountInput}s in a single <code>$facet</code> aggregation.
+	 *
+	 * @param inputs the {@link CountInput} of each facet
+	 * @param additionalCriteria an additional {@link Criteria} to apply to each facet
+	 *            (with an "AND" clause)
+	 * @param preFilteringCriteria a pre-filtering {@link Criteria} to apply to the query
+	 *            (with an "AND" clause)
+	 * @return a {@link CountOutput} for each key of <code>inputs</code>, in the same order
+	 */
+	Map<String, CountOutput> countFacets(Map<String, CountInput> inputs, Criteria additionalCriteria,
+			Criteria preFilteringCriteria);
+
 }
@@ -1,5 +1,6 @@
 package com.eaphonetech.common.datatables.mongodb.repository;
 
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.facet;
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.limit;
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
@@ -8,252 +9,173 @@ import static org.springframework.data.mongodb.core.aggregation.Aggregation.skip
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.sort;
 
 import java.io.Serializable;
-import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
-import org.reflections.ReflectionUtils;
-import org.springframework.data.domain.PageRequest;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Order;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.TypeBasedAggregationOperationContext;
 import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.repository.query.MongoEntityInformation;
-import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
 import com.eaphonetech.common.datatables.model.mapping.ColumnType;
 import com.eaphonetech.common.datatables.model.mapping.CountInput;
+import com.eaphonetech.common.datatables.model.mapping.CountMode;
 import com.eaphonetech.common.datatables.model.mapping.QueryInput;
 import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
-import com.fasterxml.jackson.annotation.JsonProperty;
+import com.eaphonetech.common.datatables.mongodb.repository.FieldResolver.ResolvedField;
+import com.eaphonetech.common.datatables.util.KeysetCursor;
+import com.eaphonetech.common.datatables.util.OffsetPageRequest;
+import com.eaphonetech.common.datatables.util.Projection;
 
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class QueryUtils {
     /**
-     * check jackson at startup
+     * characters escaped in "LIKE" values
      */
-    private static boolean IS_JACKSON_AVAILABLE = false;
-    static {
-        try {
-            Class.forName("com.fasterxml.jackson.annotation.JsonProperty");
-            IS_JACKSON_AVAILABLE = true;
-        } catch (ClassNotFoundException cnfe) {
-        }
-    }
+    private static final String REGEX_SYMBOLS = ".+?*^$()[]{}|\\";
 
-    public static <T, ID extends Serializable> Query getQuery(MongoEntityInformation<T, ID> entityInformation,
-            final QueryInput input) {
-        Query q = new Query();
-        List<Criteria> criteriaList = getCriteria(input, entityInformation);
-        if (criteriaList != null) {
-            for (final Criteria c : criteriaList) {
-                q.addCriteria(c);
-            }
-        }
-        return q;
-    }
+    private static final int LIKE_PATTERNS_MAX_SIZE = 4096;
 
-    private static List<Object> convertArray(ColumnType type, List<Object> value) {
-        return value.stream().filter(Objects::nonNull).map(o -> type.tryConvert(o)).collect(Collectors.toList());
-    }
+    /**
+     * field of the count in aggregation results, as in
+     * {@link com.eaphonetech.common.datatables.mongodb.model.QueryCount}
+     */
+    static final String COUNT_FIELD = "_count";
 
-    private static class ColumnTypeAndName {
-        private ColumnType type;
-        private String name;
-    }
+    /**
+     * facets of {@link #makeFacetAggregation}: the count of filtered documents, the documents of the page, and the
+     * count of all documents of the operations
+     */
+    static final String FACET_COUNT = "count";
+    static final String FACET_PAGE = "page";
+    static final String FACET_TOTAL = "total";
 
-	/**
-	 * Find one possible field of nested name parts.
-	 * @param javaType
-	 * @param fieldNameParts
-	 * @param currentIndex
-	 * @return Never return <code>null</code>.
-	 */
-	private static ColumnTypeAndName getField(Class<?> javaType, String[] fieldNameParts, int currentIndex) {
-		Objects.requireNonNull(fieldNameParts);
-		ColumnTypeAndName result = new ColumnTypeAndName();
-		if (javaType == null) {
-			return result;
-		}
-
-        if (currentIndex <= fieldNameParts.length - 1) {
-            final String currentLevelName = fieldNameParts[currentIndex];
-            String decidedName = null;
-            Class<?> currentLevelFieldType = null;
-
-            // do logic and append more
-            @SuppressWarnings("unchecked")
-            Set<Field> possibleFields = ReflectionUtils.getAllFields(javaType, input -> {
-                if (input != null) {
-                    if (currentLevelName.equals(input.getName())) {
-                        return true;
-                    } else if (IS_JACKSON_AVAILABLE) {
-                        // direct matching with @JsonProperty
-                        final JsonProperty jsonProperty = input.getAnnotation(JsonProperty.class);
-                        if (jsonProperty != null && StringUtils.hasLength(jsonProperty.value())) {
-                            if (currentLevelName.equals(jsonProperty.value())) {
-                                return true;
-                            }
-                        }
+    /**
+     * stages which keep every document and every field, filters may be moved ahead of them
+     */
+    private static final Set<String> FILTER_KEEPING_STAGES = Set.of("$match", "$sort");
 
-                        // TODO: Jackson PropertyNamingStrategy should also be considered
-                    }
+    /**
+     * stages which keep every document, filters may be moved ahead of them unless they write a filtered field
+     */
+    private static final Set<String> FIELD_WRITING_STAGES = Set.of("$addFields", "$set");
+    private static final String LOOKUP = "$lookup";
+
+    /**
+     * compiled "LIKE" patterns by filter value, least recently used evicted first
+     */
+    private static final Map<String, Pattern> LIKE_PATTERNS = Collections
+            .synchronizedMap(new LinkedHashMap<String, Pattern>(64, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+                    return size() > LIKE_PATTERNS_MAX_SIZE;
                 }
-                return false;
             });
 
-            if (possibleFields != null && !possibleFields.isEmpty()) {
-                for (final Field field : possibleFields) {
-                    decidedName = field.getName();
-                    // TODO: currentLevelFieldType = List<T>, should be T, got List
-                    currentLevelFieldType = field.getType();
-
-                    try {
-                        Type t = field.getGenericType();
-                        if (t != null && t instanceof ParameterizedType) {
-                            ParameterizedType pti = (ParameterizedType) t;
-                            Type tt = pti.getActualTypeArguments()[0];
-                            if (tt instanceof Class) {
-                                currentLevelFieldType = (Class<?>) tt;
-                            }
-                        }
-                    } catch (Exception ex) {
-                        log.debug("Caught unhandled exception", ex);
-                    }
-                    break;
-                }
-            }
+    public static <T, ID extends Serializable> Query getQuery(MongoEntityInformation<T, ID> entityInformation,
+            final QueryInput input) {
+        return getFilter(entityInformation, input).toQuery();
+    }
 
-            if (currentLevelFieldType == null) {
-                return result;
-            }
+    /**
+     * @param entityInformation {@link MongoEntityInformation}
+     * @param input the {@link QueryInput}
+     * @return filters of the input, to be shared by the count and the page query
+     */
+    public static <T, ID extends Serializable> FilterCriteria getFilter(
+            MongoEntityInformation<T, ID> entityInformation, QueryInput input) {
+        return compile(entityInformation.getJavaType(), entityInformation.getIdAttribute(), input.getWhere());
+    }
 
-            if (currentIndex < fieldNameParts.length - 1) {
-                ColumnTypeAndName childrenField = getField(currentLevelFieldType, fieldNameParts, currentIndex + 1);
-                if (childrenField == null) {
-                    result.type = null;
-                    result.name = decidedName;
-                } else {
-                    result.type = childrenField.type;
-                    result.name = decidedName + "." + childrenField.name;
-                }
-            } else {
-                result.type = ColumnType.parse(currentLevelFieldType);
-                result.name = decidedName;
-            }
-        }
-        return result;
+    /**
+     * @param entityInformation {@link MongoEntityInformation}
+     * @param input the {@link CountInput}
+     * @return filters of the input, compiled as those of a {@link QueryInput}
+     */
+    public static <T, ID extends Serializable> FilterCriteria getFilter(
+            MongoEntityInformation<T, ID> entityInformation, CountInput input) {
+        return compile(entityInformation.getJavaType(), entityInformation.getIdAttribute(), input);
     }
 
-	/**
-	 * Recursively get field type
-	 *
-	 * @param javaType
-	 * @param fieldNameParts
-	 * @param currentIndex
-	 * @return
-	 */
-	private static ColumnType getFieldType(Class<?> javaType, String[] fieldNameParts, int currentIndex) {
-		return getField(javaType, fieldNameParts, currentIndex).type;
-	}
-
-	/**
-	 * Determine actual MongoDB field type from input
-	 * (including jackson-databind, etc.)
-	 *
-	 * @param javaType actual java type
-	 * @param fieldName frontend provided field name
-	 * @return
-	 */
-	private static ColumnType getFieldType(Class<?> javaType, String fieldName) {
-		if (javaType == null || ObjectUtils.isEmpty(fieldName)) {
-			return null;
-		}
-
-        ColumnType result = null;
-        if (fieldName.contains(".")) {
-            final String[] parts = fieldName.split("\\.");
-            result = getFieldType(javaType, parts, 0);
-        } else {
-            result = getFieldType(javaType, new String[] { fieldName }, 0);
-        }
-        log.trace("getFieldType({}, '{}') returns : '{}'", javaType.getSimpleName(), fieldName, result);
-        return result;
+    private static List<Object> convertArray(ColumnType type, List<Object> value) {
+        return value.stream().filter(Objects::nonNull).map(o -> type.tryConvert(o)).collect(Collectors.toList());
     }
 
-	/**
-	 * Recursively get field name
-	 *
-	 * @param javaType
-	 * @param fieldNameParts
-	 * @param currentIndex
-	 * @return
-	 */
-	private static String getFieldName(Class<?> javaType, String[] fieldNameParts, int currentIndex) {
-		return getField(javaType, fieldNameParts, currentIndex).name;
-	}
-
-	/**
-	 * Determine actual MongoDB field name from input
-	 * (including jackson-databind, etc.)
-	 *
-	 * @param javaType actual java type
-	 * @param fieldName frontend provided field name
-	 * @return
-	 */
-	private static String getFieldName(Class<?> javaType, String fieldName) {
-		if (javaType == null || ObjectUtils.isEmpty(fieldName)) {
-			return null;
-		}
-
-        String result = null;
-        if (fieldName.contains(".")) {
-            final String[] parts = fieldName.split("\\.");
-            result = getFieldName(javaType, parts, 0);
-        } else {
-            result = getFieldName(javaType, new String[] { fieldName }, 0);
+    /**
+     * Determine actual MongoDB field name from input
+     * (including jackson-databind, etc.)
+     *
+     * @param javaType actual java type
+     * @param fieldName frontend provided field name
+     * @return
+     */
+    private static String getFieldName(Class<?> javaType, String fieldName) {
+        return FieldResolver.resolve(javaType, fieldName).getName();
+    }
+
+    /**
+     * Convert the bound of <code>$gt</code>, <code>$lt</code>, etc. Ids are compared as <code>ObjectId</code>, which
+     * is not done by the query mapper for these operators.
+     */
+    private static Object convertBound(String idAttribute, ResolvedField field, Object value) {
+        if (value instanceof String && field.getName().equals(idAttribute)
+                && ObjectId.isValid((String) value)) {
+            return new ObjectId((String) value);
         }
-        log.trace("getFieldName({}, '{}') returns : '{}'", javaType.getSimpleName(), fieldName, result);
-        return result;
+        return field.getType().tryConvert(value);
     }
 
     /**
-     * Convert a {@link QueryInput} to Criteia
+     * Translate the filters of a request. This is the only translation of filters, for pages, counts, facets,
+     * cursors and aggregations alike.
      *
-     * @param input
-     * @return
+     * @param javaType entity class
+     * @param idAttribute id of the entity, <code>null</code> if unknown
+     * @param where filters of a {@link QueryInput} or a {@link CountInput}
+     * @return the criteria
      */
-    private static <T, ID extends Serializable> List<Criteria> getCriteria(final QueryInput input,
-            MongoEntityInformation<T, ID> entityInformation) {
-        List<Criteria> result = new LinkedList<>();
+    private static FilterCriteria compile(Class<?> javaType, String idAttribute, Map<String, QueryFilter> where) {
+        List<Criteria> result = new ArrayList<>();
         // check for each searchable column whether a filter value exists
-        for (final Map.Entry<String, QueryFilter> entry : input.getWhere().entrySet()) {
+        for (final Map.Entry<String, QueryFilter> entry : where.entrySet()) {
             final QueryFilter filter = entry.getValue();
             final String fieldName = entry.getKey();
-            final ColumnType type = getFieldType(entityInformation.getJavaType(), fieldName);
+            final ResolvedField field = FieldResolver.resolve(javaType, fieldName);
+            final ColumnType type = field.getType();
             if (type == null) {
                 throw new RuntimeException(String.format("field [%s] not exists", fieldName));
             }
             // handle column.filter
             if (filter != null) {
                 boolean hasValidCrit = false;
-                final String queryFieldName = getFieldName(entityInformation.getJavaType(), fieldName);
+                final String queryFieldName = field.getName();
                 Criteria c = Criteria.where(queryFieldName);
                 if (filter.get_eq() != null) {
                     // $eq takes first place
@@ -357,19 +279,19 @@ public class QueryUtils {
                     if (type.isComparable()) {
                         // $gt, $lt, etc. only works if type is comparable
                         if (filter.get_gt() != null) {
-                            c.gt(type.tryConvert(filter.get_gt()));
+                            c.gt(convertBound(idAttribute, field, filter.get_gt()));
                             hasValidCrit = true;
                         }
                         if (filter.get_gte() != null) {
-                            c.gte(type.tryConvert(filter.get_gte()));
+                            c.gte(convertBound(idAttribute, field, filter.get_gte()));
                             hasValidCrit = true;
                         }
                         if (filter.get_lt() != null) {
-                            c.lt(type.tryConvert(filter.get_lt()));
+                            c.lt(convertBound(idAttribute, field, filter.get_lt()));
                             hasValidCrit = true;
                         }
                         if (filter.get_lte() != null) {
-                            c.lte(type.tryConvert(filter.get_lte()));
+                            c.lte(convertBound(idAttribute, field, filter.get_lte()));
                             hasValidCrit = true;
                         }
                     }
@@ -380,7 +302,7 @@ public class QueryUtils {
             }
         }
 
-        return result;
+        return result.isEmpty() ? FilterCriteria.EMPTY : new FilterCriteria(result);
     }
 
     /**
@@ -394,24 +316,93 @@ public class QueryUtils {
      */
     public static <T, ID extends Serializable> Pageable getPageable(MongoEntityInformation<T, ID> entityInformation,
             QueryInput input) {
+        // ordered by id at last so the order is stable for keyset pagination
+        return getPageable(entityInformation.getJavaType(), input, entityInformation.getIdAttribute());
+    }
+
+    /**
+     * Creates a '$sort' clause for the given {@link QueryInput}.
+     *
+     * @param javaType entity class
+     * @param input the {@link QueryInput} mapped from the Ajax request
+     * @param idProperty property of the id, <code>null</code> if no tie breaker is needed
+     * @return a {@link Pageable}, must not be {@literal null}.
+     */
+    public static Pageable getPageable(Class<?> javaType, QueryInput input, String idProperty) {
         List<Order> orders = input.getOrders();
 
         // handle JsonProperty annotation
         Sort sort = orders.isEmpty() ? Sort.unsorted()
                 : Sort.by(orders.stream()
                         .map(o -> new Sort.Order(o.getDirection(),
-                                Optional.ofNullable(getFieldName(entityInformation.getJavaType(), o.getProperty()))
-                                        .orElse(o.getProperty())))
+                                Optional.ofNullable(getFieldName(javaType, o.getProperty())).orElse(o.getProperty())))
                         .collect(Collectors.toList()));
 
         if (input.getLimit() == -1) {
             input.setLimit(Integer.MAX_VALUE);
         }
-        return PageRequest.of(input.getOffset() / input.getLimit(), input.getLimit(), sort);
+        return new OffsetPageRequest(KeysetCursor.offsetOf(input), input.getLimit(),
+                KeysetCursor.sortOf(sort.toList(), idProperty, StringUtils.hasLength(input.getBefore())));
+    }
+
+    /**
+     * Translate a keyset cursor into <code>$or</code> criteria, expanded as in {@link KeysetCursor#getFilters()}.
+     *
+     * @param <T> generic
+     * @param <ID> generic
+     * @param entityInformation {@link MongoEntityInformation}
+     * @param cursor the cursor
+     * @return criteria of documents after (or before) the cursor
+     */
+    public static <T, ID extends Serializable> Criteria getCursorCriteria(
+            MongoEntityInformation<T, ID> entityInformation, KeysetCursor cursor) {
+        List<Criteria> branches = new ArrayList<>();
+        for (final Map<String, QueryFilter> filters : cursor.getFilters()) {
+            QueryInput branch = new QueryInput();
+            branch.setWhere(filters);
+            branches.add(getFilter(entityInformation, branch).toCriteria());
+        }
+        return new Criteria().orOperator(branches);
     }
 
     /**
-     * "LIKE" search is converted to $regex
+     * Read only the fields of <code>select</code>, resolved as filters are. Fields nested in another selected field
+     * are dropped, since MongoDB rejects overlapping paths.
+     *
+     * @param entityInformation {@link MongoEntityInformation}
+     * @param input the {@link QueryInput}
+     * @param query query of the page
+     * @return the query
+     * @throws RuntimeException if some field does not exist
+     */
+    public static <T, ID extends Serializable> Query applySelect(MongoEntityInformation<T, ID> entityInformation,
+            QueryInput input, Query query) {
+        final List<String> fields = Projection.fieldsOf(input, entityInformation.getIdAttribute());
+        if (fields == null) {
+            return query;
+        }
+        // sorted, so a field comes right before the fields nested in it
+        TreeSet<String> names = new TreeSet<>();
+        for (final String name : fields) {
+            final ResolvedField field = FieldResolver.resolve(entityInformation.getJavaType(), name);
+            if (field.getType() == null) {
+                throw new RuntimeException(String.format("field [%s] not exists", name));
+            }
+            names.add(field.getName());
+        }
+        String parent = null;
+        for (final String name : names) {
+            if (parent == null || !name.startsWith(parent + ".")) {
+                query.fields().include(name);
+                parent = name;
+            }
+        }
+        return query;
+    }
+
+    /**
+     * "LIKE" search is converted to $regex. Compiled patterns are cached, as type-ahead grids send the same values
+     * again and again.
      *
      * @param filterValue filter value
      * @return
@@ -420,38 +411,150 @@ public class QueryUtils {
         if (filterValue == null) {
             return null;
         }
-        String pattern = filterValue;
-        // escape regex symbols
-        for (char t : ".+?*^$()[]".toCharArray()) {
-            pattern = pattern.replaceAll("\\" + t, "\\\\" + t);
+        Pattern pattern = LIKE_PATTERNS.get(filterValue);
+        if (pattern == null) {
+            pattern = compileLikeFilterPattern(filterValue);
+            LIKE_PATTERNS.put(filterValue, pattern);
         }
+        return pattern;
+    }
+
+    /**
+     * Escape regex symbols and replace <code>%</code> in one pass. The pattern is only case-insensitive if the value
+     * contains cased letters, so that e.g. <code>12%</code> is an anchored case-sensitive regex, which MongoDB
+     * answers with an index range scan.
+     */
+    static Pattern compileLikeFilterPattern(String filterValue) {
+        final int length = filterValue.length();
+        final StringBuilder pattern = new StringBuilder(length + 8);
+        boolean cased = false;
         // handle start and end
         if (!filterValue.startsWith("%")) {
-            pattern = "^" + pattern;
+            pattern.append('^');
+        }
+        for (int i = 0; i < length; i++) {
+            final char ch = filterValue.charAt(i);
+            if (ch == '%') {
+                pattern.append(".*");
+                continue;
+            }
+            if (REGEX_SYMBOLS.indexOf(ch) >= 0) {
+                pattern.append('\\');
+            }
+            pattern.append(ch);
+            if (!cased) {
+                final int cp = filterValue.codePointAt(i);
+                cased = Character.toLowerCase(cp) != cp || Character.toUpperCase(cp) != cp;
+            }
         }
         if (!filterValue.endsWith("%")) {
-            pattern = pattern + "$";
+            pattern.append('$');
         }
-        pattern = pattern.replaceAll("%", ".*");
-        return Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
+        return Pattern.compile(pattern.toString(), cased ? Pattern.CASE_INSENSITIVE : 0);
     }
 
     /**
-     * Convert {@link QueryInput} to {@link AggregationOperation}[], mainly for column searches.
+     * Insert the filters of a request into the operations of the caller. The filters apply to the documents the
+     * operations return, but they are moved ahead of the trailing stages which keep every document and do not write
+     * a filtered field, so that they may use indexes and the stages read fewer documents.
      *
-     * @param input
-     * @return
+     * @param javaType entity class
+     * @param idAttribute id of the entity, <code>null</code> if unknown
+     * @param input the {@link QueryInput}
+     * @param operations aggregation operations, may be <code>null</code>
+     * @return the operations with a <code>$match</code> of the filters, if there are any
      */
-    private static <T, ID extends Serializable> List<AggregationOperation> toAggregationOperation(
-            MongoEntityInformation<T, ID> entityInformation, QueryInput input) {
-        List<AggregationOperation> result = new LinkedList<>();
-        List<Criteria> criteriaList = getCriteria(input, entityInformation);
-        if (criteriaList != null) {
-            for (final Criteria c : criteriaList) {
-                result.add(match(c));
+    private static List<AggregationOperation> withFilter(Class<?> javaType, String idAttribute, QueryInput input,
+            AggregationOperation[] operations) {
+        List<AggregationOperation> opList = new ArrayList<>();
+        if (operations != null) {
+            Collections.addAll(opList, operations);
+        }
+        final FilterCriteria filter = compile(javaType, idAttribute, input.getWhere());
+        if (filter.isEmpty()) {
+            return opList;
+        }
+        List<String> fields = new ArrayList<>();
+        for (final String fieldName : input.getWhere().keySet()) {
+            fields.add(FieldResolver.resolve(javaType, fieldName).getName());
+        }
+        int position = opList.size();
+        while (position > 0 && keepsFields(opList.get(position - 1), fields)) {
+            position--;
+        }
+        opList.add(position, match(filter.toCriteria()));
+        return opList;
+    }
+
+    /**
+     * Documents with a {@link Pattern} have no equality, so totals are keyed by their JSON instead.
+     *
+     * @param document criteria or pipeline to count the total of
+     * @return key of the total in {@link CountMode#CACHED_TOTAL}, <code>null</code> if the document cannot be
+     *         rendered, e.g. it holds values not mapped to BSON yet
+     */
+    static String totalKeyOf(Document document) {
+        try {
+            return document.toJson();
+        } catch (CodecConfigurationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Renders the pipeline with the typed context {@link TypedAggregation} runs it with, so operations referencing
+     * fields of the entity have a key too.
+     *
+     * @param type type of the entity the aggregation runs on
+     * @param operations user operations ahead of the facet
+     * @param converter converter mapping fields and values of <code>type</code>
+     * @return key of the total in {@link CountMode#CACHED_TOTAL}, <code>null</code> if the pipeline cannot be
+     *         rendered
+     */
+    static String totalKeyOf(Class<?> type, AggregationOperation[] operations, MongoConverter converter) {
+        final List<Document> pipeline;
+        try {
+            pipeline = newAggregation(type, operations).toPipeline(new TypeBasedAggregationOperationContext(type,
+                    converter.getMappingContext(), new QueryMapper(converter)));
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return totalKeyOf(new Document("pipeline", pipeline));
+    }
+
+    /**
+     * @return whether the filters of <code>fields</code> select the same documents before and after the operation
+     */
+    static boolean keepsFields(AggregationOperation operation, Collection<String> fields) {
+        final List<Document> stages;
+        try {
+            stages = operation.toPipelineStages(Aggregation.DEFAULT_CONTEXT);
+        } catch (RuntimeException e) {
+            // needs a typed context, e.g. references to fields of the entity
+            return false;
+        }
+        for (final Document stage : stages) {
+            final String operator = stage.keySet().iterator().next();
+            final Object spec = stage.get(operator);
+            final Collection<String> written;
+            if (FILTER_KEEPING_STAGES.contains(operator)) {
+                continue;
+            } else if (LOOKUP.equals(operator) && spec instanceof Document) {
+                written = Collections.singleton(((Document) spec).getString("as"));
+            } else if (FIELD_WRITING_STAGES.contains(operator) && spec instanceof Document) {
+                written = ((Document) spec).keySet();
+            } else {
+                return false;
+            }
+            for (final String name : written) {
+                for (final String field : fields) {
+                    if (field.equals(name) || field.startsWith(name + ".") || name.startsWith(field + ".")) {
+                        return false;
+                    }
+                }
             }
         }
-        return result;
+        return true;
     }
 
     /**
@@ -475,16 +578,9 @@ public class QueryUtils {
      */
     public static <T, ID extends Serializable> TypedAggregation<T> makeAggregationCountOnly(
             MongoEntityInformation<T, ID> entityInformation, QueryInput input, AggregationOperation[] operations) {
-        List<AggregationOperation> opList = new LinkedList<>();
-        if (operations != null) {
-            for (int i = 0; i < operations.length; i++) {
-                opList.add(operations[i]);
-            }
-        }
-
-        opList.addAll(toAggregationOperation(entityInformation, input));
-
-        opList.add(group().count().as("_count"));
+        List<AggregationOperation> opList = withFilter(entityInformation.getJavaType(),
+                entityInformation.getIdAttribute(), input, operations);
+        opList.add(group().count().as(COUNT_FIELD));
         return newAggregation(entityInformation.getJavaType(), opList);
     }
 
@@ -492,34 +588,128 @@ public class QueryUtils {
      * Create an {@link TypedAggregation} with specified {@link QueryInput} as filter, plus specified
      * {@link AggregationOperation}[]
      *
-     * @param classOfT
-     * @param input
-     * @param pageable
-     * @param operations
-     * @return
+     * @param entityInformation {@link MongoEntityInformation}
+     * @param input the {@link QueryInput} mapped from the Ajax request
+     * @param pageable the page, <code>null</code> for all documents
+     * @param operations aggregation operations
+     * @return a {@link TypedAggregation}
      */
-    public static <T> TypedAggregation<T> makeAggregation(Class<T> classOfT, QueryInput input, Pageable pageable,
+    public static <T, ID extends Serializable> TypedAggregation<T> makeAggregation(
+            MongoEntityInformation<T, ID> entityInformation, QueryInput input, Pageable pageable,
             AggregationOperation[] operations) {
-        List<AggregationOperation> opList = new LinkedList<>();
-        if (operations != null) {
-            for (int i = 0; i < operations.length; i++) {
-                opList.add(operations[i]);
-            }
+        List<AggregationOperation> opList = withFilter(entityInformation.getJavaType(),
+                entityInformation.getIdAttribute(), input, operations);
+        if (pageable != null) {
+            opList.addAll(pageOperations(pageable));
         }
+        return newAggregation(entityInformation.getJavaType(), opList);
+    }
 
-        opList.addAll(toAggregationOperation(null, input));
-
+    /**
+     * @deprecated ids are not compared as <code>ObjectId</code>, use
+     *             {@link #makeAggregation(MongoEntityInformation, QueryInput, Pageable, AggregationOperation[])}
+     */
+    @Deprecated
+    public static <T> TypedAggregation<T> makeAggregation(Class<T> classOfT, QueryInput input, Pageable pageable,
+            AggregationOperation[] operations) {
+        List<AggregationOperation> opList = withFilter(classOfT, null, input, operations);
         if (pageable != null) {
-            final Sort s = pageable.getSort();
-            if (s != null && !s.isUnsorted()) {
-                opList.add(sort(s));
-            }
-            opList.add(skip((long) pageable.getOffset()));
-            opList.add(limit(pageable.getPageSize()));
+            opList.addAll(pageOperations(pageable));
         }
         return newAggregation(classOfT, opList);
     }
 
+    /**
+     * Create an {@link TypedAggregation} reading the count and the page in one pass, as follows:
+     *
+     * <pre>
+     * <code>
+     * [
+     *      ...operations, with {$match: filters} as early as possible,
+     *      {$facet: {
+     *          "count": [{$group: {"_id": null, "_count": {$sum: 1}}}],
+     *          "page": [{$sort: ...}, {$skip: ...}, {$limit: ...}]
+     *      }}
+     * ]
+     * </code>
+     * </pre>
+     *
+     * The result is one document, see {@link #FACET_COUNT} and {@link #FACET_PAGE}.
+     *
+     * @param entityInformation {@link MongoEntityInformation}
+     * @param input the {@link QueryInput} mapped from the Ajax request
+     * @param pageable the page
+     * @param operations aggregation operations
+     * @return a {@link TypedAggregation}
+     */
+    public static <T, ID extends Serializable> TypedAggregation<T> makeFacetAggregation(
+            MongoEntityInformation<T, ID> entityInformation, QueryInput input, Pageable pageable,
+            AggregationOperation[] operations) {
+        return makeFacetAggregation(entityInformation, input, pageable, operations, false);
+    }
+
+    /**
+     * Create an {@link TypedAggregation} as {@link #makeFacetAggregation(MongoEntityInformation, QueryInput,
+     * Pageable, AggregationOperation[])}, which may also count all documents of the operations. If the request has
+     * filters, they are applied in the facets instead, as follows:
+     *
+     * <pre>
+     * <code>
+     * [
+     *      ...operations,
+     *      {$facet: {
+     *          "count": [{$match: filters}, {$group: {"_id": null, "_count": {$sum: 1}}}],
+     *          "page": [{$match: filters}, {$sort: ...}, {$skip: ...}, {$limit: ...}],
+     *          "total": [{$group: {"_id": null, "_count": {$sum: 1}}}]
+     *      }}
+     * ]
+     * </code>
+     * </pre>
+     *
+     * Without filters, there is no facet {@link #FACET_TOTAL}, the total is {@link #FACET_COUNT}.
+     *
+     * @param entityInformation {@link MongoEntityInformation}
+     * @param input the {@link QueryInput} mapped from the Ajax request
+     * @param pageable the page
+     * @param operations aggregation operations
+     * @param total whether to count all documents of the operations
+     * @return a {@link TypedAggregation}
+     */
+    public static <T, ID extends Serializable> TypedAggregation<T> makeFacetAggregation(
+            MongoEntityInformation<T, ID> entityInformation, QueryInput input, Pageable pageable,
+            AggregationOperation[] operations, boolean total) {
+        final FilterCriteria filter = total ? getFilter(entityInformation, input) : FilterCriteria.EMPTY;
+        if (filter.isEmpty()) {
+            List<AggregationOperation> opList = withFilter(entityInformation.getJavaType(),
+                    entityInformation.getIdAttribute(), input, operations);
+            opList.add(facet(group().count().as(COUNT_FIELD)).as(FACET_COUNT)
+                    .and(pageOperations(pageable).toArray(new AggregationOperation[0])).as(FACET_PAGE));
+            return newAggregation(entityInformation.getJavaType(), opList);
+        }
+        List<AggregationOperation> opList = new ArrayList<>();
+        if (operations != null) {
+            Collections.addAll(opList, operations);
+        }
+        final AggregationOperation match = match(filter.toCriteria());
+        List<AggregationOperation> page = pageOperations(pageable);
+        page.add(0, match);
+        opList.add(facet(match, group().count().as(COUNT_FIELD)).as(FACET_COUNT)
+                .and(page.toArray(new AggregationOperation[0])).as(FACET_PAGE)
+                .and(group().count().as(COUNT_FIELD)).as(FACET_TOTAL));
+        return newAggregation(entityInformation.getJavaType(), opList);
+    }
+
+    private static List<AggregationOperation> pageOperations(Pageable pageable) {
+        List<AggregationOperation> opList = new ArrayList<>(3);
+        final Sort s = pageable.getSort();
+        if (s != null && !s.isUnsorted()) {
+            opList.add(sort(s));
+        }
+        opList.add(skip((long) pageable.getOffset()));
+        opList.add(limit(pageable.getPageSize()));
+        return opList;
+    }
+
     /**
      *
      * @param <T>
@@ -530,109 +720,17 @@ public class QueryUtils {
      */
     public static <T, ID extends Serializable> Query getQuery(MongoEntityInformation<T, ID> entityInformation,
             CountInput input) {
-        Query q = new Query();
-        List<Criteria> criteriaList = getCriteria(input, entityInformation);
-        if (criteriaList != null) {
-            for (final Criteria c : criteriaList) {
-                q.addCriteria(c);
-            }
-        }
-        return q;
+        return getFilter(entityInformation, input).toQuery();
     }
 
     /**
-     *
-     * @param input
-     * @param entityInformation
-     * @return
+     * @param entityInformation {@link MongoEntityInformation}
+     * @param input the {@link CountInput}
+     * @return all filters of the input joined with AND, empty {@link Criteria} if there is none
      */
-    private static <T, ID extends Serializable> List<Criteria> getCriteria(CountInput input,
-            MongoEntityInformation<T, ID> entityInformation) {
-        List<Criteria> result = new LinkedList<>();
-        // check for each searchable column whether a filter value exists
-        for (final Map.Entry<String, QueryFilter> entry : input.entrySet()) {
-            final QueryFilter filter = entry.getValue();
-            final String fieldName = entry.getKey();
-            final ColumnType type = getFieldType(entityInformation.getJavaType(), fieldName);
-            if (type == null) {
-                throw new RuntimeException(String.format("field [%s] not exists", fieldName));
-            }
-            // handle column.filter
-            if (filter != null) {
-                boolean hasValidCrit = false;
-                Criteria c = Criteria.where(getFieldName(entityInformation.getJavaType(), fieldName));
-                if (filter.get_eq() != null) {
-                    // $eq takes first place
-                    c.is(type.tryConvert(filter.get_eq()));
-                    hasValidCrit = true;
-                } else if (filter.get_ne() != null) {
-                    // $ne
-                    c.ne(type.tryConvert(filter.get_ne()));
-                    hasValidCrit = true;
-                } else {
-                    if (filter.get_in() != null) {
-                        // $in takes second place
-                        c.in(convertArray(type, filter.get_in()));
-                        hasValidCrit = true;
-                    }
-
-                    if (filter.get_nin() != null) {
-                        c.nin(convertArray(type, filter.get_nin()));
-                        hasValidCrit = true;
-                    }
-
-                    if (StringUtils.hasLength(filter.get_regex())) {
-                        // $regex also works here
-                        c.regex(filter.get_regex());
-                        hasValidCrit = true;
-                    } else if (StringUtils.hasLength(filter.get_like())) {
-                        // like is converted to $regex
-                        c.regex(getLikeFilterPattern(filter.get_like()));
-                        hasValidCrit = true;
-                    }
-
-                    if (filter.get_null() != null && filter.get_null().booleanValue()) {
-                        c.is(null);
-                        hasValidCrit = true;
-                    }
-
-                    if (filter.get_empty() != null && filter.get_empty().booleanValue()) {
-                        c.is("");
-                        hasValidCrit = true;
-                    }
-
-                    if (filter.get_exists() != null) {
-                        c.exists(filter.get_exists().booleanValue());
-                        hasValidCrit = true;
-                    }
-
-                    if (type.isComparable()) {
-                        // $gt, $lt, etc. only works if type is comparable
-                        if (filter.get_gt() != null) {
-                            c.gt(type.tryConvert(filter.get_gt()));
-                            hasValidCrit = true;
-                        }
-                        if (filter.get_gte() != null) {
-                            c.gte(type.tryConvert(filter.get_gte()));
-                            hasValidCrit = true;
-                        }
-                        if (filter.get_lt() != null) {
-                            c.lt(type.tryConvert(filter.get_lt()));
-                            hasValidCrit = true;
-                        }
-                        if (filter.get_lte() != null) {
-                            c.lte(type.tryConvert(filter.get_lte()));
-                            hasValidCrit = true;
-                        }
-                    }
-                }
-                if (hasValidCrit) {
-                    result.add(c);
-                }
-            }
-        }
-
-        return result;
+    public static <T, ID extends Serializable> Criteria getCriteria(MongoEntityInformation<T, ID> entityInformation,
+            CountInput input) {
+        return getFilter(entityInformation, input).toCriteria();
     }
 
 }
@@ -0,0 +1,81 @@
+package com.eaphonetech.common.datatables.mongodb.repository;
+
+import java.io.Serializable;
+
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactoryBean;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.core.RepositoryMetadata;
+import org.springframework.data.repository.core.support.RepositoryFactorySupport;
+
+import com.eaphonetech.common.datatables.config.EaphoneQueryProperties;
+import com.eaphonetech.common.datatables.util.QueryGuard;
+
+/**
+ * {@link FactoryBean} creating {@link ReactiveMongoDBQueryRepository} instances, use with
+ * <code>@EnableReactiveMongoRepositories(repositoryFactoryBeanClass = ReactiveEaphoneQueryRepositoryFactoryBean.class)</code>.
+ */
+public class ReactiveEaphoneQueryRepositoryFactoryBean<R extends ReactiveMongoRepository<T, ID>, T, ID extends Serializable>
+        extends ReactiveMongoRepositoryFactoryBean<R, T, ID> implements EnvironmentAware {
+
+    private EaphoneQueryProperties properties = new EaphoneQueryProperties();
+
+    public ReactiveEaphoneQueryRepositoryFactoryBean(Class<? extends R> repositoryInterface) {
+        super(repositoryInterface);
+    }
+
+    /**
+     * @param properties settings of created repositories
+     */
+    public void setProperties(EaphoneQueryProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.properties = EaphoneQueryProperties.from(environment);
+    }
+
+    @Override
+    protected RepositoryFactorySupport getFactoryInstance(ReactiveMongoOperations operations) {
+        return new ReactiveDataTablesRepositoryFactory(operations, properties);
+    }
+
+    private static class ReactiveDataTablesRepositoryFactory extends ReactiveMongoRepositoryFactory {
+
+        private final EaphoneQueryProperties properties;
+
+        public ReactiveDataTablesRepositoryFactory(ReactiveMongoOperations mongoOperations,
+                EaphoneQueryProperties properties) {
+            super(mongoOperations);
+            this.properties = properties;
+        }
+
+        @Override
+        protected Object getTargetRepository(RepositoryInformation information) {
+            Object repository = super.getTargetRepository(information);
+            if (repository instanceof ReactiveEaphoneQueryRepositoryImpl) {
+                ((ReactiveEaphoneQueryRepositoryImpl<?, ?>) repository).setProperties(properties);
+                ((ReactiveEaphoneQueryRepositoryImpl<?, ?>) repository)
+                        .setQueryGuard(QueryGuard.of(information.getRepositoryInterface(), properties));
+            }
+            return repository;
+        }
+
+        @Override
+        protected Class<?> getRepositoryBaseClass(RepositoryMetadata metadata) {
+            Class<?> repoClass = metadata.getRepositoryInterface();
+            if (ReactiveMongoDBQueryRepository.class.isAssignableFrom(repoClass)) {
+                return ReactiveEaphoneQueryRepositoryImpl.class;
+            } else {
+                return super.getRepositoryBaseClass(metadata);
+            }
+        }
+    }
+
+}
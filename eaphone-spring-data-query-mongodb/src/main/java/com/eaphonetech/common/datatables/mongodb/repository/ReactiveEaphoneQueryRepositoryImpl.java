@@ -0,0 +1,264 @@
+package com.eaphonetech.common.datatables.mongodb.repository;
+
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.query.MongoEntityInformation;
+import org.springframework.data.mongodb.repository.support.SimpleReactiveMongoRepository;
+
+import com.eaphonetech.common.datatables.config.EaphoneQueryProperties;
+import com.eaphonetech.common.datatables.model.mapping.CountInput;
+import com.eaphonetech.common.datatables.model.mapping.CountMode;
+import com.eaphonetech.common.datatables.model.mapping.CountOutput;
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryOutput;
+import com.eaphonetech.common.datatables.util.Converter;
+import com.eaphonetech.common.datatables.util.KeysetCursor;
+import com.eaphonetech.common.datatables.util.QueryGuard;
+import com.eaphonetech.common.datatables.util.TotalCountCache;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive repository implementation. Queries are built by {@link QueryUtils} exactly as in
+ * {@link EaphoneQueryRepositoryImpl}, the counts and the page are then read concurrently with {@link Mono#zip}.
+ */
+public class ReactiveEaphoneQueryRepositoryImpl<T, ID extends Serializable> extends SimpleReactiveMongoRepository<T, ID>
+		implements ReactiveMongoDBQueryRepository<T, ID> {
+
+	private static final Logger log = LoggerFactory.getLogger(ReactiveEaphoneQueryRepositoryImpl.class);
+
+	private final MongoEntityInformation<T, ID> entityInformation;
+	private final ReactiveMongoOperations mongoOperations;
+	private EaphoneQueryProperties properties = new EaphoneQueryProperties();
+	private TotalCountCache totalCountCache = new TotalCountCache(properties.getTotalCacheTtl());
+	private QueryGuard queryGuard = QueryGuard.NONE;
+
+	public ReactiveEaphoneQueryRepositoryImpl(MongoEntityInformation<T, ID> metadata,
+			ReactiveMongoOperations mongoOperations) {
+		super(metadata, mongoOperations);
+		this.entityInformation = metadata;
+		this.mongoOperations = mongoOperations;
+	}
+
+	void setProperties(EaphoneQueryProperties properties) {
+		this.properties = properties;
+		this.totalCountCache = new TotalCountCache(properties.getTotalCacheTtl());
+	}
+
+	/**
+	 * @param queryGuard limits of requests, checked before any query
+	 */
+	void setQueryGuard(QueryGuard queryGuard) {
+		this.queryGuard = queryGuard;
+	}
+
+	private Mono<Long> count(Query query) {
+		return this.mongoOperations.count(query, this.entityInformation.getJavaType());
+	}
+
+	/**
+	 * @param countMode how to count
+	 * @param preFilteringCriteria pre-filtering, may be <code>null</code>
+	 * @return total records, <code>-1</code> if not counted
+	 */
+	private Mono<Long> countTotal(CountMode countMode, Criteria preFilteringCriteria) {
+		switch (countMode) {
+		case NONE:
+			return Mono.just(-1L);
+		case CACHED_TOTAL:
+			final Object key = preFilteringCriteria == null ? TotalCountCache.ALL
+					: QueryUtils.totalKeyOf(preFilteringCriteria.getCriteriaObject());
+			if (key == null) {
+				return countTotal(preFilteringCriteria);
+			}
+			final OptionalLong cached = totalCountCache.peek(key);
+			if (cached.isPresent()) {
+				return Mono.just(cached.getAsLong());
+			}
+			return countTotal(preFilteringCriteria).doOnNext(total -> totalCountCache.put(key, total));
+		case EXACT:
+		case ESTIMATED:
+		default:
+			// estimatedCount() is already estimated, so ESTIMATED is the same as EXACT
+			return countTotal(preFilteringCriteria);
+		}
+	}
+
+	private Mono<Long> countTotal(Criteria preFilteringCriteria) {
+		return preFilteringCriteria == null ? this.mongoOperations.estimatedCount(this.entityInformation.getJavaType())
+				: count(query(preFilteringCriteria));
+	}
+
+	/**
+	 * @see EaphoneQueryRepositoryImpl#cursorOf
+	 */
+	private String cursorOf(QueryInput input, Pageable pageable, T entity) {
+		final List<Sort.Order> keys = KeysetCursor.keysOf(input.getOrders(), this.entityInformation.getIdAttribute());
+		final List<Sort.Order> fields = pageable.getSort().toList();
+		final DirectFieldAccessor accessor = new DirectFieldAccessor(entity);
+		List<Object> values = new ArrayList<>(keys.size());
+		for (int i = 0; i < keys.size(); i++) {
+			values.add(KeysetCursor.read(accessor, fields.get(i).getProperty()));
+		}
+		return KeysetCursor.encode(keys, values);
+	}
+
+	/**
+	 * Read one page of data without counting.
+	 *
+	 * @param q filter
+	 * @param p page and sort
+	 * @param lookAhead whether to read one more record after the page
+	 * @return content of the page
+	 */
+	private Mono<List<T>> findPage(Query q, Pageable p, boolean lookAhead) {
+		q.with(p);
+		if (lookAhead && p.getPageSize() < Integer.MAX_VALUE) {
+			q.limit(p.getPageSize() + 1);
+		}
+		return mongoOperations.find(q, this.entityInformation.getJavaType()).collectList();
+	}
+
+	@Override
+	public Mono<QueryOutput<T>> findAll(QueryInput input) {
+		return findAll(input, null, null);
+	}
+
+	@Override
+	public <View> Mono<QueryOutput<View>> findAll(QueryInput input, Function<T, View> converter) {
+		return findAll(input, null, null, converter);
+	}
+
+	@Override
+	public Mono<QueryOutput<T>> findAll(QueryInput input, Criteria additionalCriteria) {
+		return findAll(input, additionalCriteria, null);
+	}
+
+	@Override
+	public Mono<QueryOutput<T>> findAll(QueryInput input, Criteria additionalCriteria,
+			Criteria preFilteringCriteria) {
+		return Mono.defer(() -> {
+			queryGuard.check(input);
+			final CountMode countMode = input.getCount_mode() == null ? properties.getCountMode()
+					: input.getCount_mode();
+
+			final FilterCriteria where = QueryUtils.getFilter(this.entityInformation, input);
+			final boolean isFiltered = !where.isEmpty() || additionalCriteria != null;
+			final FilterCriteria filter = where.and(additionalCriteria, preFilteringCriteria);
+			final Query query = filter.toQuery();
+
+			final Pageable pageable = QueryUtils.getPageable(this.entityInformation, input);
+			final KeysetCursor cursor = KeysetCursor.of(input, this.entityInformation.getIdAttribute());
+			final Query pageQuery = QueryUtils.applySelect(this.entityInformation, input, cursor == null ? filter.toQuery()
+					: filter.and(QueryUtils.getCursorCriteria(this.entityInformation, cursor)).toQuery());
+			// without counting, or reading from a cursor, one more record tells whether there is a next page
+			final boolean lookAhead = countMode == CountMode.NONE || cursor != null;
+
+			final Mono<Long> total = countTotal(countMode, preFilteringCriteria).cache();
+			final Mono<Long> filtered;
+			if (countMode == CountMode.NONE) {
+				filtered = Mono.just(-1L);
+			} else if (!isFiltered && countMode == CountMode.EXACT) {
+				// same as the total count
+				filtered = total;
+			} else {
+				filtered = count(query);
+			}
+
+			return Mono.zip(total, filtered, findPage(pageQuery, pageable, lookAhead)).map(result -> {
+				final long recordsTotal = result.getT1();
+				if (recordsTotal == 0 && countMode == CountMode.EXACT) {
+					return new QueryOutput<T>();
+				}
+				QueryOutput<T> output = new QueryOutput<>();
+				output.setTotal(recordsTotal);
+
+				List<T> content = result.getT3();
+				if (lookAhead) {
+					output.setHas_more(content.size() > pageable.getPageSize());
+					if (output.getHas_more()) {
+						content = content.subList(0, pageable.getPageSize());
+					}
+				} else {
+					output.setHas_more(pageable.getOffset() + content.size() < result.getT2());
+				}
+				if (cursor != null && cursor.isBefore()) {
+					content = new ArrayList<>(content);
+					Collections.reverse(content);
+				}
+
+				if (!content.isEmpty()) {
+					output.setStart_cursor(cursorOf(input, pageable, content.get(0)));
+					output.setEnd_cursor(cursorOf(input, pageable, content.get(content.size() - 1)));
+				}
+
+				output.setDraw(input.getDraw());
+				output.setData(content);
+				output.setFiltered(result.getT2());
+				return output;
+			});
+		}).onErrorResume(e -> {
+			QueryOutput<T> output = new QueryOutput<>();
+			output.setDraw(input.getDraw());
+			output.setError(e.toString());
+			output.setFiltered(0L);
+			log.error("caught exception", e);
+			return Mono.just(output);
+		});
+	}
+
+	@Override
+	public <View> Mono<QueryOutput<View>> findAll(QueryInput input, Criteria additionalCrit,
+			Criteria preFilteringCrit, Function<T, View> converter) {
+		return findAll(input, additionalCrit, preFilteringCrit).map(raw -> Converter.convert(raw, converter));
+	}
+
+	@Override
+	public Mono<CountOutput> count(CountInput input) {
+		return count(input, null, null);
+	}
+
+	@Override
+	public Mono<CountOutput> count(CountInput input, Criteria additionalCriteria, Criteria preFilteringCriteria) {
+		return Mono.defer(() -> {
+			queryGuard.check(input);
+			final CountMode countMode = properties.getCountMode();
+			final FilterCriteria where = QueryUtils.getFilter(this.entityInformation, input);
+			final boolean isFiltered = !where.isEmpty() || additionalCriteria != null;
+			final Query query = where.and(additionalCriteria, preFilteringCriteria).toQuery();
+
+			final Mono<Long> total = countTotal(countMode, preFilteringCriteria).cache();
+			final Mono<Long> filtered = !isFiltered && countMode == CountMode.EXACT ? total : count(query);
+			return Mono.zip(total, filtered).map(result -> {
+				CountOutput output = new CountOutput();
+				output.setTotal(result.getT1());
+				if (result.getT1() != 0 || countMode != CountMode.EXACT) {
+					output.setFiltered(result.getT2());
+				}
+				return output;
+			});
+		}).onErrorResume(e -> {
+			CountOutput output = new CountOutput();
+			output.setError(e.toString());
+			output.setFiltered(0L);
+			log.error("caught exception", e);
+			return Mono.just(output);
+		});
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.eaphonetech.common.datatables.mongodb.repository;
+
+import java.io.Serializable;
+import java.util.function.Function;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import com.eaphonetech.common.datatables.model.mapping.CountInput;
+import com.eaphonetech.common.datatables.model.mapping.CountOutput;
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryOutput;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking variant of {@link MongoDBQueryRepository}, on
+ * {@link org.springframework.data.mongodb.core.ReactiveMongoOperations}. Counting and reading the page are done
+ * concurrently.
+ */
+@NoRepositoryBean
+public interface ReactiveMongoDBQueryRepository<T, ID extends Serializable> extends ReactiveMongoRepository<T, ID> {
+
+	/**
+	 * Returns the filtered list for the given {@link QueryInput}.
+	 *
+	 * @param input the {@link QueryInput} mapped from the Ajax request
+	 * @return a {@link QueryOutput}
+	 */
+	Mono<QueryOutput<T>> findAll(QueryInput input);
+
+	/**
+	 * Returns the filtered list for the given {@link QueryInput}.
+	 *
+	 * @param <View> generic
+	 * @param input the {@link QueryInput} mapped from the Ajax request
+	 * @param converter the {@link Function} to apply to the results of the query
+	 * @return a {@link QueryOutput}
+	 */
+	<View> Mono<QueryOutput<View>> findAll(QueryInput input, Function<T, View> converter);
+
+	/**
+	 * Returns the filtered list for the given {@link QueryInput}.
+	 *
+	 * @param input the {@link QueryInput} mapped from the Ajax request
+	 * @param additionalCriteria an additional {@link Criteria} to apply to the query
+	 *            (with an "AND" clause)
+	 * @return a {@link QueryOutput}
+	 */
+	Mono<QueryOutput<T>> findAll(QueryInput input, Criteria additionalCriteria);
+
+	/**
+	 * Returns the filtered list for the given {@link QueryInput}.
+	 *
+	 * @param input the {@link QueryInput} mapped from the Ajax request
+	 * @param additionalCriteria an additional {@link Criteria} to apply to the query
+	 *            (with an "AND" clause)
+	 * @param preFilteringCriteria a pre-filtering {@link Criteria} to apply to the query
+	 *            (with an "AND" clause)
+	 * @return a {@link QueryOutput}
+	 */
+	Mono<QueryOutput<T>> findAll(QueryInput input, Criteria additionalCriteria, Criteria preFilteringCriteria);
+
+	/**
+	 * Find with type conversion
+	 * @param <View> generic
+	 * @param input the {@link QueryInput} mapped from the Ajax request
+	 * @param additionalCrit an additional {@link Criteria} to apply to the query
+	 * @param preFilteringCrit a pre-filtering {@link Criteria} to apply to the query
+	 * @param converter the {@link Function} to apply to the results of the query
+	 * @return a {@link QueryOutput}
+	 */
+	<View> Mono<QueryOutput<View>> findAll(QueryInput input, Criteria additionalCrit, Criteria preFilteringCrit,
+			Function<T, View> converter);
+
+	/**
+	 * Returns the filtered count for the given {@link CountInput}.
+	 *
+	 * @param input the {@link CountInput} mapped from the Ajax request
+	 * @return a {@link CountOutput}
+	 */
+	Mono<CountOutput> count(CountInput input);
+
+	/**
+	 * Returns the filtered count for the given {@link CountInput}.
+	 *
+	 * @param input the {@link CountInput} mapped from the Ajax request
+	 * @param additionalCriteria an additional {@link Criteria} to apply to the query
+	 *            (with an "AND" clause)
+	 * @param preFilteringCriteria a pre-filtering {@link Criteria} to apply to the query
+	 *            (with an "AND" clause)
+	 * @return a {@link CountOutput}
+	 */
+	Mono<CountOutput> count(CountInput input, Criteria additionalCriteria, Criteria preFilteringCriteria);
+}
@@ -0,0 +1,131 @@
+package com.eaphonetech.common.datatables.mongodb.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.repository.support.MappingMongoEntityInformation;
+
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryOrder;
+import com.eaphonetech.common.datatables.model.mapping.QueryOutput;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+
+public class EaphoneQueryRepositoryImplTest {
+
+	static class Order {
+		@Id
+		private String id;
+		private String status;
+		private int amount;
+		@Field("cust")
+		private Customer customer;
+
+		static Order of(String status, int amount, String customer) {
+			Order order = new Order();
+			order.status = status;
+			order.amount = amount;
+			order.customer = new Customer();
+			order.customer.name = customer;
+			return order;
+		}
+	}
+
+	static class Customer {
+		private String name;
+	}
+
+	public record CustomerName(String name) {
+	}
+
+	public record OrderRow(String id, int amount, CustomerName customer) {
+	}
+
+	public interface OrderView {
+		String getStatus();
+
+		CustomerView getCustomer();
+
+		interface CustomerView {
+			String getName();
+		}
+	}
+
+	private static MongoServer server;
+	private static MongoClient client;
+	private static EaphoneQueryRepositoryImpl<Order, String> orders;
+
+	@BeforeAll
+	@SuppressWarnings("unchecked")
+	public static void setUp() {
+		server = new MongoServer(new MemoryBackend());
+		client = MongoClients.create(server.bindAndGetConnectionString());
+		MongoTemplate template = new MongoTemplate(client, "test");
+		template.insertAll(Arrays.asList(Order.of("paid", 30, "Alice"), Order.of("open", 10, "Bob"),
+				Order.of("paid", 20, "Carol")));
+		orders = new EaphoneQueryRepositoryImpl<>(new MappingMongoEntityInformation<>(
+				(MongoPersistentEntity<Order>) template.getConverter().getMappingContext()
+						.getRequiredPersistentEntity(Order.class)),
+				template);
+	}
+
+	@AfterAll
+	public static void tearDown() {
+		client.close();
+		server.shutdown();
+	}
+
+	private static QueryInput byAmount(int limit) {
+		QueryOrder order = new QueryOrder();
+		order.getValues().put("amount", QueryOrder.OrderValue.asc);
+		QueryInput input = new QueryInput();
+		input.setOrder_by(Arrays.asList(order));
+		input.setLimit(limit);
+		return input;
+	}
+
+	@Test
+	public void testRecordProjection() {
+		QueryOutput<Order> entities = orders.findAll(byAmount(2));
+		QueryOutput<OrderRow> rows = orders.findAll(byAmount(2), OrderRow.class);
+		assertNull(rows.getError());
+		assertEquals(3L, rows.getTotal());
+		assertEquals(Arrays.asList(new OrderRow(entities.getData().get(0).id, 10, new CustomerName("Bob")),
+				new OrderRow(entities.getData().get(1).id, 20, new CustomerName("Carol"))), rows.getData());
+		assertTrue(rows.getHas_more());
+		// read from the documents, as from the entities
+		assertEquals(entities.getStart_cursor(), rows.getStart_cursor());
+		assertEquals(entities.getEnd_cursor(), rows.getEnd_cursor());
+
+		QueryInput next = byAmount(2);
+		next.setAfter(rows.getEnd_cursor());
+		QueryOutput<OrderRow> last = orders.findAll(next, OrderRow.class);
+		assertEquals(Arrays.asList(30), last.getData().stream().map(OrderRow::amount).collect(Collectors.toList()));
+		assertFalse(last.getHas_more());
+	}
+
+	@Test
+	public void testInterfaceProjection() {
+		QueryOutput<OrderView> views = orders.findAll(byAmount(10), OrderView.class);
+		assertNull(views.getError());
+		List<String> read = views.getData().stream().map(view -> view.getStatus() + " " + view.getCustomer().getName())
+				.collect(Collectors.toList());
+		assertEquals(Arrays.asList("open Bob", "paid Carol", "paid Alice"), read);
+	}
+}
@@ -0,0 +1,72 @@
+package com.eaphonetech.common.datatables.mongodb.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.eaphonetech.common.datatables.model.mapping.ColumnType;
+import com.eaphonetech.common.datatables.mongodb.repository.FieldResolver.ResolvedField;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+public class FieldResolverTest {
+
+	static class Price {
+		@JsonProperty("v")
+		private double value;
+	}
+
+	static class Item {
+		private String name;
+	}
+
+	@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+	static class Customer {
+		private String firstName;
+	}
+
+	static class Order {
+		private Customer customer;
+		private String orderNumber;
+		private Price price;
+		private List<Item> items;
+	}
+
+	@Test
+	public void testResolve() {
+		ResolvedField f = FieldResolver.resolve(Order.class, "orderNumber");
+		assertEquals("orderNumber", f.getName());
+		assertEquals(ColumnType.STRING, f.getType());
+
+		f = FieldResolver.resolve(Order.class, "price.v");
+		assertEquals("price.value", f.getName());
+		assertEquals(ColumnType.DOUBLE, f.getType());
+
+		f = FieldResolver.resolve(Order.class, "items.name");
+		assertEquals("items.name", f.getName());
+		assertEquals(ColumnType.STRING, f.getType());
+
+		assertNull(FieldResolver.resolve(Order.class, "unknown").getType());
+		assertNull(FieldResolver.resolve(Order.class, "price.unknown").getType());
+	}
+
+	@Test
+	public void testJsonNaming() {
+		ResolvedField f = FieldResolver.resolve(Order.class, "customer.first_name");
+		assertEquals("customer.firstName", f.getName());
+		assertEquals(ColumnType.STRING, f.getType());
+		assertEquals("customer.firstName", FieldResolver.resolve(Order.class, "customer.firstName").getName());
+	}
+
+	@Test
+	public void testCached() {
+		FieldResolver.prewarm(Order.class);
+		assertSame(FieldResolver.resolve(Order.class, "price.value"), FieldResolver.resolve(Order.class, "price.value"));
+		assertSame(FieldResolver.resolve(Order.class, "price.v"), FieldResolver.resolve(Order.class, "price.v"));
+	}
+}
@@ -0,0 +1,158 @@
+package com.eaphonetech.common.datatables.mongodb.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryOrder;
+import com.eaphonetech.common.datatables.mongodb.repository.IndexPolicy.Action;
+import com.eaphonetech.common.datatables.mongodb.repository.IndexPolicy.Coverage;
+
+public class IndexAdvisorTest {
+
+	static class Order {
+		private String id;
+		private String status;
+		private Date createdAt;
+		private double amount;
+		private Customer customer;
+	}
+
+	static class Customer {
+		private String name;
+	}
+
+	private static final MongoMappingContext MAPPING = new MongoMappingContext();
+	private static final QueryMapper MAPPER = new QueryMapper(
+			new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, MAPPING));
+	private static final MongoPersistentEntity<?> ORDERS = MAPPING.getRequiredPersistentEntity(Order.class);
+
+	@IndexPolicy(action = Action.REJECT, minimum = Coverage.PARTIAL)
+	private interface Rejecting {
+	}
+
+	@IndexPolicy(action = Action.HINT)
+	private interface Hinting {
+	}
+
+	private static IndexInfo index(String name, String... keys) {
+		IndexField[] fields = Arrays.stream(keys).map(key -> IndexField.create(key, Direction.ASC))
+				.toArray(IndexField[]::new);
+		return new IndexInfo(Arrays.asList(fields), name, false, false, null);
+	}
+
+	private static final List<IndexInfo> INDEXES = List.of(index("_id_", "_id"),
+			index("status_1_createdAt_1", "status", "createdAt"), index("customer.name_1", "customer.name"));
+
+	private static Coverage coverage(Criteria criteria) {
+		return IndexAdvisor.advise(new Query(criteria).getQueryObject(), null, INDEXES).coverage();
+	}
+
+	@Test
+	public void testCoverage() {
+		assertEquals(Coverage.COVERED, coverage(where("status").is("paid")));
+		assertEquals(Coverage.COVERED, coverage(where("status").in("paid", "new").and("createdAt").gte(1).lt(9)));
+		assertEquals(Coverage.COVERED, coverage(where("customer.name").regex(Pattern.compile("^ab"))));
+		assertEquals(Coverage.COVERED,
+				coverage(new Criteria().andOperator(where("status").is("paid"), where("createdAt").gt(1))));
+
+		// the remaining filters are applied to the documents found
+		assertEquals(Coverage.PARTIAL, coverage(where("status").is("paid").and("amount").gt(1)));
+		assertEquals(Coverage.PARTIAL, coverage(where("status").is("paid").and("createdAt").ne(1)));
+
+		// not the leading field, or not answered with index bounds
+		assertEquals(Coverage.UNINDEXED, coverage(where("createdAt").gt(1)));
+		assertEquals(Coverage.UNINDEXED, coverage(where("status").ne("paid")));
+		assertEquals(Coverage.UNINDEXED,
+				coverage(where("customer.name").regex(Pattern.compile("^ab", Pattern.CASE_INSENSITIVE))));
+		assertEquals(Coverage.UNINDEXED, coverage(where("customer.name").regex(Pattern.compile(".*ab"))));
+		assertEquals(Coverage.UNINDEXED,
+				coverage(new Criteria().orOperator(where("status").is("paid"), where("amount").is(1))));
+	}
+
+	@Test
+	public void testSortCoverage() {
+		assertEquals(Coverage.COVERED, IndexAdvisor.advise(new Document(), null, INDEXES).coverage());
+		assertEquals(Coverage.COVERED, IndexAdvisor
+				.advise(new Document(), Sort.by(Direction.DESC, "status", "createdAt"), INDEXES).coverage());
+		assertEquals(Coverage.UNINDEXED, IndexAdvisor
+				.advise(new Document(), Sort.by(Sort.Order.asc("status"), Sort.Order.desc("createdAt")), INDEXES)
+				.coverage());
+		assertEquals(Coverage.UNINDEXED, IndexAdvisor.advise(new Document(), Sort.by("amount"), INDEXES).coverage());
+	}
+
+	@Test
+	public void testReject() {
+		IndexAdvisor advisor = new IndexAdvisor("orders", Rejecting.class.getAnnotation(IndexPolicy.class),
+				() -> INDEXES, MAPPER, ORDERS);
+		assertNull(advisor.apply(new Query(where("status").is("paid").and("amount").gt(1)), null));
+		assertThrows(IllegalArgumentException.class, () -> advisor.apply(new Query(where("amount").gt(1)), null));
+	}
+
+	@Test
+	public void testHint() {
+		AtomicInteger reads = new AtomicInteger();
+		IndexAdvisor advisor = new IndexAdvisor("orders", Hinting.class.getAnnotation(IndexPolicy.class), () -> {
+			reads.incrementAndGet();
+			return INDEXES;
+		}, MAPPER, ORDERS);
+		Query query = new Query(where("status").is("paid").and("amount").gt(1));
+		assertEquals("status_1_createdAt_1", advisor.apply(query, null));
+		assertEquals("status_1_createdAt_1", query.getHint());
+		assertNull(advisor.apply(new Query(where("amount").gt(1)), null));
+		// indexes are cached
+		assertEquals(1, reads.get());
+	}
+
+	@Test
+	public void testUnreadableIndexes() {
+		IndexAdvisor advisor = new IndexAdvisor("orders", Rejecting.class.getAnnotation(IndexPolicy.class), () -> {
+			throw new IllegalStateException("not authorized");
+		}, MAPPER, ORDERS);
+		assertNull(advisor.apply(new Query(where("amount").gt(1)), null));
+	}
+
+	@Test
+	public void testIdMapped() {
+		IndexAdvisor advisor = new IndexAdvisor("orders", Rejecting.class.getAnnotation(IndexPolicy.class),
+				() -> INDEXES, MAPPER, ORDERS);
+		// the id property is stored as _id
+		assertNull(advisor.apply(new Query(where("id").is("5f1d7f3e9d3b2a0001a1b2c3")), null));
+		assertNull(advisor.apply(new Query(where("id").in("a", "b")), null));
+
+		// pages are ordered by id at last
+		QueryInput input = new QueryInput();
+		input.setLimit(10);
+		Sort sort = QueryUtils.getPageable(Order.class, input, "id").getSort();
+		assertEquals(Sort.by("id"), sort);
+		assertNull(advisor.apply(new Query(), sort));
+
+		QueryOrder order = new QueryOrder();
+		order.getValues().put("amount", QueryOrder.OrderValue.desc);
+		input.setOrder_by(Arrays.asList(order));
+		Sort byAmount = QueryUtils.getPageable(Order.class, input, "id").getSort();
+		assertThrows(IllegalArgumentException.class, () -> advisor.apply(new Query(), byAmount));
+	}
+}
@@ -1,13 +1,51 @@
 package com.eaphonetech.common.datatables.mongodb.repository;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.lookup;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.project;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.sort;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+import org.bson.Document;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.repository.query.MongoEntityInformation;
+import org.springframework.data.mongodb.repository.support.MappingMongoEntityInformation;
+
+import com.eaphonetech.common.datatables.model.mapping.CountInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
 
 public class QueryUtilsTest {
 
+	static class Order {
+		private String id;
+		private String status;
+		private String note;
+		private List<String> tags;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static final MongoEntityInformation<Order, String> ORDERS = new MappingMongoEntityInformation<>(
+			(MongoPersistentEntity<Order>) new MongoMappingContext().getRequiredPersistentEntity(Order.class));
+
 	private void testGetLikeFilterPattern(String like, String expected) {
 		Pattern converted = QueryUtils.getLikeFilterPattern(like);
 		String actual = converted == null ? null : converted.pattern();
@@ -24,6 +62,134 @@ public class QueryUtilsTest {
 		testGetLikeFilterPattern("%bcd%", ".*bcd.*");
 		testGetLikeFilterPattern(".+", "^\\.\\+$");
 		testGetLikeFilterPattern("9.5%", "^9\\.5.*");
+		testGetLikeFilterPattern("$1 (a|b)%", "^\\$1 \\(a\\|b\\).*");
+		testGetLikeFilterPattern("{2}\\", "^\\{2\\}\\\\$");
+	}
+
+	@Test
+	public void testLikeFilterPatternCaseSensitivity() {
+		// no cased letters: case-sensitive, so that an index can be used
+		assertEquals(0, QueryUtils.getLikeFilterPattern("2023-%").flags());
+		assertEquals(0, QueryUtils.getLikeFilterPattern("张三%").flags());
+		assertEquals(Pattern.CASE_INSENSITIVE, QueryUtils.getLikeFilterPattern("o2023%").flags());
+		assertTrue(QueryUtils.getLikeFilterPattern("%ab%").matcher("xABy").matches());
+	}
+
+	@Test
+	public void testLikeFilterPatternCached() {
+		assertSame(QueryUtils.getLikeFilterPattern("abc%"), QueryUtils.getLikeFilterPattern("abc%"));
 	}
 
+	@Test
+	public void testCountInputCompiledAsQueryInput() {
+		QueryFilter status = new QueryFilter();
+		status.set_in(Arrays.asList(null, "paid"));
+		QueryFilter note = new QueryFilter();
+		note.set_isvoid(true);
+		QueryFilter tags = new QueryFilter();
+		tags.set_all(Arrays.asList((Object) "a", "b"));
+
+		QueryInput input = new QueryInput();
+		input.getWhere().put("status", status);
+		input.getWhere().put("note", note);
+		input.getWhere().put("tags", tags);
+		CountInput count = new CountInput();
+		count.putAll(input.getWhere());
+
+		final Document query = QueryUtils.getQuery(ORDERS, input).getQueryObject();
+		assertEquals(query, QueryUtils.getQuery(ORDERS, count).getQueryObject());
+		// both $or of status and note, which cannot share the query document
+		assertEquals(2, query.getList("$and", Document.class).size());
+		assertEquals(new Document("$all", Arrays.asList("a", "b")), query.get("tags"));
+	}
+
+	@Test
+	public void testFilterIsNotModified() {
+		QueryFilter status = new QueryFilter();
+		status.set_eq("paid");
+		QueryInput input = new QueryInput();
+		input.getWhere().put("status", status);
+
+		final FilterCriteria filter = QueryUtils.getFilter(ORDERS, input);
+		final Document page = filter.and(QueryUtils.getCriteria(ORDERS, new CountInput())).toQuery().getQueryObject();
+		assertEquals(new Document("status", "paid"), filter.toQuery().getQueryObject());
+		assertEquals("paid", page.get("status"));
+		assertTrue(QueryUtils.getFilter(ORDERS, new CountInput()).isEmpty());
+	}
+
+	private static List<String> stages(QueryInput input, AggregationOperation... operations) {
+		final TypedAggregation<Order> aggregation = QueryUtils.makeFacetAggregation(ORDERS, input,
+				QueryUtils.getPageable(Order.class, input, null), operations);
+		return aggregation.toPipeline(Aggregation.DEFAULT_CONTEXT).stream().map(d -> d.keySet().iterator().next())
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void testFiltersMovedAheadOfAggregation() {
+		QueryFilter status = new QueryFilter();
+		status.set_eq("paid");
+		QueryInput input = new QueryInput();
+		input.getWhere().put("status", status);
+
+		assertEquals(Arrays.asList("$match", "$lookup", "$sort", "$facet"),
+				stages(input, lookup("users", "userId", "_id", "user"), sort(Sort.by("note"))));
+		// the filtered field is written, or the documents are reshaped
+		assertEquals(Arrays.asList("$lookup", "$match", "$facet"),
+				stages(input, lookup("users", "userId", "_id", "status")));
+		assertEquals(Arrays.asList("$project", "$match", "$sort", "$facet"),
+				stages(input, project("status", "note"), sort(Sort.by("note"))));
+		assertEquals(Arrays.asList("$facet"), stages(new QueryInput()));
+	}
+
+	@Test
+	public void testCountAndPageInOneFacet() {
+		QueryInput input = new QueryInput();
+		input.setOffset(20);
+		input.setLimit(10);
+		final Document facet = QueryUtils.makeFacetAggregation(ORDERS, input,
+				QueryUtils.getPageable(Order.class, input, null), null).toPipeline(Aggregation.DEFAULT_CONTEXT).get(0)
+				.get("$facet", Document.class);
+		assertEquals(1, facet.getList(QueryUtils.FACET_COUNT, Document.class).size());
+		assertEquals(Arrays.asList(new Document("$skip", 20L), new Document("$limit", 10L)),
+				facet.getList(QueryUtils.FACET_PAGE, Document.class));
+	}
+
+	@Test
+	public void testTotalCountedWithoutFilters() {
+		QueryFilter status = new QueryFilter();
+		status.set_eq("paid");
+		QueryInput input = new QueryInput();
+		input.getWhere().put("status", status);
+		final List<Document> pipeline = QueryUtils.makeFacetAggregation(ORDERS, input,
+				QueryUtils.getPageable(Order.class, input, null), new AggregationOperation[] { sort(Sort.by("note")) },
+				true).toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+		// the filters cannot be moved ahead of the facets
+		assertEquals(2, pipeline.size());
+		final Document facet = pipeline.get(1).get("$facet", Document.class);
+		final Document match = new Document("$match", new Document("status", "paid"));
+		assertEquals(match, facet.getList(QueryUtils.FACET_COUNT, Document.class).get(0));
+		assertEquals(match, facet.getList(QueryUtils.FACET_PAGE, Document.class).get(0));
+		assertEquals(facet.getList(QueryUtils.FACET_COUNT, Document.class).get(1),
+				facet.getList(QueryUtils.FACET_TOTAL, Document.class).get(0));
+		assertEquals(1, facet.getList(QueryUtils.FACET_TOTAL, Document.class).size());
+	}
+
+	@Test
+	public void testTotalKeyOfTypedPipeline() {
+		final MongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE,
+				new MongoMappingContext());
+		final AggregationOperation[] operations = { match(where("id").is("1").and("note").regex("^a")) };
+
+		// patterns have no equality, their JSON has
+		final String key = QueryUtils.totalKeyOf(Order.class, operations, converter);
+		assertEquals(key, QueryUtils.totalKeyOf(Order.class,
+				new AggregationOperation[] { match(where("id").is("1").and("note").regex("^a")) }, converter));
+		// fields are mapped like in the aggregation
+		assertTrue(key.contains("\"_id\""));
+		// no key, the facet counts the total
+		assertNull(QueryUtils.totalKeyOf(Order.class, new AggregationOperation[] { context -> {
+			throw new IllegalStateException();
+		} }, converter));
+	}
 }
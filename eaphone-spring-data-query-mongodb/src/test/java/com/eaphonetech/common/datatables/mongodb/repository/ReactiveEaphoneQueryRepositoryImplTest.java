@@ -0,0 +1,187 @@
+package com.eaphonetech.common.datatables.mongodb.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.repository.support.MappingMongoEntityInformation;
+
+import com.eaphonetech.common.datatables.model.mapping.CountInput;
+import com.eaphonetech.common.datatables.model.mapping.CountMode;
+import com.eaphonetech.common.datatables.model.mapping.CountOutput;
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryOrder;
+import com.eaphonetech.common.datatables.model.mapping.QueryOutput;
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import reactor.core.publisher.Flux;
+
+public class ReactiveEaphoneQueryRepositoryImplTest {
+
+	static class Order {
+		@Id
+		private String id;
+		private String status;
+		private int amount;
+
+		static Order of(String status, int amount) {
+			Order order = new Order();
+			order.status = status;
+			order.amount = amount;
+			return order;
+		}
+	}
+
+	private static MongoServer server;
+	private static MongoClient client;
+	private static ReactiveEaphoneQueryRepositoryImpl<Order, String> orders;
+
+	@BeforeAll
+	@SuppressWarnings("unchecked")
+	public static void setUp() {
+		server = new MongoServer(new MemoryBackend());
+		client = MongoClients.create(server.bindAndGetConnectionString());
+		ReactiveMongoTemplate template = new ReactiveMongoTemplate(client, "test");
+		Flux.just(Order.of("paid", 30), Order.of("open", 10), Order.of("paid", 20), Order.of("open", 50),
+				Order.of("paid", 40)).concatMap(template::insert).blockLast();
+		orders = new ReactiveEaphoneQueryRepositoryImpl<>(new MappingMongoEntityInformation<>(
+				(MongoPersistentEntity<Order>) template.getConverter().getMappingContext()
+						.getRequiredPersistentEntity(Order.class)),
+				template);
+	}
+
+	@AfterAll
+	public static void tearDown() {
+		client.close();
+		server.shutdown();
+	}
+
+	private static QueryInput byAmount(int limit, CountMode countMode) {
+		QueryOrder order = new QueryOrder();
+		order.getValues().put("amount", QueryOrder.OrderValue.asc);
+		QueryInput input = new QueryInput();
+		input.setOrder_by(Arrays.asList(order));
+		input.setLimit(limit);
+		input.setCount_mode(countMode);
+		return input;
+	}
+
+	private static QueryFilter paid() {
+		QueryFilter status = new QueryFilter();
+		status.set_eq("paid");
+		return status;
+	}
+
+	private static List<Integer> amounts(QueryOutput<Order> output) {
+		return output.getData().stream().map(order -> order.amount).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testExactCount() {
+		QueryOutput<Order> first = orders.findAll(byAmount(2, CountMode.EXACT)).block();
+		assertNull(first.getError());
+		assertEquals(Arrays.asList(10, 20), amounts(first));
+		assertEquals(5L, first.getTotal());
+		// the total, counted once
+		assertEquals(5L, first.getFiltered());
+		assertTrue(first.getHas_more());
+
+		QueryInput filtered = byAmount(2, CountMode.EXACT);
+		filtered.getWhere().put("status", paid());
+		QueryOutput<Order> page = orders.findAll(filtered).block();
+		assertEquals(Arrays.asList(20, 30), amounts(page));
+		assertEquals(5L, page.getTotal());
+		assertEquals(3L, page.getFiltered());
+		assertTrue(page.getHas_more());
+
+		filtered.setOffset(2);
+		assertFalse(orders.findAll(filtered).block().getHas_more());
+	}
+
+	@Test
+	public void testNoCount() {
+		QueryOutput<Order> first = orders.findAll(byAmount(2, CountMode.NONE)).block();
+		assertEquals(Arrays.asList(10, 20), amounts(first));
+		assertEquals(-1L, first.getTotal());
+		assertEquals(-1L, first.getFiltered());
+		// read ahead
+		assertTrue(first.getHas_more());
+
+		QueryOutput<Order> all = orders.findAll(byAmount(5, CountMode.NONE)).block();
+		assertEquals(5, all.getData().size());
+		assertFalse(all.getHas_more());
+	}
+
+	@Test
+	public void testCursors() {
+		QueryOutput<Order> first = orders.findAll(byAmount(2, CountMode.NONE)).block();
+
+		QueryInput after = byAmount(2, CountMode.NONE);
+		after.setAfter(first.getEnd_cursor());
+		QueryOutput<Order> second = orders.findAll(after).block();
+		assertEquals(Arrays.asList(30, 40), amounts(second));
+		assertTrue(second.getHas_more());
+
+		after.setAfter(second.getEnd_cursor());
+		QueryOutput<Order> last = orders.findAll(after).block();
+		assertEquals(Arrays.asList(50), amounts(last));
+		assertFalse(last.getHas_more());
+
+		// read backwards, returned in order
+		QueryInput before = byAmount(2, CountMode.NONE);
+		before.setBefore(second.getStart_cursor());
+		QueryOutput<Order> previous = orders.findAll(before).block();
+		assertEquals(Arrays.asList(10, 20), amounts(previous));
+		assertFalse(previous.getHas_more());
+		assertEquals(first.getStart_cursor(), previous.getStart_cursor());
+		assertEquals(first.getEnd_cursor(), previous.getEnd_cursor());
+	}
+
+	@Test
+	public void testCount() {
+		CountInput input = new CountInput();
+		input.put("status", paid());
+		CountOutput output = orders.count(input).block();
+		assertNull(output.getError());
+		assertEquals(5L, output.getTotal());
+		assertEquals(3L, output.getFiltered());
+
+		CountOutput all = orders.count(new CountInput()).block();
+		assertEquals(5L, all.getTotal());
+		assertEquals(5L, all.getFiltered());
+	}
+
+	@Test
+	public void testError() {
+		QueryInput input = byAmount(2, CountMode.EXACT);
+		input.setDraw(7);
+		input.setAfter("not a cursor");
+		QueryOutput<Order> output = orders.findAll(input).block();
+		assertNotNull(output.getError());
+		assertEquals(7, output.getDraw());
+		assertEquals(0L, output.getFiltered());
+		assertTrue(output.getData().isEmpty());
+
+		CountInput count = new CountInput();
+		count.put("missing", paid());
+		CountOutput counted = orders.count(count).block();
+		assertNotNull(counted.getError());
+		assertEquals(0L, counted.getFiltered());
+	}
+}
@@ -1,16 +1,28 @@
 package com.eaphonetech.common.datatables.samples.jpa.controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.eaphonetech.common.datatables.jpa.repository.FetchPlan;
 import com.eaphonetech.common.datatables.model.mapping.CountInput;
 import com.eaphonetech.common.datatables.model.mapping.CountOutput;
 import com.eaphonetech.common.datatables.model.mapping.QueryInput;
 import com.eaphonetech.common.datatables.model.mapping.QueryOutput;
 import com.eaphonetech.common.datatables.samples.jpa.entities.Order;
 import com.eaphonetech.common.datatables.samples.jpa.repo.OrderRepository;
+import com.eaphonetech.common.datatables.util.StreamingExporter;
 import com.fasterxml.jackson.annotation.JsonView;
 
 import jakarta.annotation.PostConstruct;
@@ -24,10 +36,14 @@ public class OrderRestController {
     @Autowired
     private OrderRepository repo;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @JsonView(QueryOutput.View.class)
     @PostMapping("/data/orders/search")
     public QueryOutput<Order> getOrdersByPost(@Valid @RequestBody QueryInput input) {
-        return repo.findAll(input);
+        // the response renders users and items, load them with the page instead of one query per order
+        return repo.findAll(input, null, null, FetchPlan.attributes("user", "items"));
     }
 
     @PostMapping("/data/orders/count")
@@ -35,6 +51,36 @@ public class OrderRestController {
         return repo.count(input);
     }
 
+    @PostMapping("/data/orders/facets")
+    public Map<String, CountOutput> countFacets(@RequestBody Map<String, CountInput> inputs) {
+        return repo.countFacets(inputs);
+    }
+
+    /**
+     * Export all matching orders as CSV, without loading them into memory at once
+     */
+    @PostMapping("/data/orders/export")
+    public ResponseEntity<StreamingResponseBody> export(@Valid @RequestBody QueryInput input) {
+        LinkedHashMap<String, Function<Order, ?>> columns = new LinkedHashMap<>();
+        columns.put("id", Order::getId);
+        columns.put("orderDate", Order::getOrderDate);
+        columns.put("orderNumber", Order::getOrderNumber);
+        columns.put("isValid", Order::getIsValid);
+        columns.put("amount", Order::getAmount);
+        columns.put("price", Order::getPrice);
+
+        // the stream must be consumed inside a (read-only) transaction
+        StreamingResponseBody body = out -> transactionTemplate.executeWithoutResult(status -> {
+            status.setRollbackOnly();
+            try {
+                StreamingExporter.csv(() -> repo.streamAll(input), columns).writeTo(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(new MediaType("text", "csv")).body(body);
+    }
+
     /**
      * Insert some data to h2
      */
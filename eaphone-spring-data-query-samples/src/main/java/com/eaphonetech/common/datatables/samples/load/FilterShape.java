@@ -0,0 +1,137 @@
+package com.eaphonetech.common.datatables.samples.load;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import com.eaphonetech.common.datatables.model.mapping.filter.QueryFilter;
+
+/**
+ * Shapes of filters sent by {@link LoadHarness}, on fields of both sample <code>Order</code> entities. Values are
+ * random but follow the distribution of {@link LoadSeeder}, so that most requests match some rows.
+ */
+public enum FilterShape {
+	/**
+	 * one <code>_eq</code> on a string
+	 */
+	EQ {
+		@Override
+		void fill(Map<String, QueryFilter> where, String dateField, Random r) {
+			where.put("orderNumber", eq(orderNumber(r)));
+		}
+	},
+	/**
+	 * type-ahead: <code>_like</code> with a prefix
+	 */
+	PREFIX {
+		@Override
+		void fill(Map<String, QueryFilter> where, String dateField, Random r) {
+			where.put("orderNumber", like(String.format("O%03d%%", r.nextInt(1000))));
+		}
+	},
+	/**
+	 * <code>_like</code> anywhere in the value, which no index can serve
+	 */
+	CONTAINS {
+		@Override
+		void fill(Map<String, QueryFilter> where, String dateField, Random r) {
+			where.put("orderNumber", like(String.format("%%%03d%%", r.nextInt(1000))));
+		}
+	},
+	/**
+	 * ranges on a date and a number
+	 */
+	RANGE {
+		@Override
+		void fill(Map<String, QueryFilter> where, String dateField, Random r) {
+			where.put(dateField, dateRange(r));
+			QueryFilter price = new QueryFilter();
+			final int from = r.nextInt(200);
+			price.set_gte(from);
+			price.set_lt(from + 20);
+			where.put("price", price);
+		}
+	},
+	/**
+	 * <code>_in</code> with a few values
+	 */
+	IN {
+		@Override
+		void fill(Map<String, QueryFilter> where, String dateField, Random r) {
+			QueryFilter amount = new QueryFilter();
+			amount.set_in(Arrays.asList(r.nextInt(20), r.nextInt(20), r.nextInt(20)));
+			where.put("amount", amount);
+		}
+	},
+	/**
+	 * filter on the items of the order: a join with JPA, an embedded array with MongoDB
+	 */
+	NESTED {
+		@Override
+		void fill(Map<String, QueryFilter> where, String dateField, Random r) {
+			where.put("items.name", like(String.format("O%03d%%", r.nextInt(1000))));
+		}
+	},
+	/**
+	 * many filters at once, as sent by an advanced search form
+	 */
+	WIDE {
+		@Override
+		void fill(Map<String, QueryFilter> where, String dateField, Random r) {
+			where.put("isValid", eq(r.nextBoolean()));
+			where.put(dateField, dateRange(r));
+			QueryFilter price = new QueryFilter();
+			price.set_gte(r.nextInt(100));
+			where.put("price", price);
+			QueryFilter amount = new QueryFilter();
+			amount.set_gte(1);
+			where.put("amount", amount);
+			where.put("orderNumber", like(String.format("%%%d%%", r.nextInt(10))));
+			QueryFilter itemPrice = new QueryFilter();
+			itemPrice.set_gte(r.nextInt(50));
+			where.put("items.price", itemPrice);
+		}
+	};
+
+	/**
+	 * @param where where to put the filters
+	 * @param dateField name of the order date, which differs between the sample entities
+	 * @param r source of values
+	 */
+	abstract void fill(Map<String, QueryFilter> where, String dateField, Random r);
+
+	Map<String, QueryFilter> where(String dateField, Random r) {
+		Map<String, QueryFilter> where = new LinkedHashMap<>();
+		fill(where, dateField, r);
+		return where;
+	}
+
+	static String orderNumber(Random r) {
+		return String.format("O%05d", r.nextInt(99999));
+	}
+
+	private static QueryFilter eq(Object value) {
+		QueryFilter filter = new QueryFilter();
+		filter.set_eq(value);
+		return filter;
+	}
+
+	private static QueryFilter like(String value) {
+		QueryFilter filter = new QueryFilter();
+		filter.set_like(value);
+		return filter;
+	}
+
+	private static QueryFilter dateRange(Random r) {
+		Calendar c = Calendar.getInstance();
+		c.clear();
+		c.set(2005 + r.nextInt(10), r.nextInt(12), 1);
+		QueryFilter filter = new QueryFilter();
+		filter.set_gte(String.format("%tF", c));
+		c.add(Calendar.MONTH, 3);
+		filter.set_lt(String.format("%tF", c));
+		return filter;
+	}
+}
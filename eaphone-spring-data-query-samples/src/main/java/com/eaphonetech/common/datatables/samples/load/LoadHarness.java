@@ -0,0 +1,196 @@
+package com.eaphonetech.common.datatables.samples.load;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.eaphonetech.common.datatables.model.mapping.CountInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryInput;
+import com.eaphonetech.common.datatables.model.mapping.QueryOrder;
+import com.eaphonetech.common.datatables.model.mapping.QueryOrder.OrderValue;
+import com.eaphonetech.common.datatables.samples.jpa.JpaSampleApplication;
+import com.eaphonetech.common.datatables.samples.load.LoadReport.Samples;
+import com.eaphonetech.common.datatables.samples.load.LoadSettings.Backend;
+import com.eaphonetech.common.datatables.samples.mongo.MongodbSampleApplication;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * End-to-end load on the repositories of the samples: starts the JPA (H2) or MongoDB (mongo-java-server) sample
+ * without web server, seeds it with {@link LoadSettings#getRows()} orders, then calls <code>findAll</code> and
+ * <code>count</code> from many threads with a mix of {@link FilterShape}s, and prints latencies and allocations per
+ * request.
+ *
+ * <pre>
+ * mvn spring-boot:run -Dspring-boot.run.main-class=com.eaphonetech.common.datatables.samples.load.LoadHarness \
+ *     -Dspring-boot.run.arguments="--load.backend=mongo --load.rows=1000000 --load.threads=16"
+ * </pre>
+ */
+@Slf4j
+public class LoadHarness {
+
+	/**
+	 * the repository under load, whatever the backend
+	 */
+	private record Target(String dateField, Function<QueryInput, String> findAll,
+			Function<CountInput, String> count) {
+	}
+
+	private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	public static void main(String[] args) throws Exception {
+		final StandardEnvironment env = new StandardEnvironment();
+		env.getPropertySources().addFirst(new SimpleCommandLinePropertySource(args));
+		final LoadSettings settings = LoadSettings.from(env);
+
+		// the samples log every query, which would be measured as well; system properties override
+		// application.properties, command line arguments still override these
+		defaultProperty("spring.jpa.show-sql", "false");
+		defaultProperty("logging.level.com.eaphonetech.common.datatables", "INFO");
+		defaultProperty("logging.level.org.springframework.data.mongodb.core.MongoTemplate", "INFO");
+		defaultProperty("spring.devtools.restart.enabled", "false");
+		defaultProperty("spring.datasource.hikari.maximum-pool-size", String.valueOf(settings.getThreads() * 2));
+
+		final Class<?> application = settings.getBackend() == Backend.JPA ? JpaSampleApplication.class
+				: MongodbSampleApplication.class;
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(application)
+				.web(WebApplicationType.NONE).run(args)) {
+			final Target target = seed(context, settings);
+			final LoadReport report = run(target, settings);
+			report.print(System.out);
+			if (settings.getReport() != null) {
+				report.appendCsv(settings.getReport());
+			}
+		}
+	}
+
+	private static void defaultProperty(String key, String value) {
+		if (System.getProperty(key) == null) {
+			System.setProperty(key, value);
+		}
+	}
+
+	private static Target seed(ConfigurableApplicationContext context, LoadSettings settings) {
+		log.info("seeding {} orders into {}", settings.getRows(), settings.getBackend());
+		if (settings.getBackend() == Backend.JPA) {
+			LoadSeeder.seedJpa(context.getBean(JdbcTemplate.class), settings.getRows(), settings.getSeed());
+			final com.eaphonetech.common.datatables.samples.jpa.repo.OrderRepository repo = context
+					.getBean(com.eaphonetech.common.datatables.samples.jpa.repo.OrderRepository.class);
+			return new Target("orderDate", input -> repo.findAll(input).getError(),
+					input -> repo.count(input).getError());
+		} else {
+			LoadSeeder.seedMongo(context.getBean(MongoTemplate.class), settings.getRows(), settings.getSeed());
+			final com.eaphonetech.common.datatables.samples.mongo.repo.OrderRepository repo = context
+					.getBean(com.eaphonetech.common.datatables.samples.mongo.repo.OrderRepository.class);
+			return new Target("date", input -> repo.findAll(input).getError(), input -> repo.count(input).getError());
+		}
+	}
+
+	private static LoadReport run(Target target, LoadSettings settings) throws Exception {
+		final FilterShape[] shapes = weighted(settings.getMix());
+		final long warmupEnd = System.nanoTime() + settings.getWarmup().toNanos();
+		final long end = warmupEnd + settings.getDuration().toNanos();
+		log.info("warming up for {}, then recording for {} with {} threads", settings.getWarmup(),
+				settings.getDuration(), settings.getThreads());
+
+		final ExecutorService executor = Executors.newFixedThreadPool(settings.getThreads());
+		try {
+			final List<Future<Map<String, Samples>>> futures = new ArrayList<>();
+			for (int t = 0; t < settings.getThreads(); t++) {
+				final Random r = new Random(settings.getSeed() + t);
+				futures.add(executor.submit(() -> drive(target, settings, shapes, r, warmupEnd, end)));
+			}
+			final List<Map<String, Samples>> perThread = new ArrayList<>();
+			for (final Future<Map<String, Samples>> future : futures) {
+				perThread.add(future.get());
+			}
+			return new LoadReport(settings, Duration.ofNanos(end - warmupEnd), perThread);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Send requests until <code>end</code>, recording those after <code>warmupEnd</code>. Allocations are those of the
+	 * calling thread, so the count of <code>eaphone.query.parallel-count</code> is not included.
+	 */
+	private static Map<String, Samples> drive(Target target, LoadSettings settings, FilterShape[] shapes, Random r,
+			long warmupEnd, long end) {
+		final Map<String, Samples> samples = new HashMap<>();
+		long now = System.nanoTime();
+		while (now < end) {
+			final FilterShape shape = shapes[r.nextInt(shapes.length)];
+			final boolean count = r.nextDouble() < settings.getCountRatio();
+			final String operation;
+			final Runnable request;
+			if (count) {
+				final CountInput input = new CountInput();
+				input.putAll(shape.where(target.dateField(), r));
+				operation = "count";
+				request = () -> check(target.count().apply(input));
+			} else {
+				final QueryInput input = new QueryInput();
+				input.setWhere(shape.where(target.dateField(), r));
+				input.setOffset(settings.getLimit() * r.nextInt(5));
+				input.setLimit(settings.getLimit());
+				QueryOrder order = new QueryOrder();
+				order.getValues().put(target.dateField(), OrderValue.desc);
+				input.getOrder_by().add(order);
+				operation = "findAll";
+				request = () -> check(target.findAll().apply(input));
+			}
+
+			final long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+			final long start = System.nanoTime();
+			boolean error = false;
+			try {
+				request.run();
+			} catch (RuntimeException e) {
+				error = true;
+			}
+			now = System.nanoTime();
+			final long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+			if (start >= warmupEnd) {
+				samples.computeIfAbsent(operation + "/" + shape.name().toLowerCase(), k -> new Samples())
+						.add(now - start, allocated, error);
+			}
+		}
+		return samples;
+	}
+
+	private static void check(String error) {
+		if (error != null) {
+			throw new IllegalStateException(error);
+		}
+	}
+
+	/**
+	 * @return each shape repeated by its weight, to pick one with a single random index
+	 */
+	private static FilterShape[] weighted(Map<FilterShape, Integer> mix) {
+		final List<FilterShape> shapes = new ArrayList<>();
+		mix.forEach((shape, weight) -> {
+			for (int i = 0; i < weight; i++) {
+				shapes.add(shape);
+			}
+		});
+		return shapes.toArray(new FilterShape[0]);
+	}
+}
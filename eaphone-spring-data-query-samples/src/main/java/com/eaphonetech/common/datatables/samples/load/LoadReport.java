@@ -0,0 +1,139 @@
+package com.eaphonetech.common.datatables.samples.load;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencies and allocations recorded by {@link LoadHarness}, per operation and filter shape.
+ */
+public class LoadReport {
+
+	/**
+	 * Samples of one operation and filter shape, recorded by a single thread and merged at the end.
+	 */
+	static final class Samples {
+		private long[] latencies = new long[1024];
+		private int size;
+		private long allocated;
+		private long errors;
+
+		void add(long nanos, long bytes, boolean error) {
+			if (size == latencies.length) {
+				latencies = Arrays.copyOf(latencies, size * 2);
+			}
+			latencies[size++] = nanos;
+			allocated += bytes;
+			if (error) {
+				errors++;
+			}
+		}
+
+		void addAll(Samples other) {
+			if (size + other.size > latencies.length) {
+				latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, size + other.size));
+			}
+			System.arraycopy(other.latencies, 0, latencies, size, other.size);
+			size += other.size;
+			allocated += other.allocated;
+			errors += other.errors;
+		}
+	}
+
+	private static final String HEADER = "timestamp,backend,rows,threads,operation,shape,requests,errors,"
+			+ "throughput,p50_ms,p99_ms,max_ms,alloc_kb";
+
+	private final LoadSettings settings;
+	private final Duration elapsed;
+	private final Map<String, Samples> samples = new TreeMap<>();
+	private final Samples all = new Samples();
+
+	LoadReport(LoadSettings settings, Duration elapsed, List<Map<String, Samples>> perThread) {
+		this.settings = settings;
+		this.elapsed = elapsed;
+		for (final Map<String, Samples> thread : perThread) {
+			thread.forEach((key, value) -> {
+				samples.computeIfAbsent(key, k -> new Samples()).addAll(value);
+				all.addAll(value);
+			});
+		}
+	}
+
+	/**
+	 * one line per operation and filter shape, the last one for all requests
+	 */
+	private List<String[]> rows() {
+		final double seconds = elapsed.toNanos() / 1e9;
+		final List<String[]> rows = new ArrayList<>();
+		samples.forEach((key, s) -> {
+			final int slash = key.indexOf('/');
+			rows.add(row(key.substring(0, slash), key.substring(slash + 1), s, seconds));
+		});
+		if (all.size > 0) {
+			rows.add(row("all", "", all, seconds));
+		}
+		return rows;
+	}
+
+	private static String[] row(String operation, String shape, Samples s, double seconds) {
+		final long[] sorted = Arrays.copyOf(s.latencies, s.size);
+		Arrays.sort(sorted);
+		return new String[] {
+				operation,
+				shape,
+				String.valueOf(s.size),
+				String.valueOf(s.errors),
+				String.format(Locale.ROOT, "%.1f", s.size / seconds),
+				millis(percentile(sorted, 0.50)),
+				millis(percentile(sorted, 0.99)),
+				millis(sorted[sorted.length - 1]),
+				String.format(Locale.ROOT, "%.1f", s.allocated / 1024.0 / s.size) };
+	}
+
+	void print(PrintStream out) {
+		out.printf("%n%s, %d rows, %d threads, %s recorded%n", settings.getBackend(), settings.getRows(),
+				settings.getThreads(), elapsed);
+		final String format = "%-8s %-10s %10s %8s %10s %10s %10s %10s %12s%n";
+		out.printf(format, "op", "shape", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms", "alloc KB/req");
+		for (final String[] row : rows()) {
+			out.printf(format, (Object[]) row);
+		}
+	}
+
+	/**
+	 * Append the results to a CSV file, with a header if the file is new, so that runs can be compared.
+	 */
+	void appendCsv(String file) throws IOException {
+		final Path path = Paths.get(file);
+		final List<String> lines = new ArrayList<>();
+		if (!Files.exists(path)) {
+			lines.add(HEADER);
+		}
+		final String prefix = String.join(",", Instant.now().toString(), settings.getBackend().name().toLowerCase(),
+				String.valueOf(settings.getRows()), String.valueOf(settings.getThreads()));
+		for (final String[] row : rows()) {
+			lines.add(prefix + "," + String.join(",", row));
+		}
+		Files.write(path, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+}
@@ -0,0 +1,153 @@
+package com.eaphonetech.common.datatables.samples.load;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Inserts random orders in bulk, with the same distribution as <code>Order.random()</code> of the samples, but from a
+ * seeded {@link Random} so that runs are reproducible. Repositories are not used: saving millions of entities one by
+ * one would take longer than the run.
+ */
+@Slf4j
+@UtilityClass
+public class LoadSeeder {
+
+	private static final int BATCH = 10_000;
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	/**
+	 * seconds of the first generated <code>ObjectId</code>, 2020-09-13
+	 */
+	private static final int ID_EPOCH = 1_600_000_000;
+
+	/**
+	 * @param jdbc H2 of the JPA sample, tables already created by Hibernate
+	 * @param rows number of orders
+	 * @param seed seed of values
+	 */
+	public static void seedJpa(JdbcTemplate jdbc, int rows, long seed) {
+		final Random r = new Random(seed);
+		// explicit ids, after the sample data
+		final Long maxUser = jdbc.queryForObject("select coalesce(max(id), 0) from t_order_user", Long.class);
+		final Long maxOrder = jdbc.queryForObject("select coalesce(max(id), 0) from t_order", Long.class);
+		final long start = System.nanoTime();
+
+		for (int done = 0; done < rows; done += BATCH) {
+			final int size = Math.min(BATCH, rows - done);
+			final List<Object[]> users = new ArrayList<>(size);
+			final List<Object[]> orders = new ArrayList<>(size);
+			final List<Object[]> items = new ArrayList<>(size * 4);
+			for (int i = 0; i < size; i++) {
+				final long userId = maxUser + done + i + 1;
+				final long orderId = maxOrder + done + i + 1;
+				final Date date = date(r);
+				final String orderNumber = FilterShape.orderNumber(r);
+				final boolean valid = r.nextBoolean();
+
+				users.add(new Object[] { userId, "张三", date, r.nextInt(30), String.valueOf("ABO".charAt(r.nextInt(3))),
+						r.nextBoolean() });
+
+				int amount = 0;
+				double price = 0;
+				final int itemCount = r.nextInt(8);
+				for (int j = 0; j < itemCount; j++) {
+					final int itemAmount = r.nextInt(25);
+					final double itemPrice = Math.round(100.0 * 100.0 * r.nextDouble()) / 100.0;
+					items.add(new Object[] { orderNumber + "_" + j, itemAmount, itemPrice, date, valid, orderId });
+					amount += itemAmount;
+					price += itemPrice;
+				}
+				orders.add(new Object[] { orderId, date, orderNumber, valid, amount, price, userId });
+			}
+			jdbc.batchUpdate("insert into t_order_user (id, name, birthday, age, blood, is_valid) values (?, ?, ?, ?, ?, ?)",
+					users);
+			jdbc.batchUpdate("insert into t_order (id, order_date, order_number, is_valid, amount, price, user_id) "
+					+ "values (?, ?, ?, ?, ?, ?, ?)", orders);
+			jdbc.batchUpdate("insert into t_order_item (name, amount, price, date, is_valid, order_id) "
+					+ "values (?, ?, ?, ?, ?, ?)", items);
+			progress(done + size, rows, start);
+		}
+	}
+
+	/**
+	 * @param mongo mongo-java-server of the MongoDB sample
+	 * @param rows number of orders
+	 * @param seed seed of values
+	 */
+	public static void seedMongo(MongoTemplate mongo, int rows, long seed) {
+		final Random r = new Random(seed);
+		final MongoCollection<Document> collection = mongo.getCollection("order");
+		final InsertManyOptions options = new InsertManyOptions().ordered(false);
+		final long start = System.nanoTime();
+		long itemIds = 0;
+
+		for (int done = 0; done < rows; done += BATCH) {
+			final int size = Math.min(BATCH, rows - done);
+			final List<Document> orders = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				final Date date = date(r);
+				final String orderNumber = FilterShape.orderNumber(r);
+				final boolean valid = r.nextBoolean();
+
+				final int itemCount = r.nextInt(5);
+				final List<Document> items = new ArrayList<>(itemCount);
+				int preciseTotalPrice = 0;
+				for (int j = 0; j < itemCount; j++) {
+					final int preciseItemPrice = r.nextInt(10000);
+					items.add(new Document("id", objectId(itemIds++).toHexString())
+							.append("name", orderNumber + "_" + j)
+							.append("price", preciseItemPrice / 100.0)
+							.append("date", date)
+							.append("isValid", valid));
+					preciseTotalPrice += preciseItemPrice;
+				}
+				orders.add(new Document("_id", objectId(done + i))
+						.append("date", date)
+						.append("orderNumber", orderNumber)
+						.append("isValid", valid)
+						.append("amount", itemCount)
+						.append("price", preciseTotalPrice / 100.0)
+						.append("items", items));
+			}
+			collection.insertMany(orders, options);
+			progress(done + size, rows, start);
+		}
+	}
+
+	private static Date date(Random r) {
+		Calendar c = Calendar.getInstance(UTC);
+		c.set(2005 + r.nextInt(10), r.nextInt(12), r.nextInt(28), r.nextInt(24), r.nextInt(59), r.nextInt(59));
+		c.clear(Calendar.MILLISECOND);
+		return c.getTime();
+	}
+
+	/**
+	 * @param sequence number of the id
+	 * @return the same id in every run, ascending with the sequence as ids of the driver are
+	 */
+	private static ObjectId objectId(long sequence) {
+		return new ObjectId((int) (ID_EPOCH + (sequence >>> 24)), (int) (sequence & 0xFFFFFF));
+	}
+
+	private static void progress(int done, int rows, long start) {
+		if (done % (BATCH * 10) == 0 || done == rows) {
+			log.info("seeded {}/{} orders in {} ms", done, rows, (System.nanoTime() - start) / 1_000_000);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.eaphonetech.common.datatables.samples.load;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.PropertyResolver;
+
+import lombok.Data;
+
+/**
+ * Settings of {@link LoadHarness}, given as command line arguments, e.g. <code>--load.backend=mongo</code>.
+ */
+@Data
+public class LoadSettings {
+
+	public enum Backend {
+		JPA, MONGO
+	}
+
+	private static final String PREFIX = "load.";
+
+	/**
+	 * <code>jpa</code> (H2) or <code>mongo</code> (mongo-java-server)
+	 */
+	private Backend backend = Backend.JPA;
+
+	/**
+	 * orders to insert before the run
+	 */
+	private int rows = 1_000_000;
+
+	/**
+	 * threads sending requests
+	 */
+	private int threads = 16;
+
+	/**
+	 * run time before recording starts, so that the JIT and caches are warm
+	 */
+	private Duration warmup = Duration.ofSeconds(10);
+
+	/**
+	 * recorded run time
+	 */
+	private Duration duration = Duration.ofSeconds(60);
+
+	/**
+	 * relative weight of each filter shape, e.g. <code>eq:3,prefix:2,range:2,nested:1</code>
+	 */
+	private Map<FilterShape, Integer> mix = parseMix("eq:3,prefix:2,contains:1,range:2,in:1,nested:1,wide:1");
+
+	/**
+	 * fraction of requests calling <code>count(CountInput)</code> instead of <code>findAll(QueryInput)</code>
+	 */
+	private double countRatio = 0.2;
+
+	/**
+	 * page size of <code>findAll</code>
+	 */
+	private int limit = 20;
+
+	/**
+	 * seed of the data and of the requests, so that runs can be compared
+	 */
+	private long seed = 42L;
+
+	/**
+	 * CSV file to append the results to, none by default
+	 */
+	private String report;
+
+	public static LoadSettings from(PropertyResolver env) {
+		LoadSettings settings = new LoadSettings();
+		settings.setBackend(Backend.valueOf(
+				env.getProperty(PREFIX + "backend", settings.getBackend().name()).toUpperCase()));
+		settings.setRows(env.getProperty(PREFIX + "rows", Integer.class, settings.getRows()));
+		settings.setThreads(env.getProperty(PREFIX + "threads", Integer.class, settings.getThreads()));
+		if (env.containsProperty(PREFIX + "warmup")) {
+			settings.setWarmup(DurationStyle.detectAndParse(env.getProperty(PREFIX + "warmup")));
+		}
+		if (env.containsProperty(PREFIX + "duration")) {
+			settings.setDuration(DurationStyle.detectAndParse(env.getProperty(PREFIX + "duration")));
+		}
+		if (env.containsProperty(PREFIX + "mix")) {
+			settings.setMix(parseMix(env.getProperty(PREFIX + "mix")));
+		}
+		settings.setCountRatio(env.getProperty(PREFIX + "count-ratio", Double.class, settings.getCountRatio()));
+		settings.setLimit(env.getProperty(PREFIX + "limit", Integer.class, settings.getLimit()));
+		settings.setSeed(env.getProperty(PREFIX + "seed", Long.class, settings.getSeed()));
+		settings.setReport(env.getProperty(PREFIX + "report"));
+		return settings;
+	}
+
+	static Map<FilterShape, Integer> parseMix(String text) {
+		Map<FilterShape, Integer> mix = new EnumMap<>(FilterShape.class);
+		for (final String entry : text.split(",")) {
+			final String[] parts = entry.trim().split(":");
+			if (parts.length != 2) {
+				throw new IllegalArgumentException("expected shape:weight, got '" + entry + "'");
+			}
+			final int weight = Integer.parseInt(parts[1].trim());
+			if (weight > 0) {
+				mix.put(FilterShape.valueOf(parts[0].trim().toUpperCase()), weight);
+			}
+		}
+		if (mix.isEmpty()) {
+			throw new IllegalArgumentException("no filter shape in mix '" + text + "'");
+		}
+		return mix;
+	}
+}
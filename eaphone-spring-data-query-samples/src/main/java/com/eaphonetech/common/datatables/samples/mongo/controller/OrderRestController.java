@@ -1,9 +1,16 @@
 package com.eaphonetech.common.datatables.samples.mongo.controller;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.eaphonetech.common.datatables.model.mapping.CountInput;
 import com.eaphonetech.common.datatables.model.mapping.CountOutput;
@@ -11,6 +18,7 @@ import com.eaphonetech.common.datatables.model.mapping.QueryInput;
 import com.eaphonetech.common.datatables.model.mapping.QueryOutput;
 import com.eaphonetech.common.datatables.samples.mongo.document.Order;
 import com.eaphonetech.common.datatables.samples.mongo.repo.OrderRepository;
+import com.eaphonetech.common.datatables.util.StreamingExporter;
 import com.fasterxml.jackson.annotation.JsonView;
 
 import jakarta.annotation.PostConstruct;
@@ -40,6 +48,28 @@ public class OrderRestController {
 		return repo.count(input);
 	}
 
+	@PostMapping("/data/orders/facets")
+	public Map<String, CountOutput> countFacets(@RequestBody Map<String, CountInput> inputs) {
+		return repo.countFacets(inputs);
+	}
+
+	/**
+	 * Export all matching orders as CSV, without loading them into memory at once
+	 */
+	@PostMapping("/data/orders/export")
+	public ResponseEntity<StreamingResponseBody> export(@Valid @RequestBody QueryInput input) {
+		LinkedHashMap<String, Function<Order, ?>> columns = new LinkedHashMap<>();
+		columns.put("id", Order::getId);
+		columns.put("date", Order::getDate);
+		columns.put("orderNumber", Order::getOrderNumber);
+		columns.put("isValid", Order::getIsValid);
+		columns.put("amount", Order::getAmount);
+		columns.put("price", Order::getPrice);
+
+		return ResponseEntity.ok().contentType(new MediaType("text", "csv"))
+				.body(StreamingExporter.csv(() -> repo.streamAll(input), columns));
+	}
+
 	/**
 	 * Insert some data to Fongo
 	 */